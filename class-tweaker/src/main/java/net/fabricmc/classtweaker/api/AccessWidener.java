@@ -30,8 +30,24 @@ public interface AccessWidener {
 
 	Access getFieldAccess(EntryTriple entryTriple);
 
+	/**
+	 * Looks up the access of a method of this widener's class without requiring an {@link EntryTriple}.
+	 */
+	Access getMethodAccess(String name, String descriptor);
+
+	/**
+	 * Looks up the access of a field of this widener's class without requiring an {@link EntryTriple}.
+	 */
+	Access getFieldAccess(String name, String descriptor);
+
 	Access getCanonicalConstructorAccess();
 
+	/**
+	 * @return whether any method of this widener's class, other than a constructor, is widened. Calls to such a method
+	 * from within the class may use {@code invokespecial} and need to be rewritten once the method is no longer private.
+	 */
+	boolean needsCallSiteRewrite();
+
 	Map<EntryTriple, Access> getAllMethodAccesses();
 
 	Map<EntryTriple, Access> getAllFieldAccesses();
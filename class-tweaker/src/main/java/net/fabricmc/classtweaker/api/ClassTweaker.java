@@ -24,9 +24,12 @@ import java.util.function.BiConsumer;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.tree.ClassNode;
 
 import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.classvisitor.ClassNodeTransformer;
 import net.fabricmc.classtweaker.impl.ClassTweakerImpl;
+import net.fabricmc.classtweaker.impl.ConcurrentClassTweakerImpl;
 
 @ApiStatus.NonExtendable
 public interface ClassTweaker extends ClassTweakerVisitor {
@@ -45,6 +48,15 @@ public interface ClassTweaker extends ClassTweakerVisitor {
 		return new ClassTweakerImpl();
 	}
 
+	/**
+	 * @return a new {@link ClassTweaker} instance that can be visited from multiple threads at once. The resulting
+	 * access is the same as if all entries were visited sequentially. Targets, injected interfaces and enum extensions
+	 * are listed in sequential order when every source is visited through {@link ConcurrentClassTweaker#visitSource(int)}.
+	 */
+	static ConcurrentClassTweaker newConcurrentInstance() {
+		return new ConcurrentClassTweakerImpl();
+	}
+
 	/**
 	 * The mapping namespace of the current class tweaker.
 	 * @return the mappings namespace.
@@ -59,6 +71,15 @@ public interface ClassTweaker extends ClassTweakerVisitor {
 	 */
 	Set<String> getTargets();
 
+	/**
+	 * Checks whether a class is contained in {@link #getTargets()}, without allocating. Since most classes are not
+	 * targets, a miss is rejected early by its package before the full name is looked up.
+	 *
+	 * @param name the internal name of the class (i.e. a/b/C$I), or its binary name (i.e. a.b.C$I) if {@code dotted}
+	 * @param dotted whether the name uses periods instead of forward slashes as the package separator
+	 */
+	boolean isTarget(CharSequence name, boolean dotted);
+
 	AccessWidener getAccessWidener(String className);
 
 	Map<String, AccessWidener> getAllAccessWideners();
@@ -71,5 +92,22 @@ public interface ClassTweaker extends ClassTweakerVisitor {
 
 	Map<String, List<EnumExtension>> getAllEnumExtensions();
 
+	/**
+	 * Returns an immutable copy of this class tweaker, which is safe to query from multiple threads at once. The
+	 * snapshot does not change when this instance is visited later on, and cannot be visited itself.
+	 *
+	 * @return the snapshot, or this instance if it is already immutable
+	 */
+	ClassTweaker snapshot();
+
 	ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer);
+
+	/**
+	 * Applies the class tweaks to a class that is already held as a {@link ClassNode}, modifying the node in place.
+	 * The result is the same as passing the node through {@link #createClassVisitor} into a new node, without copying
+	 * the parts of the class that are not tweaked.
+	 */
+	default void apply(ClassNode classNode) {
+		ClassNodeTransformer.apply(this, classNode);
+	}
 }
@@ -18,10 +18,17 @@ package net.fabricmc.classtweaker.api;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
 
 import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.reader.ClassTweakerBinaryReader;
+import net.fabricmc.classtweaker.reader.ClassTweakerBulkReader;
 import net.fabricmc.classtweaker.reader.ClassTweakerReaderImpl;
 
 @ApiStatus.NonExtendable
@@ -54,6 +61,71 @@ public interface ClassTweakerReader {
 		return ClassTweakerReaderImpl.readHeader(reader);
 	}
 
+	/**
+	 * Reads all sources in parallel on the common {@link ForkJoinPool}, see {@link #readAll(List, Executor)}.
+	 */
+	static ClassTweaker readAll(List<Source> sources) {
+		return readAll(sources, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Reads all sources in parallel and merges them into a new {@link ClassTweaker}.
+	 *
+	 * <p>Each source is read into its own partial class tweaker on the given executor, the partial results are then
+	 * merged in the order of the list. The result is the same as reading the sources one after another in that order,
+	 * including the order of {@link ClassTweaker#getTargets()} and of the injected interfaces and enum extensions.
+	 *
+	 * <p>If any source fails to read, the exception of the first failing source in list order is thrown.
+	 */
+	static ClassTweaker readAll(List<Source> sources, Executor executor) {
+		return ClassTweakerBulkReader.readAll(sources, executor);
+	}
+
+	/**
+	 * Reads a class tweaker written by {@link ClassTweakerWriter#writeBinary(ClassTweaker, byte[])}.
+	 *
+	 * @param cacheKey the key the data is expected to have been written with, see {@link #computeCacheKey(List)}
+	 * @return the class tweaker, or {@code null} if the key or the binary format version do not match
+	 */
+	@Nullable
+	static ClassTweaker readBinary(byte[] content, byte[] cacheKey) {
+		return ClassTweakerBinaryReader.read(content, cacheKey);
+	}
+
+	/**
+	 * Maps a file written by {@link ClassTweakerWriter#writeBinary(ClassTweaker, byte[])} into memory and returns a
+	 * read-only class tweaker that answers all lookups from the mapped data, without loading the entries onto the heap.
+	 *
+	 * @param cacheKey the key the data is expected to have been written with, see {@link #computeCacheKey(List)}
+	 * @return the class tweaker, or {@code null} if the key or the binary format version do not match
+	 */
+	@Nullable
+	static ClassTweaker mapBinary(Path path, byte[] cacheKey) throws IOException {
+		return ClassTweakerBinaryReader.map(path, cacheKey);
+	}
+
+	/**
+	 * Computes a SHA-256 hash over the content and the namespace of the given sources, suitable as the cache key of
+	 * a binary class tweaker loaded from those sources.
+	 */
+	static byte[] computeCacheKey(List<Source> sources) {
+		return ClassTweakerBinaryReader.computeCacheKey(sources);
+	}
+
+	interface Source {
+		static Source of(byte[] content, @Nullable String currentNamespace) {
+			return new ClassTweakerBulkReader.SourceImpl(content, currentNamespace);
+		}
+
+		byte[] getContent();
+
+		/**
+		 * The namespace the source is expected to have, or {@code null} to accept any namespace.
+		 */
+		@Nullable
+		String getNamespace();
+	}
+
 	interface Header {
 		int getVersion();
 		String getNamespace();
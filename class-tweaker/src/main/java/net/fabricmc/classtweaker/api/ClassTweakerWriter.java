@@ -19,6 +19,7 @@ package net.fabricmc.classtweaker.api;
 import org.jetbrains.annotations.ApiStatus;
 
 import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.writer.ClassTweakerBinaryWriter;
 import net.fabricmc.classtweaker.writer.ClassTweakerWriterImpl;
 
 @ApiStatus.NonExtendable
@@ -27,6 +28,18 @@ public interface ClassTweakerWriter extends ClassTweakerVisitor {
 		return new ClassTweakerWriterImpl(version);
 	}
 
+	/**
+	 * Writes a loaded class tweaker in a compact binary form that can be read back with
+	 * {@link ClassTweakerReader#readBinary(byte[], byte[])} without parsing the original text files.
+	 *
+	 * <p>Transitivity is not part of a loaded class tweaker, so it is not preserved.
+	 *
+	 * @param cacheKey a key identifying the inputs, see {@link ClassTweakerReader#computeCacheKey(java.util.List)}
+	 */
+	static byte[] writeBinary(ClassTweaker classTweaker, byte[] cacheKey) {
+		return ClassTweakerBinaryWriter.write(classTweaker, cacheKey);
+	}
+
 	byte[] getOutput();
 
 	String getOutputAsString();
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.api;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+
+/**
+ * A {@link ClassTweaker} that can be visited from multiple threads at once, see
+ * {@link ClassTweaker#newConcurrentInstance()}.
+ */
+@ApiStatus.NonExtendable
+public interface ConcurrentClassTweaker extends ClassTweaker {
+	/**
+	 * Returns a visitor for the entries of a single source, such as one file. Targets, injected interfaces and enum
+	 * extensions are listed by source index first and then in the order they were visited within their source, which is
+	 * the order a {@link ClassTweaker#newInstance()} would list them in after visiting the sources one after another by
+	 * index. Entries visited on this instance directly are listed after those of all sources, in the order they arrived
+	 * in.
+	 *
+	 * <p>The returned visitor must only be used by one thread at a time, but the visitors of different sources may be
+	 * used concurrently.
+	 *
+	 * @param sourceIndex the non-negative position of the source in the sequential load order
+	 */
+	ClassTweakerVisitor visitSource(int sourceIndex);
+}
@@ -16,6 +16,8 @@
 
 package net.fabricmc.classtweaker.api;
 
+import java.util.List;
+
 import org.jetbrains.annotations.ApiStatus;
 
 @ApiStatus.NonExtendable
@@ -36,4 +38,10 @@ public interface InjectedInterface {
 	 * Whether the interface to inject has any generics.
 	 */
 	boolean hasGenerics();
+
+	/**
+	 * The names of the type variables used by the {@linkplain #getInterfaceSignature() signature}, in order of first
+	 * use. Each of them must be declared by the target class.
+	 */
+	List<String> getTypeVariables();
 }
@@ -21,6 +21,7 @@ import org.objectweb.asm.commons.Remapper;
 
 import net.fabricmc.classtweaker.api.ProblemSink;
 import net.fabricmc.classtweaker.validator.ClassTweakerValidatingVisitor;
+import net.fabricmc.classtweaker.validator.ValidationEnvironment;
 import net.fabricmc.classtweaker.visitors.ClassTweakerRemapperVisitor;
 import net.fabricmc.classtweaker.visitors.ForwardingVisitor;
 import net.fabricmc.classtweaker.visitors.TransitiveOnlyFilter;
@@ -83,4 +84,8 @@ public interface ClassTweakerVisitor {
 	static ClassTweakerVisitor validate(TrEnvironment environment, ProblemSink sink) {
 		return new ClassTweakerValidatingVisitor(environment, sink);
 	}
+
+	static ClassTweakerVisitor validate(ValidationEnvironment environment, ProblemSink sink) {
+		return new ClassTweakerValidatingVisitor(environment, sink);
+	}
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.impl.AccessWidenerImpl;
+import net.fabricmc.classtweaker.utils.ClassFile;
+
+/**
+ * Applies access widening directly to the bytes of a class file, without an ASM {@link ClassReader} and
+ * {@link ClassWriter} round trip. Only the access flags of the class, its fields, its methods and its inner class
+ * entries are rewritten in place, everything else is left untouched.
+ *
+ * <p>Classes that need more than a change of access flags are left to the ASM path of
+ * {@link ClassTweaker#createClassVisitor}: classes with injected interfaces or enum extensions, classes with widened
+ * methods whose call sites may need to be rewritten, and sealed classes that are made extendable.
+ */
+public final class AccessFlagPatcher {
+	private final ClassTweaker classTweaker;
+	private final ClassFile classFile;
+	// Only allocated once the first flag actually changes
+	private byte[] patched;
+
+	private AccessFlagPatcher(ClassTweaker classTweaker, byte[] classFile) {
+		this.classTweaker = classTweaker;
+		this.classFile = new ClassFile(classFile);
+	}
+
+	/**
+	 * Transforms a class file with the given class tweaker, patching its access flags directly if that is enough and
+	 * falling back to ASM otherwise.
+	 *
+	 * @return the transformed class file, which is {@code classFile} itself if nothing had to be changed
+	 */
+	public static byte[] transform(int api, byte[] classFile, ClassTweaker classTweaker) {
+		byte[] patched = patch(classFile, classTweaker);
+
+		if (patched != null) {
+			return patched;
+		}
+
+		ClassReader classReader = new ClassReader(classFile);
+		ClassWriter classWriter = new ClassWriter(classReader, 0);
+		classReader.accept(classTweaker.createClassVisitor(api, classWriter, null), 0);
+		return classWriter.toByteArray();
+	}
+
+	/**
+	 * Applies the access widening of the given class tweaker to a class file by patching its access flags.
+	 *
+	 * @return a patched copy of the class file, {@code classFile} itself if no access flags change, or {@code null} if
+	 * the class needs more than a change of access flags and has to be transformed with
+	 * {@link ClassTweaker#createClassVisitor} instead
+	 */
+	@Nullable
+	public static byte[] patch(byte[] classFile, ClassTweaker classTweaker) {
+		return new AccessFlagPatcher(classTweaker, classFile).patch();
+	}
+
+	@Nullable
+	private byte[] patch() {
+		final int accessOffset = classFile.getHeader();
+		final int classAccess = classFile.readUnsignedShort(accessOffset);
+		final String className = classFile.getClassName();
+
+		if (!classTweaker.getInjectedInterfaces(className).isEmpty() || !classTweaker.getEnumExtensions(className).isEmpty()) {
+			return null;
+		}
+
+		final AccessWidener accessWidener = classTweaker.getAccessWidener(className);
+		final boolean widened = accessWidener != AccessWidenerImpl.DEFAULT;
+
+		if (widened && accessWidener.needsCallSiteRewrite()) {
+			return null;
+		}
+
+		final int attributes = classFile.getAttributes();
+
+		if (accessWidener.getClassAccess().isExtendable() && classFile.findAttribute(attributes, "PermittedSubclasses") >= 0) {
+			// The permitted subclasses have to be removed
+			return null;
+		}
+
+		if (widened) {
+			// The record components come after the members, so they are read first
+			int record = accessWidener.getCanonicalConstructorAccess().isChanged() ? classFile.findAttribute(attributes, "Record") : -1;
+			String canonicalDescriptor = record >= 0 ? readCanonicalDescriptor(record) : null;
+
+			writeUnsignedShort(accessOffset, accessWidener.getClassAccess().apply(classAccess, className, classAccess));
+			patchMembers(classFile.getFields(), accessWidener, classAccess, false, null);
+			patchMembers(classFile.getMethods(), accessWidener, classAccess, true, canonicalDescriptor);
+		}
+
+		int innerClasses = classFile.findAttribute(attributes, "InnerClasses");
+
+		if (innerClasses >= 0) {
+			patchInnerClasses(innerClasses, classAccess);
+		}
+
+		return patched != null ? patched : classFile.getData();
+	}
+
+	private void patchMembers(int offset, AccessWidener accessWidener, int classAccess, boolean methods, @Nullable String canonicalDescriptor) {
+		int count = classFile.readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++) {
+			int access = classFile.readUnsignedShort(offset);
+			String name = classFile.readUtf8(offset + 2);
+			String descriptor = classFile.readUtf8(offset + 4);
+			int newAccess;
+
+			if (methods) {
+				// Matches AccessWidenerClassVisitor, which widens every method with the canonical descriptor
+				if (descriptor.equals(canonicalDescriptor)) {
+					access = accessWidener.getCanonicalConstructorAccess().apply(access, name, classAccess);
+				}
+
+				newAccess = accessWidener.getMethodAccess(name, descriptor).apply(access, name, classAccess);
+			} else {
+				newAccess = accessWidener.getFieldAccess(name, descriptor).apply(access, name, classAccess);
+			}
+
+			writeUnsignedShort(offset, newAccess);
+			offset = classFile.skipAttributes(offset + 6);
+		}
+	}
+
+	private void patchInnerClasses(int offset, int classAccess) {
+		int count = classFile.readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++, offset += 8) {
+			String name = classFile.readClass(offset);
+			AccessWidener.Access access = classTweaker.getAccessWidener(name).getClassAccess();
+
+			if (access.isChanged()) {
+				writeUnsignedShort(offset + 6, access.apply(classFile.readUnsignedShort(offset + 6), name, classAccess));
+			}
+		}
+	}
+
+	private String readCanonicalDescriptor(int offset) {
+		StringBuilder descriptor = new StringBuilder("(");
+		int count = classFile.readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++) {
+			descriptor.append(classFile.readUtf8(offset + 2));
+			offset = classFile.skipAttributes(offset + 4);
+		}
+
+		return descriptor.append(")V").toString();
+	}
+
+	private void writeUnsignedShort(int offset, int value) {
+		value &= 0xFFFF;
+
+		if (value == classFile.readUnsignedShort(offset)) {
+			return;
+		}
+
+		if (patched == null) {
+			patched = classFile.getData().clone();
+		}
+
+		patched[offset] = (byte) (value >>> 8);
+		patched[offset + 1] = (byte) value;
+	}
+}
@@ -30,7 +30,6 @@ import org.objectweb.asm.tree.MethodNode;
 import net.fabricmc.classtweaker.api.AccessWidener;
 import net.fabricmc.classtweaker.api.ClassTweaker;
 import net.fabricmc.classtweaker.impl.ClassTweakerImpl;
-import net.fabricmc.classtweaker.utils.EntryTriple;
 
 /**
  * Applies rules from an {@link ClassTweakerImpl} by transforming Java classes using an ASM {@link ClassVisitor}.
@@ -57,7 +56,8 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 		classAccess = access;
 		accessWidener = classTweaker.getAccessWidener(name);
 
-		shouldDeferRecordMethods = (access & Opcodes.ACC_RECORD) != 0;
+		// The canonical constructor is only widened along with an accessible record, so other records can stream their methods
+		shouldDeferRecordMethods = (access & Opcodes.ACC_RECORD) != 0 && accessWidener.getCanonicalConstructorAccess().isChanged();
 
 		super.visit(
 				version,
@@ -71,7 +71,9 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 
 	@Override
 	public RecordComponentVisitor visitRecordComponent(String name, String descriptor, String signature) {
-		recordDescriptor.append(descriptor);
+		if (shouldDeferRecordMethods) {
+			recordDescriptor.append(descriptor);
+		}
 
 		return super.visitRecordComponent(name, descriptor, signature);
 	}
@@ -100,7 +102,7 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 	@Override
 	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
 		return super.visitField(
-				accessWidener.getFieldAccess(new EntryTriple(className, name, descriptor)).apply(access, name, classAccess),
+				accessWidener.getFieldAccess(name, descriptor).apply(access, name, classAccess),
 				name,
 				descriptor,
 				signature,
@@ -120,13 +122,20 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 			return constructor;
 		}
 
-		return new AccessWidenerMethodVisitor(super.visitMethod(
-				accessWidener.getMethodAccess(new EntryTriple(className, name, descriptor)).apply(access, name, classAccess),
+		MethodVisitor methodVisitor = super.visitMethod(
+				accessWidener.getMethodAccess(name, descriptor).apply(access, name, classAccess),
 				name,
 				descriptor,
 				signature,
 				exceptions
-		));
+		);
+
+		if (!accessWidener.needsCallSiteRewrite() || methodVisitor == null) {
+			// Nothing to rewrite, returning the delegate's visitor directly lets a ClassWriter copy the code as is
+			return methodVisitor;
+		}
+
+		return new AccessWidenerMethodVisitor(methodVisitor);
 	}
 
 	@Override
@@ -184,7 +193,7 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 		}
 
 		private boolean isTargetMethod(String owner, String name, String descriptor) {
-			return owner.equals(className) && !name.equals("<init>") && accessWidener.getMethodAccess(new EntryTriple(owner, name, descriptor)).isChanged();
+			return owner.equals(className) && !name.equals("<init>") && accessWidener.getMethodAccess(name, descriptor).isChanged();
 		}
 	}
 }
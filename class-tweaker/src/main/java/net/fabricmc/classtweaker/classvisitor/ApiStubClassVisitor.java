@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Gives every method that has a body a stub body of {@code throw null}, for classes read with
+ * {@link ClassReader#SKIP_CODE}. Such classes are only meant to be compiled against: their signatures and access are
+ * kept intact, but none of their methods can be run.
+ *
+ * <p>The stub body has no branches, so it needs no stack map frames.
+ */
+public final class ApiStubClassVisitor extends ClassVisitor {
+	/**
+	 * The flags to read classes with, skipping their code and debug information.
+	 */
+	public static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+	public ApiStubClassVisitor(int api, ClassVisitor classVisitor) {
+		super(api, classVisitor);
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+		MethodVisitor methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+
+		if (methodVisitor == null || (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+			return methodVisitor;
+		}
+
+		int maxLocals = (Type.getArgumentsAndReturnSizes(descriptor) >> 2) - ((access & Opcodes.ACC_STATIC) != 0 ? 1 : 0);
+
+		return new MethodVisitor(api, methodVisitor) {
+			@Override
+			public void visitEnd() {
+				super.visitCode();
+				super.visitInsn(Opcodes.ACONST_NULL);
+				super.visitInsn(Opcodes.ATHROW);
+				super.visitMaxs(1, maxLocals);
+				super.visitEnd();
+			}
+		};
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InnerClassNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.RecordComponentNode;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.impl.AccessWidenerImpl;
+
+/**
+ * Applies class tweaks to a {@link ClassNode} in place, see {@link ClassTweaker#apply(ClassNode)}.
+ *
+ * <p>The result is the same as passing the node through {@link ClassTweakerClassVisitor} into a new node. Instruction
+ * lists are only walked for classes with widened methods that need their call sites rewritten.
+ */
+public final class ClassNodeTransformer {
+	private ClassNodeTransformer() {
+	}
+
+	public static void apply(ClassTweaker classTweaker, ClassNode node) {
+		final AccessWidener accessWidener = classTweaker.getAccessWidener(node.name);
+		final List<InjectedInterface> injectedInterfaces = classTweaker.getInjectedInterfaces(node.name);
+		final List<EnumExtension> enumExtensions = classTweaker.getEnumExtensions(node.name);
+		final int classAccess = node.access;
+
+		if (!enumExtensions.isEmpty()) {
+			extendEnum(node, enumExtensions);
+		}
+
+		if (!injectedInterfaces.isEmpty()) {
+			injectInterfaces(node, injectedInterfaces);
+		}
+
+		if (accessWidener != AccessWidenerImpl.DEFAULT) {
+			widen(classTweaker, accessWidener, node, classAccess);
+		} else {
+			// Any class can reference a widened inner class of another class, including the interfaces injected above
+			widenInnerClasses(classTweaker, node.innerClasses, classAccess);
+		}
+	}
+
+	private static void extendEnum(ClassNode node, List<EnumExtension> enumExtensions) {
+		final String descriptor = "L" + node.name + ";";
+		final Set<String> addedConstants = new LinkedHashSet<>();
+
+		for (EnumExtension extension : enumExtensions) {
+			addedConstants.add(extension.getAddedConstant());
+		}
+
+		// Existing enum constants come first, followed by the added constants and then all other fields
+		final List<FieldNode> fields = new ArrayList<>(node.fields.size() + addedConstants.size());
+		final List<FieldNode> otherFields = new ArrayList<>();
+
+		for (FieldNode field : node.fields) {
+			if (descriptor.equals(field.desc)) {
+				// Can't add a conflicting constant
+				addedConstants.remove(field.name);
+			}
+
+			if ((field.access & Opcodes.ACC_ENUM) != 0) {
+				fields.add(field);
+			} else {
+				otherFields.add(field);
+			}
+		}
+
+		for (String addedConstant : addedConstants) {
+			FieldNode field = new FieldNode(
+					Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_STATIC | Opcodes.ACC_ENUM,
+					addedConstant,
+					descriptor,
+					null,
+					null
+			);
+			field.visitAttribute(new EnumExtensionClassVisitor.StubEnumConstantAttribute());
+			fields.add(field);
+		}
+
+		fields.addAll(otherFields);
+		node.fields = fields;
+	}
+
+	private static void injectInterfaces(ClassNode node, List<InjectedInterface> injectedInterfaces) {
+		final Set<String> interfaces = new LinkedHashSet<>(node.interfaces);
+		node.signature = InterfaceInjectionClassVisitor.injectInterfaces(node.name, node.signature, node.superName, interfaces, injectedInterfaces);
+		node.interfaces = new ArrayList<>(interfaces);
+
+		final Set<String> knownInnerClasses = new HashSet<>();
+
+		for (InnerClassNode innerClass : node.innerClasses) {
+			knownInnerClasses.add(innerClass.name);
+		}
+
+		InterfaceInjectionClassVisitor.visitInnerClasses(node, injectedInterfaces, knownInnerClasses);
+	}
+
+	private static void widen(ClassTweaker classTweaker, AccessWidener accessWidener, ClassNode node, int classAccess) {
+		node.access = accessWidener.getClassAccess().apply(classAccess, node.name, classAccess);
+
+		if (accessWidener.getClassAccess().isExtendable()) {
+			node.permittedSubclasses = null;
+		}
+
+		widenInnerClasses(classTweaker, node.innerClasses, classAccess);
+
+		for (FieldNode field : node.fields) {
+			field.access = accessWidener.getFieldAccess(field.name, field.desc).apply(field.access, field.name, classAccess);
+		}
+
+		String canonicalDesc = null;
+
+		if ((classAccess & Opcodes.ACC_RECORD) != 0 && accessWidener.getCanonicalConstructorAccess().isChanged()) {
+			StringBuilder recordDescriptor = new StringBuilder("(");
+
+			if (node.recordComponents != null) {
+				for (RecordComponentNode component : node.recordComponents) {
+					recordDescriptor.append(component.descriptor);
+				}
+			}
+
+			canonicalDesc = recordDescriptor.append(")V").toString();
+		}
+
+		for (MethodNode method : node.methods) {
+			if (method.desc.equals(canonicalDesc)) {
+				// Widen canonical record constructor
+				method.access = accessWidener.getCanonicalConstructorAccess().apply(method.access, method.name, classAccess);
+			}
+
+			method.access = accessWidener.getMethodAccess(method.name, method.desc).apply(method.access, method.name, classAccess);
+		}
+
+		if (accessWidener.needsCallSiteRewrite()) {
+			for (MethodNode method : node.methods) {
+				rewriteCallSites(accessWidener, node.name, method);
+			}
+		}
+	}
+
+	private static void widenInnerClasses(ClassTweaker classTweaker, List<InnerClassNode> innerClasses, int classAccess) {
+		for (InnerClassNode innerClass : innerClasses) {
+			innerClass.access = classTweaker.getAccessWidener(innerClass.name).getClassAccess().apply(innerClass.access, innerClass.name, classAccess);
+		}
+	}
+
+	private static void rewriteCallSites(AccessWidener accessWidener, String className, MethodNode method) {
+		for (AbstractInsnNode insn : method.instructions) {
+			if (insn instanceof MethodInsnNode) {
+				MethodInsnNode methodInsn = (MethodInsnNode) insn;
+
+				if (methodInsn.getOpcode() == Opcodes.INVOKESPECIAL && isTargetMethod(accessWidener, className, methodInsn.owner, methodInsn.name, methodInsn.desc)) {
+					methodInsn.setOpcode(Opcodes.INVOKEVIRTUAL);
+				}
+			} else if (insn instanceof InvokeDynamicInsnNode) {
+				Object[] bootstrapMethodArguments = ((InvokeDynamicInsnNode) insn).bsmArgs;
+
+				for (int i = 0; i < bootstrapMethodArguments.length; i++) {
+					if (bootstrapMethodArguments[i] instanceof Handle) {
+						final Handle handle = (Handle) bootstrapMethodArguments[i];
+
+						if (handle.getTag() == Opcodes.H_INVOKESPECIAL && isTargetMethod(accessWidener, className, handle.getOwner(), handle.getName(), handle.getDesc())) {
+							bootstrapMethodArguments[i] = new Handle(Opcodes.H_INVOKEVIRTUAL, handle.getOwner(), handle.getName(), handle.getDesc(), handle.isInterface());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean isTargetMethod(AccessWidener accessWidener, String className, String owner, String name, String descriptor) {
+		return owner.equals(className) && !name.equals("<init>") && accessWidener.getMethodAccess(name, descriptor).isChanged();
+	}
+}
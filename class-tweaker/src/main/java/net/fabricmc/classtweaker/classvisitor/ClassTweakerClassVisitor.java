@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import org.objectweb.asm.ClassVisitor;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.impl.AccessWidenerImpl;
+
+/**
+ * Applies all kinds of class tweaks in a single visitor. The tweaks for the visited class are looked up once in
+ * {@link #visit}, and only the visitors for the kinds that apply to that class are inserted between this visitor and
+ * the next one. For a class without tweaks, all events are passed straight through.
+ *
+ * <p>The resulting chain is the same as the one built from {@link AccessWidenerClassVisitor},
+ * {@link InterfaceInjectionClassVisitor} and {@link EnumExtensionClassVisitor} for every class.
+ */
+public final class ClassTweakerClassVisitor extends ClassVisitor {
+	private final ClassVisitor next;
+	private final ClassTweaker classTweaker;
+	// Set when the access widener visitor is not inserted, but inner class entries still need to be widened
+	private boolean widenInnerClasses;
+	private int classAccess;
+
+	public ClassTweakerClassVisitor(int api, ClassVisitor classVisitor, ClassTweaker classTweaker) {
+		super(api, classVisitor);
+		this.next = classVisitor;
+		this.classTweaker = classTweaker;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		ClassVisitor chain = next;
+		AccessWidener accessWidener = classTweaker.getAccessWidener(name);
+		boolean injectsInterfaces = !classTweaker.getInjectedInterfaces(name).isEmpty();
+
+		// The inner class entries added for injected interfaces are widened as well, so they have to pass through it
+		if (accessWidener != AccessWidenerImpl.DEFAULT || injectsInterfaces) {
+			chain = new AccessWidenerClassVisitor(api, chain, classTweaker);
+			widenInnerClasses = false;
+		} else {
+			// Any class can reference a widened inner class of another class
+			widenInnerClasses = true;
+			classAccess = access;
+		}
+
+		if (injectsInterfaces) {
+			chain = new InterfaceInjectionClassVisitor(api, chain, classTweaker);
+		}
+
+		if (!classTweaker.getEnumExtensions(name).isEmpty()) {
+			chain = new EnumExtensionClassVisitor(api, chain, classTweaker);
+		}
+
+		cv = chain;
+		super.visit(version, access, name, signature, superName, interfaces);
+	}
+
+	@Override
+	public void visitInnerClass(String name, String outerName, String innerName, int access) {
+		if (widenInnerClasses) {
+			access = classTweaker.getAccessWidener(name).getClassAccess().apply(access, name, classAccess);
+		}
+
+		super.visitInnerClass(name, outerName, innerName, access);
+	}
+}
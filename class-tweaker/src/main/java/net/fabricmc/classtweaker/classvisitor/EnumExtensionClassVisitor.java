@@ -26,21 +26,26 @@ import org.objectweb.asm.ByteVector;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
-import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.FieldNode;
-import org.objectweb.asm.tree.MethodNode;
 
 import net.fabricmc.classtweaker.api.ClassTweaker;
 import net.fabricmc.classtweaker.api.EnumExtension;
 
+/**
+ * Adds enum constants to a class. Existing enum constants are passed straight through, only the other fields are
+ * held back so that the added constants can be inserted after the existing ones. The class file format does not
+ * require fields to come before methods, so the added constants are only emitted in {@link #visitEnd()} once every
+ * field, and with it every conflicting constant, is known. Methods are never buffered, and classes without enum
+ * extensions are not buffered at all.
+ */
 public class EnumExtensionClassVisitor extends ClassVisitor {
 	private final ClassTweaker classTweaker;
 	private final Set<String> addedConstants = new LinkedHashSet<>();
-	private final List<FieldNode> existingConstants = new ArrayList<>();
-	private final List<Runnable> postVisitTasks = new ArrayList<>();
+	private final List<FieldNode> delayedFields = new ArrayList<>();
 	private Type currentType;
+	private boolean pending;
 
 	public EnumExtensionClassVisitor(int api, ClassVisitor classVisitor, ClassTweaker classTweaker) {
 		super(api, classVisitor);
@@ -49,16 +54,15 @@ public class EnumExtensionClassVisitor extends ClassVisitor {
 
 	@Override
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-		currentType = Type.getObjectType(name);
 		List<EnumExtension> enumExtensions = classTweaker.getEnumExtensions(name);
 
-		if (enumExtensions.isEmpty()) {
-			super.visit(version, access, name, signature, superName, interfaces);
-			return;
-		}
+		if (!enumExtensions.isEmpty()) {
+			currentType = Type.getObjectType(name);
+			pending = true;
 
-		for (EnumExtension extension : enumExtensions) {
-			addedConstants.add(extension.getAddedConstant());
+			for (EnumExtension extension : enumExtensions) {
+				addedConstants.add(extension.getAddedConstant());
+			}
 		}
 
 		super.visit(version, access, name, signature, superName, interfaces);
@@ -66,29 +70,23 @@ public class EnumExtensionClassVisitor extends ClassVisitor {
 
 	@Override
 	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+		if (!pending) {
+			return super.visitField(access, name, descriptor, signature, value);
+		}
+
 		if (currentType.getDescriptor().equals(descriptor)) {
 			// Can't add a conflicting constant
 			addedConstants.remove(name);
 		}
 
-		FieldNode node = new FieldNode(access, name, descriptor, signature, value);
-
 		if ((access & Opcodes.ACC_ENUM) != 0) {
-			// Existing enum constant in the class
-			existingConstants.add(node);
-		} else {
-			// Delay the field until after our added constants
-			postVisitTasks.add(() -> node.accept(cv));
+			// Existing enum constants keep their place ahead of our added constants
+			return super.visitField(access, name, descriptor, signature, value);
 		}
 
-		return node;
-	}
-
-	@Override
-	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
-		MethodNode node = new MethodNode(access, name, descriptor, signature, exceptions);
-		// Delay the method until after our added constants
-		postVisitTasks.add(() -> node.accept(cv));
+		// Delay the field until after our added constants
+		FieldNode node = new FieldNode(access, name, descriptor, signature, value);
+		delayedFields.add(node);
 		return node;
 	}
 
@@ -99,12 +97,14 @@ public class EnumExtensionClassVisitor extends ClassVisitor {
 			return;
 		}
 
-		// Preserve the existing constants first
-		for (FieldNode existingConstant : existingConstants) {
-			existingConstant.accept(cv);
+		if (pending) {
+			addConstants();
 		}
 
-		// Then add our constants
+		super.visitEnd();
+	}
+
+	private void addConstants() {
 		for (String addedConstant : addedConstants) {
 			FieldVisitor visitor = super.visitField(
 					Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_STATIC | Opcodes.ACC_ENUM,
@@ -117,15 +117,15 @@ public class EnumExtensionClassVisitor extends ClassVisitor {
 			visitor.visitEnd();
 		}
 
-		// Then add the remaining methods/fields
-		for (Runnable task : postVisitTasks) {
-			task.run();
+		// Then add the remaining fields
+		for (FieldNode field : delayedFields) {
+			field.accept(cv);
 		}
 
-		super.visitEnd();
+		delayedFields.clear();
 	}
 
-	private static final class StubEnumConstantAttribute extends Attribute {
+	static final class StubEnumConstantAttribute extends Attribute {
 		StubEnumConstantAttribute() {
 			super("org.spongepowered.asm.mixin.StubEnumConstant");
 		}
@@ -16,20 +16,19 @@
 
 package net.fabricmc.classtweaker.classvisitor;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.signature.SignatureReader;
-import org.objectweb.asm.signature.SignatureVisitor;
 
 import net.fabricmc.classtweaker.api.ClassTweaker;
 import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.validator.InjectedInterfaceValidator;
 
 public class InterfaceInjectionClassVisitor extends ClassVisitor {
 	private static final int INTERFACE_ACCESS = Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE;
@@ -54,7 +53,17 @@ public class InterfaceInjectionClassVisitor extends ClassVisitor {
 
 		final Set<String> modifiedInterfaces = new LinkedHashSet<>();
 		Collections.addAll(modifiedInterfaces, interfaces);
+		signature = injectInterfaces(name, signature, superName, modifiedInterfaces, injectedInterfaces);
 
+		super.visit(version, access, name, signature, superName, modifiedInterfaces.toArray(new String[0]));
+	}
+
+	/**
+	 * Adds the injected interfaces to the interfaces of a class, which must contain the existing ones in order.
+	 *
+	 * @return the new signature of the class
+	 */
+	static @Nullable String injectInterfaces(String name, @Nullable String signature, String superName, Set<String> interfaces, List<InjectedInterface> injectedInterfaces) {
 		StringBuilder newSignature = signature == null ? null : new StringBuilder(signature);
 
 		if (newSignature == null && injectedInterfaces.stream().anyMatch(InjectedInterface::hasGenerics)) {
@@ -70,23 +79,20 @@ public class InterfaceInjectionClassVisitor extends ClassVisitor {
 		}
 
 		for (InjectedInterface injectedInterface : injectedInterfaces) {
-			if (modifiedInterfaces.add(injectedInterface.getInterfaceName()) && newSignature != null) {
+			if (interfaces.add(injectedInterface.getInterfaceName()) && newSignature != null) {
 				newSignature.append(injectedInterface.getInterfaceSignature());
 			}
 		}
 
-		if (newSignature != null) {
-			signature = newSignature.toString();
-
-			// If there are passed generics, are all of them present in the target class?
-			SignatureReader reader = new SignatureReader(signature);
-
-			GenericsChecker checker = new GenericsChecker(Opcodes.ASM9, name, injectedInterfaces);
-			reader.accept(checker);
-			checker.check();
+		if (newSignature == null) {
+			return null;
 		}
 
-		super.visit(version, access, name, signature, superName, modifiedInterfaces.toArray(new String[0]));
+		// If there are passed generics, are all of them present in the target class?
+		InjectedInterfaceValidator.check(name, signature, injectedInterfaces, message -> {
+			throw new IllegalStateException(message);
+		});
+		return newSignature.toString();
 	}
 
 	@Override
@@ -97,13 +103,24 @@ public class InterfaceInjectionClassVisitor extends ClassVisitor {
 
 	@Override
 	public void visitEnd() {
+		if (cv != null) {
+			visitInnerClasses(cv, injectedInterfaces, knownInnerClasses);
+		}
+
+		super.visitEnd();
+	}
+
+	/**
+	 * Visits the inner class entries of the injected interfaces that are not in {@code knownInnerClasses} yet.
+	 */
+	static void visitInnerClasses(ClassVisitor visitor, List<InjectedInterface> injectedInterfaces, Set<String> knownInnerClasses) {
 		// inject any necessary inner class entries
 		// this may produce technically incorrect bytecode cuz we don't know the actual access flags for inner class entries,
 		// but it's hopefully enough to quiet some IDE errors
 		for (final InjectedInterface itf : injectedInterfaces) {
 			final String ifaceName = itf.getInterfaceName();
 
-			if (this.knownInnerClasses.contains(ifaceName)) {
+			if (knownInnerClasses.contains(ifaceName)) {
 				continue;
 			}
 
@@ -122,7 +139,7 @@ public class InterfaceInjectionClassVisitor extends ClassVisitor {
 				if (lastIdx != -1) {
 					final String outerName = ifaceName.substring(0, simpleNameIdx + 1 + lastIdx);
 					final String innerName = simpleName.substring(lastIdx + 1, dollarIdx);
-					super.visitInnerClass(outerName + '$' + innerName, outerName, innerName, INTERFACE_ACCESS);
+					visitor.visitInnerClass(outerName + '$' + innerName, outerName, innerName, INTERFACE_ACCESS);
 				}
 
 				lastIdx = dollarIdx;
@@ -132,74 +149,7 @@ public class InterfaceInjectionClassVisitor extends ClassVisitor {
 			if (lastIdx != -1 && lastIdx != simpleName.length()) {
 				final String outerName = ifaceName.substring(0, simpleNameIdx + 1 + lastIdx);
 				final String innerName = simpleName.substring(lastIdx + 1);
-				super.visitInnerClass(outerName + '$' + innerName, outerName, innerName, INTERFACE_ACCESS);
-			}
-		}
-
-		super.visitEnd();
-	}
-
-	private static class GenericsChecker extends SignatureVisitor {
-		private final String className;
-		private final List<String> typeParameters;
-		private final List<InjectedInterface> injectedInterfaces;
-
-		GenericsChecker(int asmVersion, String className, List<InjectedInterface> injectedInterfaces) {
-			super(asmVersion);
-			this.className = className;
-			this.typeParameters = new ArrayList<>();
-			this.injectedInterfaces = injectedInterfaces;
-		}
-
-		@Override
-		public void visitFormalTypeParameter(String name) {
-			this.typeParameters.add(name);
-			super.visitFormalTypeParameter(name);
-		}
-
-		// Ensures that injected interfaces only use collected type parameters from the target class
-		public void check() {
-			for (InjectedInterface injectedInterface : this.injectedInterfaces) {
-				if (injectedInterface.hasGenerics()) {
-					SignatureReader reader = new SignatureReader(injectedInterface.getInterfaceSignature());
-					GenericsConfirm confirm = new GenericsConfirm(
-							Opcodes.ASM9,
-							className,
-							injectedInterface.getInterfaceName(),
-							this.typeParameters
-					);
-					reader.accept(confirm);
-				}
-			}
-		}
-
-		public static class GenericsConfirm extends SignatureVisitor {
-			private final String className;
-			private final String interfaceName;
-			private final List<String> acceptedTypeVariables;
-
-			GenericsConfirm(int asmVersion, String className, String interfaceName, List<String> acceptedTypeVariables) {
-				super(asmVersion);
-				this.className = className;
-				this.interfaceName = interfaceName;
-				this.acceptedTypeVariables = acceptedTypeVariables;
-			}
-
-			@Override
-			public void visitTypeVariable(String name) {
-				if (!this.acceptedTypeVariables.contains(name)) {
-					throw new IllegalStateException(
-							"Interface "
-									+ this.interfaceName
-									+ " attempted to use a type variable named "
-									+ name
-									+ " which is not present in the "
-									+ this.className
-									+ " class"
-					);
-				}
-
-				super.visitTypeVariable(name);
+				visitor.visitInnerClass(outerName + '$' + innerName, outerName, innerName, INTERFACE_ACCESS);
 			}
 		}
 	}
@@ -22,7 +22,6 @@ import static net.fabricmc.classtweaker.utils.AccessUtils.makePublic;
 import static net.fabricmc.classtweaker.utils.AccessUtils.removeFinal;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.jetbrains.annotations.VisibleForTesting;
@@ -33,117 +32,187 @@ import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
 import net.fabricmc.classtweaker.utils.EntryTriple;
 
 public final class AccessWidenerImpl implements AccessWidener, AccessWidenerVisitor {
+	// Access is stored as a bitmask of these flags, and only turned into the enums below when queried
+	static final int ACCESSIBLE = 1;
+	static final int EXTENDABLE = 2;
+	static final int MUTABLE = 4;
+
+	private static final MutableAccess[] CLASS_ACCESS = {
+			ClassAccess.DEFAULT, ClassAccess.ACCESSIBLE, ClassAccess.EXTENDABLE, ClassAccess.ACCESSIBLE_EXTENDABLE
+	};
+	private static final MutableAccess[] METHOD_ACCESS = {
+			MethodAccess.DEFAULT, MethodAccess.ACCESSIBLE, MethodAccess.EXTENDABLE, MethodAccess.ACCESSIBLE_EXTENDABLE
+	};
+	private static final MutableAccess[] FIELD_ACCESS = {
+			FieldAccess.DEFAULT, FieldAccess.ACCESSIBLE, null, null, FieldAccess.MUTABLE, FieldAccess.ACCESSIBLE_MUTABLE
+	};
+
 	private final String owner;
 
-	MutableAccess classAccess = ClassAccess.DEFAULT;
-	final Map<EntryTriple, MutableAccess> methodAccess = new HashMap<>();
-	final Map<EntryTriple, MutableAccess> fieldAccess = new HashMap<>();
+	int classAccess;
+	final MemberAccessMap methodAccess = new MemberAccessMap();
+	final MemberAccessMap fieldAccess = new MemberAccessMap();
+	boolean callSiteRewrite;
 
 	public AccessWidenerImpl(String owner) {
 		this.owner = owner;
 	}
 
+	static MutableAccess classAccess(int bits) {
+		return CLASS_ACCESS[bits];
+	}
+
+	static MutableAccess methodAccess(int bits) {
+		return METHOD_ACCESS[bits];
+	}
+
+	static MutableAccess fieldAccess(int bits) {
+		return FIELD_ACCESS[bits];
+	}
+
 	@Override
 	public MutableAccess getClassAccess() {
-		return classAccess;
+		return CLASS_ACCESS[classAccess];
 	}
 
 	@Override
 	public Access getMethodAccess(EntryTriple entryTriple) {
-		final Access access = methodAccess.get(entryTriple);
-
-		if (access == null) {
+		if (!entryTriple.getOwner().equals(owner)) {
 			return MutableAccess.DEFAULT;
 		}
 
-		return access;
+		return getMethodAccess(entryTriple.getName(), entryTriple.getDesc());
 	}
 
 	@Override
 	public Access getFieldAccess(EntryTriple entryTriple) {
-		final Access access = fieldAccess.get(entryTriple);
+		if (!entryTriple.getOwner().equals(owner)) {
+			return MutableAccess.DEFAULT;
+		}
 
-		if (access == null) {
+		return getFieldAccess(entryTriple.getName(), entryTriple.getDesc());
+	}
+
+	@Override
+	public Access getMethodAccess(String name, String descriptor) {
+		final int access = methodAccess.get(name, descriptor);
+
+		if (access == 0) {
+			return MutableAccess.DEFAULT;
+		}
+
+		return METHOD_ACCESS[access];
+	}
+
+	@Override
+	public Access getFieldAccess(String name, String descriptor) {
+		final int access = fieldAccess.get(name, descriptor);
+
+		if (access == 0) {
 			return MutableAccess.DEFAULT;
 		}
 
-		return access;
+		return FIELD_ACCESS[access];
 	}
 
 	@Override
 	public Access getCanonicalConstructorAccess() {
-		if (classAccess.isAccessible()) {
+		if ((classAccess & ACCESSIBLE) != 0) {
 			return MethodAccess.ACCESSIBLE;
 		} else {
 			return MethodAccess.DEFAULT;
 		}
 	}
 
+	@Override
+	public boolean needsCallSiteRewrite() {
+		return callSiteRewrite;
+	}
+
 	@Override
 	public Map<EntryTriple, Access> getAllMethodAccesses() {
-		return (Map) methodAccess;
+		return methodAccess.toMap(owner, AccessWidenerImpl::methodAccess);
 	}
 
 	@Override
 	public Map<EntryTriple, Access> getAllFieldAccesses() {
-		return (Map) fieldAccess;
+		return fieldAccess.toMap(owner, AccessWidenerImpl::fieldAccess);
 	}
 
 	@Override
 	public void visitClass(AccessWidenerVisitor.AccessType access, boolean transitive) {
-		classAccess = applyAccess(access, classAccess, null);
+		if (toBits(access) == MUTABLE) {
+			throw new UnsupportedOperationException("Classes cannot be made mutable");
+		}
+
+		classAccess |= toBits(access);
 	}
 
 	@Override
 	public void visitMethod(String name, String descriptor, AccessWidenerVisitor.AccessType access, boolean transitive) {
-		addOrMerge(methodAccess, new EntryTriple(owner, name, descriptor), access, MethodAccess.DEFAULT);
+		final int bits = toBits(access);
+
+		if (bits == MUTABLE) {
+			throw new UnsupportedOperationException("Methods cannot be made mutable");
+		}
+
+		// Making a method accessible or extendable requires the same of its class
+		classAccess |= bits;
+		methodAccess.add(name, descriptor, bits);
+		callSiteRewrite |= !name.equals("<init>");
 	}
 
 	@Override
 	public void visitField(String name, String descriptor, AccessWidenerVisitor.AccessType access, boolean transitive) {
-		addOrMerge(fieldAccess, new EntryTriple(owner, name, descriptor), access, FieldAccess.DEFAULT);
+		final int bits = toBits(access);
+
+		if (bits == EXTENDABLE) {
+			throw new UnsupportedOperationException("Fields cannot be made extendable");
+		}
+
+		// Making a field accessible requires its class to be accessible
+		classAccess |= bits & ACCESSIBLE;
+		fieldAccess.add(name, descriptor, bits);
 	}
 
-	MutableAccess applyAccess(AccessWidenerVisitor.AccessType input, MutableAccess access, EntryTriple entryTriple) {
-		switch (input) {
+	private static int toBits(AccessWidenerVisitor.AccessType access) {
+		if (access == null) {
+			throw new RuntimeException("Input access is null");
+		}
+
+		switch (access) {
 		case ACCESSIBLE:
-			makeClassAccessible(entryTriple);
-			return access.makeAccessible();
+			return ACCESSIBLE;
 		case EXTENDABLE:
-			makeClassExtendable(entryTriple);
-			return access.makeExtendable();
+			return EXTENDABLE;
 		case MUTABLE:
-			return access.makeMutable();
+			return MUTABLE;
 		default:
-			throw new UnsupportedOperationException("Unknown access type:" + input);
+			throw new UnsupportedOperationException("Unknown access type:" + access);
 		}
 	}
 
-	private void makeClassAccessible(EntryTriple entryTriple) {
-		if (entryTriple == null) return;
-		classAccess = applyAccess(AccessWidenerVisitor.AccessType.ACCESSIBLE, classAccess, null);
+	/**
+	 * @return an independent copy with the same access
+	 */
+	AccessWidenerImpl copy() {
+		AccessWidenerImpl copy = new AccessWidenerImpl(owner);
+		copy.merge(this);
+		return copy;
 	}
 
-	private void makeClassExtendable(EntryTriple entryTriple) {
-		if (entryTriple == null) return;
-		classAccess = applyAccess(AccessWidenerVisitor.AccessType.EXTENDABLE, classAccess, null);
-	}
-
-	void addOrMerge(Map<EntryTriple, MutableAccess> map, EntryTriple entry, AccessWidenerVisitor.AccessType access, MutableAccess defaultAccess) {
-		if (entry == null || access == null) {
-			throw new RuntimeException("Input entry or access is null");
-		}
-
-		map.put(entry, applyAccess(access, map.getOrDefault(entry, defaultAccess), entry));
+	/**
+	 * Merges the access of another widener for the same owner into this one. Since merging access only ever widens it,
+	 * the result does not depend on the order in which wideners are merged.
+	 */
+	void merge(AccessWidenerImpl other) {
+		classAccess |= other.classAccess;
+		callSiteRewrite |= other.callSiteRewrite;
+		methodAccess.addAll(other.methodAccess);
+		fieldAccess.addAll(other.fieldAccess);
 	}
 
 	interface MutableAccess extends Access {
-		MutableAccess makeAccessible();
-
-		MutableAccess makeExtendable();
-
-		MutableAccess makeMutable();
-
 		Access DEFAULT = new Access() {
 			@Override
 			public boolean isAccessible() {
@@ -185,29 +254,6 @@ public final class AccessWidenerImpl implements AccessWidener, AccessWidenerVisi
 			this.operator = operator;
 		}
 
-		@Override
-		public MutableAccess makeAccessible() {
-			if (this == EXTENDABLE || this == ACCESSIBLE_EXTENDABLE) {
-				return ACCESSIBLE_EXTENDABLE;
-			}
-
-			return ACCESSIBLE;
-		}
-
-		@Override
-		public MutableAccess makeExtendable() {
-			if (isAccessible()) {
-				return ACCESSIBLE_EXTENDABLE;
-			}
-
-			return EXTENDABLE;
-		}
-
-		@Override
-		public MutableAccess makeMutable() {
-			throw new UnsupportedOperationException("Classes cannot be made mutable");
-		}
-
 		@Override
 		public boolean isAccessible() {
 			return this == ACCESSIBLE || this == ACCESSIBLE_EXTENDABLE;
@@ -242,29 +288,6 @@ public final class AccessWidenerImpl implements AccessWidener, AccessWidenerVisi
 			this.operator = operator;
 		}
 
-		@Override
-		public MutableAccess makeAccessible() {
-			if (isExtendable()) {
-				return ACCESSIBLE_EXTENDABLE;
-			}
-
-			return ACCESSIBLE;
-		}
-
-		@Override
-		public MutableAccess makeExtendable() {
-			if (isAccessible()) {
-				return ACCESSIBLE_EXTENDABLE;
-			}
-
-			return EXTENDABLE;
-		}
-
-		@Override
-		public MutableAccess makeMutable() {
-			throw new UnsupportedOperationException("Methods cannot be made mutable");
-		}
-
 		@Override
 		public boolean isAccessible() {
 			return this == ACCESSIBLE || this == ACCESSIBLE_EXTENDABLE;
@@ -313,29 +336,6 @@ public final class AccessWidenerImpl implements AccessWidener, AccessWidenerVisi
 			this.operator = operator;
 		}
 
-		@Override
-		public MutableAccess makeAccessible() {
-			if (isMutable()) {
-				return ACCESSIBLE_MUTABLE;
-			}
-
-			return ACCESSIBLE;
-		}
-
-		@Override
-		public MutableAccess makeExtendable() {
-			throw new UnsupportedOperationException("Fields cannot be made extendable");
-		}
-
-		@Override
-		public MutableAccess makeMutable() {
-			if (isAccessible()) {
-				return ACCESSIBLE_MUTABLE;
-			}
-
-			return MUTABLE;
-		}
-
 		@Override
 		public boolean isAccessible() {
 			return this == ACCESSIBLE || this == ACCESSIBLE_MUTABLE;
@@ -357,7 +357,7 @@ public final class AccessWidenerImpl implements AccessWidener, AccessWidenerVisi
 		}
 	}
 
-	static final AccessWidener DEFAULT = new AccessWidener() {
+	public static final AccessWidener DEFAULT = new AccessWidener() {
 		@Override
 		public Access getClassAccess() {
 			return MutableAccess.DEFAULT;
@@ -373,11 +373,26 @@ public final class AccessWidenerImpl implements AccessWidener, AccessWidenerVisi
 			return MutableAccess.DEFAULT;
 		}
 
+		@Override
+		public Access getMethodAccess(String name, String descriptor) {
+			return MutableAccess.DEFAULT;
+		}
+
+		@Override
+		public Access getFieldAccess(String name, String descriptor) {
+			return MutableAccess.DEFAULT;
+		}
+
 		@Override
 		public Access getCanonicalConstructorAccess() {
 			return MutableAccess.DEFAULT;
 		}
 
+		@Override
+		public boolean needsCallSiteRewrite() {
+			return false;
+		}
+
 		@Override
 		public Map<EntryTriple, Access> getAllMethodAccesses() {
 			return Collections.emptyMap();
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.nio.ByteBuffer;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.reader.ClassTweakerReaderImpl;
+
+/**
+ * Constants and helpers for the binary class tweaker format.
+ *
+ * <p>The format is designed to be used in place, for example from a memory mapped file, see
+ * {@link MappedClassTweaker}. All values are big-endian u4 and all offsets are absolute. Strings are stored once in
+ * a string table and referenced by index everywhere else. Lookup tables are open addressing hash tables using linear
+ * probing, their capacity is a power of two larger than the number of entries, so there is always an empty slot.
+ *
+ * <pre>
+ * magic, version, key length, key bytes (padded to 4 bytes)
+ * header:
+ *   namespace string index (-1 for none)
+ *   string count, string offsets (count + 1 entries, the last one is the end), string hashes ({@link String#hashCode()})
+ *   target count, target list (string indices, in target order), target table capacity, target table (string index + 1)
+ *   owner count, owner list (record offsets, in target order), owner table capacity, owner table (record offset)
+ *   number of owners with access wideners, injected interfaces and enum extensions
+ * owner records:
+ *   owner string index, kinds of entries, class access flags,
+ *   method count, method table capacity, method table (name string index + 1, descriptor string index, access flags),
+ *   field count, field table capacity, field table (same as the method table),
+ *   interface count, interface list (string indices), enum constant count, enum constant list (string indices)
+ * </pre>
+ */
+public final class ClassTweakerBinaryFormat {
+	public static final int MAGIC = 0x43544200; // "CTB\0"
+	public static final int FORMAT_VERSION = 3;
+
+	public static final int HAS_ACCESS_WIDENER = 1;
+	public static final int HAS_INJECTED_INTERFACES = 2;
+	public static final int HAS_ENUM_EXTENSIONS = 4;
+	public static final int HAS_CALL_SITE_REWRITE = 8;
+
+	public static final int ACCESSIBLE = 1;
+	public static final int EXTENDABLE = 2;
+	public static final int MUTABLE = 4;
+
+	// Offsets in the header, relative to its start
+	public static final int NAMESPACE = 0;
+	public static final int STRING_COUNT = 4;
+	public static final int STRING_OFFSETS = 8;
+	public static final int STRING_HASHES = 12;
+	public static final int TARGET_COUNT = 16;
+	public static final int TARGET_LIST = 20;
+	public static final int TARGET_TABLE_CAPACITY = 24;
+	public static final int TARGET_TABLE = 28;
+	public static final int OWNER_COUNT = 32;
+	public static final int OWNER_LIST = 36;
+	public static final int OWNER_TABLE_CAPACITY = 40;
+	public static final int OWNER_TABLE = 44;
+	public static final int ACCESS_WIDENER_COUNT = 48;
+	public static final int INJECTED_INTERFACE_COUNT = 52;
+	public static final int ENUM_EXTENSION_COUNT = 56;
+	public static final int HEADER_SIZE = 60;
+
+	// Offsets in an owner record, relative to its start
+	public static final int OWNER_NAME = 0;
+	public static final int OWNER_KINDS = 4;
+	public static final int OWNER_CLASS_ACCESS = 8;
+	public static final int OWNER_METHOD_COUNT = 12;
+	public static final int OWNER_METHOD_TABLE_CAPACITY = 16;
+	public static final int OWNER_METHOD_TABLE = 20;
+	public static final int OWNER_FIELD_COUNT = 24;
+	public static final int OWNER_FIELD_TABLE_CAPACITY = 28;
+	public static final int OWNER_FIELD_TABLE = 32;
+	public static final int OWNER_INTERFACE_COUNT = 36;
+	public static final int OWNER_INTERFACE_LIST = 40;
+	public static final int OWNER_ENUM_COUNT = 44;
+	public static final int OWNER_ENUM_LIST = 48;
+	public static final int OWNER_RECORD_SIZE = 52;
+
+	public static final int MEMBER_SLOT_SIZE = 12;
+
+	private ClassTweakerBinaryFormat() {
+	}
+
+	/**
+	 * The offset of the header, following the cache key.
+	 */
+	public static int headerOffset(int keyLength) {
+		return align(12 + keyLength);
+	}
+
+	public static int align(int offset) {
+		return (offset + 3) & ~3;
+	}
+
+	public static int tableCapacity(int entries) {
+		return Integer.highestOneBit(Math.max(1, entries * 2 - 1)) << 1;
+	}
+
+	/**
+	 * Computes the {@link String#hashCode()} the name would have with every {@code separatorChar} replaced by a
+	 * forward slash.
+	 */
+	public static int internalNameHash(CharSequence name, char separatorChar) {
+		int hash = 0;
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			hash = 31 * hash + (c == separatorChar ? '/' : c);
+		}
+
+		return hash;
+	}
+
+	public static int slot(int hash, int capacity) {
+		return (hash ^ (hash >>> 16)) & (capacity - 1);
+	}
+
+	public static int memberHash(String name, String descriptor) {
+		return memberHash(name.hashCode(), descriptor.hashCode());
+	}
+
+	public static int memberHash(int nameHash, int descriptorHash) {
+		return nameHash * 31 + descriptorHash;
+	}
+
+	public static int toFlags(AccessWidener.Access access) {
+		return (access.isAccessible() ? ACCESSIBLE : 0)
+				| (access.isExtendable() ? EXTENDABLE : 0)
+				| (access.isMutable() ? MUTABLE : 0);
+	}
+
+	public static String decode(ByteBuffer buffer, int start, int end) {
+		if (buffer.hasArray()) {
+			return new String(buffer.array(), buffer.arrayOffset() + start, end - start, ClassTweakerReaderImpl.ENCODING);
+		}
+
+		byte[] bytes = new byte[end - start];
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.position(start);
+		duplicate.get(bytes);
+		return new String(bytes, ClassTweakerReaderImpl.ENCODING);
+	}
+
+	/**
+	 * Compares UTF-8 encoded bytes to a string without decoding them into a new string.
+	 */
+	public static boolean equals(ByteBuffer buffer, int start, int end, CharSequence string) {
+		return equals(buffer, start, end, string, '/');
+	}
+
+	/**
+	 * Compares UTF-8 encoded bytes to a string without decoding them into a new string, reading every
+	 * {@code separatorChar} in the string as a forward slash.
+	 */
+	public static boolean equals(ByteBuffer buffer, int start, int end, CharSequence string, char separatorChar) {
+		int length = string.length();
+		int i = 0;
+		int pos = start;
+
+		while (pos < end) {
+			int b = buffer.get(pos) & 0xFF;
+			int codePoint;
+
+			// A damaged sequence running past the end of the string never matches
+			if (pos + (b < 0x80 ? 1 : b < 0xE0 ? 2 : b < 0xF0 ? 3 : 4) > end) {
+				return false;
+			}
+
+			if (b < 0x80) {
+				codePoint = b;
+				pos++;
+			} else if (b < 0xE0) {
+				codePoint = (b & 0x1F) << 6 | (buffer.get(pos + 1) & 0x3F);
+				pos += 2;
+			} else if (b < 0xF0) {
+				codePoint = (b & 0x0F) << 12 | (buffer.get(pos + 1) & 0x3F) << 6 | (buffer.get(pos + 2) & 0x3F);
+				pos += 3;
+			} else {
+				codePoint = (b & 0x07) << 18 | (buffer.get(pos + 1) & 0x3F) << 12 | (buffer.get(pos + 2) & 0x3F) << 6 | (buffer.get(pos + 3) & 0x3F);
+				pos += 4;
+			}
+
+			if (Character.isSupplementaryCodePoint(codePoint)) {
+				if (i + 1 >= length || string.charAt(i) != Character.highSurrogate(codePoint) || string.charAt(i + 1) != Character.lowSurrogate(codePoint)) {
+					return false;
+				}
+
+				i += 2;
+			} else {
+				if (i >= length || (string.charAt(i) == separatorChar ? '/' : string.charAt(i)) != codePoint) {
+					return false;
+				}
+
+				i++;
+			}
+		}
+
+		return i == length;
+	}
+}
@@ -38,9 +38,7 @@ import net.fabricmc.classtweaker.api.EnumExtension;
 import net.fabricmc.classtweaker.api.InjectedInterface;
 import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
 import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
-import net.fabricmc.classtweaker.classvisitor.AccessWidenerClassVisitor;
-import net.fabricmc.classtweaker.classvisitor.EnumExtensionClassVisitor;
-import net.fabricmc.classtweaker.classvisitor.InterfaceInjectionClassVisitor;
+import net.fabricmc.classtweaker.classvisitor.ClassTweakerClassVisitor;
 
 public final class ClassTweakerImpl implements ClassTweaker, ClassTweakerVisitor {
 	String namespace;
@@ -50,9 +48,11 @@ public final class ClassTweakerImpl implements ClassTweaker, ClassTweakerVisitor
 	final Map<String, List<InjectedInterfaceImpl>> injectedInterfaces = new HashMap<>();
 	final Map<String, List<EnumExtensionImpl>> enumExtensions = new HashMap<>();
 	// Contains the class-names that are affected by loaded tweakers.
-	// Names are period-separated binary names (i.e. a.b.C).
+	// Names are forward-slash separated internal names (i.e. a/b/C), like the keys above.
 	final Set<String> targetClasses = new LinkedHashSet<>();
 	final Set<String> classes = new LinkedHashSet<>();
+	// Built on demand from targetClasses, reset whenever a target is added
+	private TargetIndex targetIndex;
 
 	@Override
 	public void visitHeader(String namespace) {
@@ -94,7 +94,25 @@ public final class ClassTweakerImpl implements ClassTweaker, ClassTweakerVisitor
 		addTargets(owner);
 	}
 
+	/**
+	 * Merges all entries of another instance into this one. The result is the same as if the entries of
+	 * {@code other} had been visited on this instance after all of its own entries.
+	 */
+	public void merge(ClassTweakerImpl other) {
+		if (other.namespace != null) {
+			visitHeader(other.namespace);
+		}
+
+		other.accessWideners.forEach((owner, accessWidener) -> accessWideners.computeIfAbsent(owner, AccessWidenerImpl::new).merge(accessWidener));
+		other.injectedInterfaces.forEach((owner, list) -> injectedInterfaces.computeIfAbsent(owner, s -> new ArrayList<>()).addAll(list));
+		other.enumExtensions.forEach((owner, list) -> enumExtensions.computeIfAbsent(owner, s -> new ArrayList<>()).addAll(list));
+		targetClasses.addAll(other.targetClasses);
+		classes.addAll(other.classes);
+		targetIndex = null;
+	}
+
 	private void addTargets(String clazz) {
+		targetIndex = null;
 		classes.add(clazz);
 		targetClasses.add(clazz);
 
@@ -106,20 +124,17 @@ public final class ClassTweakerImpl implements ClassTweaker, ClassTweakerVisitor
 	}
 
 	@Override
-	public ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer) {
-		if (!accessWideners.isEmpty()) {
-			classVisitor = new AccessWidenerClassVisitor(api, classVisitor, this);
-		}
-
-		if (!injectedInterfaces.isEmpty()) {
-			classVisitor = new InterfaceInjectionClassVisitor(api, classVisitor, this);
-		}
+	public ClassTweaker snapshot() {
+		return new FrozenClassTweaker(this);
+	}
 
-		if (!enumExtensions.isEmpty()) {
-			classVisitor = new EnumExtensionClassVisitor(api, classVisitor, this);
+	@Override
+	public ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer) {
+		if (accessWideners.isEmpty() && injectedInterfaces.isEmpty() && enumExtensions.isEmpty()) {
+			return classVisitor;
 		}
 
-		return classVisitor;
+		return new ClassTweakerClassVisitor(api, classVisitor, this);
 	}
 
 	@Override
@@ -127,6 +142,18 @@ public final class ClassTweakerImpl implements ClassTweaker, ClassTweakerVisitor
 		return Collections.unmodifiableSet(targetClasses);
 	}
 
+	@Override
+	public boolean isTarget(CharSequence name, boolean dotted) {
+		TargetIndex targetIndex = this.targetIndex;
+
+		if (targetIndex == null) {
+			targetIndex = new TargetIndex(targetClasses);
+			this.targetIndex = targetIndex;
+		}
+
+		return targetIndex.contains(name, dotted);
+	}
+
 	@VisibleForTesting
 	public Set<String> getClasses() {
 		return Collections.unmodifiableSet(classes);
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * Implemented by the lookup classes generated for a {@link CompiledClassTweaker}, each of which covers a shard of the
+ * owners. The owners of a shard are numbered in the order of their names, and access is returned as the flags of
+ * {@link ClassTweakerBinaryFormat}.
+ */
+@ApiStatus.Internal
+public interface ClassTweakerLookup {
+	/**
+	 * Set on the result of {@link #getClassAccess} when the owner needs its call sites rewritten.
+	 */
+	int CALL_SITE_REWRITE = 8;
+
+	String getCacheKey();
+
+	int getOwnerCount();
+
+	/**
+	 * @return the index of the owner, or {@code -1} if the class has no access widener
+	 */
+	int getOwnerIndex(String owner);
+
+	int getClassAccess(int owner);
+
+	int getMethodAccess(int owner, String name, String descriptor);
+
+	int getFieldAccess(int owner, String name, String descriptor);
+}
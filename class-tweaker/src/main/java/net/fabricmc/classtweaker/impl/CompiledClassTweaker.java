@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.ACCESSIBLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.EXTENDABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.toFlags;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodTooLargeException;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.classvisitor.ClassTweakerClassVisitor;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+/**
+ * A read-only class tweaker that answers access lookups from a class generated for its entries, while all other
+ * queries are passed on to a snapshot of the class tweaker it was compiled from.
+ *
+ * <p>The generated class switches over the owner, then the member name and descriptor, and returns constant access
+ * flags. Since the entries are fixed, the JIT can inline these lookups into the transformers that call them.
+ *
+ * <p>Large class tweakers are split over several generated classes, each with its own constant pool. A class holds
+ * a few thousand owners with a handful of members each, so typical class tweakers compile to a single class. The
+ * lookups of all shards go through the same {@link ClassTweakerLookup} call sites. With more than two shards these are
+ * megamorphic, so the JIT can no longer inline the lookups, and every lookup costs an interface call.
+ *
+ * <p>Generating the classes takes some time for large class tweakers, so their bytes can be cached alongside the
+ * binary format (see {@link MappedClassTweaker}) under the same cache key, and passed to {@link #load} later on.
+ */
+public final class CompiledClassTweaker implements ClassTweaker {
+	// Must be changed whenever the generated class changes, so that cached lookup classes are not reused
+	private static final int GENERATOR_VERSION = 2;
+
+	private final ClassTweaker classTweaker;
+	private final byte[] lookupClass;
+	private final ClassTweakerLookup[] lookups;
+	// The index of the first owner of each lookup in accessWideners
+	private final int[] ownerOffsets;
+	private final CompiledAccessWidener[] accessWideners;
+	private final boolean empty;
+
+	private CompiledClassTweaker(ClassTweaker classTweaker, byte[] lookupClass, byte[][] lookupClasses) {
+		this.classTweaker = classTweaker;
+		this.lookupClass = lookupClass;
+		this.lookups = new ClassTweakerLookup[lookupClasses.length];
+		this.ownerOffsets = new int[lookupClasses.length];
+		int ownerCount = 0;
+
+		for (int i = 0; i < lookupClasses.length; i++) {
+			lookups[i] = define(lookupClasses[i]);
+			ownerOffsets[i] = ownerCount;
+			ownerCount += lookups[i].getOwnerCount();
+		}
+
+		this.accessWideners = new CompiledAccessWidener[ownerCount];
+		this.empty = classTweaker.getTargets().isEmpty();
+	}
+
+	/**
+	 * Generates the lookup class for a snapshot of the given class tweaker.
+	 *
+	 * @param cacheKey identifies the entries of the class tweaker, see {@link #load}
+	 * @throws IllegalArgumentException if a single class has too many entries to fit into a generated class
+	 */
+	public static CompiledClassTweaker compile(ClassTweaker classTweaker, byte[] cacheKey) {
+		ClassTweaker snapshot = classTweaker.snapshot();
+		Map<String, AccessWidener> allAccessWideners = new TreeMap<>(snapshot.getAllAccessWideners());
+		int ownerCount = allAccessWideners.size();
+		String[] owners = new String[ownerCount];
+		int[] classAccess = new int[ownerCount];
+		List<List<LookupClassGenerator.Entry>> methods = new ArrayList<>(ownerCount);
+		List<List<LookupClassGenerator.Entry>> fields = new ArrayList<>(ownerCount);
+		int owner = 0;
+
+		for (Map.Entry<String, AccessWidener> entry : allAccessWideners.entrySet()) {
+			AccessWidener accessWidener = entry.getValue();
+			owners[owner] = entry.getKey();
+			classAccess[owner] = toFlags(accessWidener.getClassAccess()) | (accessWidener.needsCallSiteRewrite() ? ClassTweakerLookup.CALL_SITE_REWRITE : 0);
+			methods.add(entries(accessWidener.getAllMethodAccesses()));
+			fields.add(entries(accessWidener.getAllFieldAccesses()));
+			owner++;
+		}
+
+		byte[][] lookupClasses;
+
+		try {
+			lookupClasses = LookupClassGenerator.generate(cacheKeyString(cacheKey), owners, classAccess, methods, fields);
+		} catch (ClassTooLargeException | MethodTooLargeException e) {
+			throw new IllegalArgumentException("Class tweaker is too large to compile", e);
+		}
+
+		return new CompiledClassTweaker(snapshot, pack(lookupClasses), lookupClasses);
+	}
+
+	/**
+	 * Loads lookup classes that were generated by {@link #compile} before, see {@link #getLookupClass()}. Their cache
+	 * key is read from the class files before they are loaded, so classes with a different key are never run.
+	 *
+	 * @param classTweaker a class tweaker with the same entries as the one that was compiled
+	 * @return the compiled class tweaker, or {@code null} if the lookup classes were generated with a different cache
+	 * key or by a different version of this library
+	 * @throws IllegalArgumentException if the bytes are not lookup classes
+	 */
+	public static @Nullable CompiledClassTweaker load(ClassTweaker classTweaker, byte[] lookupClass, byte[] cacheKey) {
+		byte[][] lookupClasses = unpack(lookupClass);
+		String expectedKey = cacheKeyString(cacheKey);
+
+		for (byte[] shard : lookupClasses) {
+			if (!expectedKey.equals(LookupClassGenerator.readCacheKey(shard))) {
+				return null;
+			}
+		}
+
+		return new CompiledClassTweaker(classTweaker.snapshot(), lookupClass.clone(), lookupClasses);
+	}
+
+	/**
+	 * Joins the generated classes into a single array: their count, then the length and bytes of each class.
+	 */
+	private static byte[] pack(byte[][] lookupClasses) {
+		int size = 4;
+
+		for (byte[] lookupClass : lookupClasses) {
+			size += 4 + lookupClass.length;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(lookupClasses.length);
+
+		for (byte[] lookupClass : lookupClasses) {
+			buffer.putInt(lookupClass.length);
+			buffer.put(lookupClass);
+		}
+
+		return buffer.array();
+	}
+
+	private static byte[][] unpack(byte[] data) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			int count = buffer.getInt();
+
+			if (count <= 0 || count > buffer.remaining() / 4) {
+				throw new IllegalArgumentException("Not a class tweaker lookup class: invalid class count " + count);
+			}
+
+			byte[][] lookupClasses = new byte[count][];
+
+			for (int i = 0; i < count; i++) {
+				lookupClasses[i] = new byte[buffer.getInt()];
+				buffer.get(lookupClasses[i]);
+			}
+
+			return lookupClasses;
+		} catch (BufferUnderflowException | NegativeArraySizeException e) {
+			throw new IllegalArgumentException("Not a class tweaker lookup class", e);
+		}
+	}
+
+	private static List<LookupClassGenerator.Entry> entries(Map<EntryTriple, AccessWidener.Access> accesses) {
+		List<LookupClassGenerator.Entry> entries = new ArrayList<>(accesses.size());
+		accesses.forEach((entry, access) -> entries.add(new LookupClassGenerator.Entry(entry.getName(), entry.getDesc(), toFlags(access))));
+		// Sorted so that the same entries always result in the same class
+		entries.sort(Comparator.comparing((LookupClassGenerator.Entry entry) -> entry.key).thenComparing(entry -> entry.descriptor));
+		return entries;
+	}
+
+	private static String cacheKeyString(byte[] cacheKey) {
+		StringBuilder builder = new StringBuilder().append(GENERATOR_VERSION).append(':');
+
+		for (byte b : cacheKey) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return builder.toString();
+	}
+
+	private static ClassTweakerLookup define(byte[] lookupClass) {
+		try {
+			Class<?> lookup = new LookupClassLoader().define(lookupClass);
+			return (ClassTweakerLookup) lookup.getConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+			throw new IllegalArgumentException("Not a class tweaker lookup class", e);
+		}
+	}
+
+	/**
+	 * Returns the bytes of the generated lookup classes, to be cached and passed to {@link #load}.
+	 */
+	public byte[] getLookupClass() {
+		return lookupClass.clone();
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		throw readOnly();
+	}
+
+	@Override
+	public @Nullable AccessWidenerVisitor visitAccessWidener(String owner) {
+		throw readOnly();
+	}
+
+	@Override
+	public void visitInjectedInterface(String owner, String iface, boolean transitive) {
+		throw readOnly();
+	}
+
+	@Override
+	public void visitEnumExtension(String owner, String addedConstant, boolean transitive) {
+		throw readOnly();
+	}
+
+	private static UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("Compiled class tweakers are read-only");
+	}
+
+	@Override
+	public ClassTweaker snapshot() {
+		return this;
+	}
+
+	@Override
+	public ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer) {
+		if (empty) {
+			return classVisitor;
+		}
+
+		return new ClassTweakerClassVisitor(api, classVisitor, this);
+	}
+
+	@Override
+	public @Nullable String getNamespace() {
+		return classTweaker.getNamespace();
+	}
+
+	@Override
+	public Set<String> getTargets() {
+		return classTweaker.getTargets();
+	}
+
+	@Override
+	public boolean isTarget(CharSequence name, boolean dotted) {
+		return classTweaker.isTarget(name, dotted);
+	}
+
+	@Override
+	public AccessWidener getAccessWidener(String className) {
+		int shard = LookupClassGenerator.shardOf(className, lookups.length);
+		ClassTweakerLookup lookup = lookups[shard];
+		int owner = lookup.getOwnerIndex(className);
+
+		if (owner < 0) {
+			return AccessWidenerImpl.DEFAULT;
+		}
+
+		CompiledAccessWidener accessWidener = accessWideners[ownerOffsets[shard] + owner];
+
+		if (accessWidener == null) {
+			// All fields are final, so racing threads can only ever see complete instances
+			accessWideners[ownerOffsets[shard] + owner] = accessWidener = new CompiledAccessWidener(className, lookup, owner, lookup.getClassAccess(owner));
+		}
+
+		return accessWidener;
+	}
+
+	@Override
+	public Map<String, AccessWidener> getAllAccessWideners() {
+		return classTweaker.getAllAccessWideners();
+	}
+
+	@Override
+	public List<InjectedInterface> getInjectedInterfaces(String className) {
+		return classTweaker.getInjectedInterfaces(className);
+	}
+
+	@Override
+	public Map<String, List<InjectedInterface>> getAllInjectedInterfaces() {
+		return classTweaker.getAllInjectedInterfaces();
+	}
+
+	@Override
+	public List<EnumExtension> getEnumExtensions(String className) {
+		return classTweaker.getEnumExtensions(className);
+	}
+
+	@Override
+	public Map<String, List<EnumExtension>> getAllEnumExtensions() {
+		return classTweaker.getAllEnumExtensions();
+	}
+
+	private final class CompiledAccessWidener implements AccessWidener {
+		private final String name;
+		private final ClassTweakerLookup lookup;
+		private final int owner;
+		private final int classAccess;
+
+		CompiledAccessWidener(String name, ClassTweakerLookup lookup, int owner, int classAccess) {
+			this.name = name;
+			this.lookup = lookup;
+			this.owner = owner;
+			this.classAccess = classAccess;
+		}
+
+		@Override
+		public Access getClassAccess() {
+			return AccessWidenerImpl.classAccess(classAccess & (ACCESSIBLE | EXTENDABLE));
+		}
+
+		@Override
+		public Access getMethodAccess(EntryTriple entryTriple) {
+			if (!entryTriple.getOwner().equals(name)) {
+				return AccessWidenerImpl.MutableAccess.DEFAULT;
+			}
+
+			return getMethodAccess(entryTriple.getName(), entryTriple.getDesc());
+		}
+
+		@Override
+		public Access getFieldAccess(EntryTriple entryTriple) {
+			if (!entryTriple.getOwner().equals(name)) {
+				return AccessWidenerImpl.MutableAccess.DEFAULT;
+			}
+
+			return getFieldAccess(entryTriple.getName(), entryTriple.getDesc());
+		}
+
+		@Override
+		public Access getMethodAccess(String name, String descriptor) {
+			int access = lookup.getMethodAccess(owner, name, descriptor);
+			return access == 0 ? AccessWidenerImpl.MutableAccess.DEFAULT : AccessWidenerImpl.methodAccess(access);
+		}
+
+		@Override
+		public Access getFieldAccess(String name, String descriptor) {
+			int access = lookup.getFieldAccess(owner, name, descriptor);
+			return access == 0 ? AccessWidenerImpl.MutableAccess.DEFAULT : AccessWidenerImpl.fieldAccess(access);
+		}
+
+		@Override
+		public Access getCanonicalConstructorAccess() {
+			if ((classAccess & ACCESSIBLE) != 0) {
+				return AccessWidenerImpl.MethodAccess.ACCESSIBLE;
+			} else {
+				return AccessWidenerImpl.MethodAccess.DEFAULT;
+			}
+		}
+
+		@Override
+		public boolean needsCallSiteRewrite() {
+			return (classAccess & ClassTweakerLookup.CALL_SITE_REWRITE) != 0;
+		}
+
+		@Override
+		public Map<EntryTriple, Access> getAllMethodAccesses() {
+			return classTweaker.getAccessWidener(name).getAllMethodAccesses();
+		}
+
+		@Override
+		public Map<EntryTriple, Access> getAllFieldAccesses() {
+			return classTweaker.getAccessWidener(name).getAllFieldAccesses();
+		}
+	}
+
+	private static final class LookupClassLoader extends ClassLoader {
+		LookupClassLoader() {
+			super(ClassTweakerLookup.class.getClassLoader());
+		}
+
+		Class<?> define(byte[] lookupClass) {
+			return defineClass(LookupClassGenerator.CLASS_NAME.replace('/', '.'), lookupClass, 0, lookupClass.length);
+		}
+	}
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ConcurrentClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.classvisitor.ClassTweakerClassVisitor;
+
+/**
+ * A {@link ClassTweaker} that can be visited from multiple threads at once, for example by several readers feeding
+ * the same instance.
+ *
+ * <p>Since widening access is commutative, the resulting access is the same as after visiting all entries on a
+ * {@link ClassTweakerImpl}, regardless of how the visits interleave. Injected interfaces and enum extensions are kept
+ * sorted by their position in the sequential load order, see {@link #visitSource(int)}. Each target remembers the
+ * position of the first entry that added it, so {@link #getTargets()} lists the targets in the order the sequential
+ * load would have added them in.
+ *
+ * <p>The getters may be called while other threads are still visiting. Each owner's entries are only modified under
+ * its lock, and readers are handed an immutable copy that is published through a volatile field, so they see the
+ * entries of an owner as they were after some visit. Use {@link #snapshot()} to obtain a faster immutable copy after
+ * loading.
+ */
+public final class ConcurrentClassTweakerImpl implements ConcurrentClassTweaker {
+	// Entries visited directly are ordered after those of every indexed source
+	private static final int UNINDEXED_SOURCE = Integer.MAX_VALUE;
+
+	private final AtomicReference<String> namespace = new AtomicReference<>();
+	// Class names are forward-slash separated internal names, see ClassTweakerImpl
+	private final Map<String, OwnerAccess> accessWideners = new ConcurrentHashMap<>();
+	private final Map<String, OrderedEntries<InjectedInterface>> injectedInterfaces = new ConcurrentHashMap<>();
+	private final Map<String, OrderedEntries<EnumExtension>> enumExtensions = new ConcurrentHashMap<>();
+	// Maps each target to the position of the first entry that added it
+	private final Map<String, Long> targetClasses = new ConcurrentHashMap<>();
+	private final AtomicInteger unindexedPosition = new AtomicInteger();
+	// Incremented whenever a target is added or moved, the cached index is only used while it matches
+	private final AtomicInteger targetsVersion = new AtomicInteger();
+	private volatile CachedTargetIndex targetIndex;
+
+	@Override
+	public ClassTweakerVisitor visitSource(int sourceIndex) {
+		if (sourceIndex < 0 || sourceIndex == UNINDEXED_SOURCE) {
+			throw new IllegalArgumentException("Invalid source index: " + sourceIndex);
+		}
+
+		return new SourceVisitor(sourceIndex);
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		if (this.namespace.compareAndSet(null, namespace)) {
+			return;
+		}
+
+		String current = this.namespace.get();
+
+		if (!current.equals(namespace)) {
+			throw new RuntimeException(String.format("Namespace mismatch, expected %s got %s", current, namespace));
+		}
+	}
+
+	@Override
+	public AccessWidenerVisitor visitAccessWidener(String owner) {
+		return addAccessWidener(owner, position(UNINDEXED_SOURCE, unindexedPosition.getAndIncrement()));
+	}
+
+	@Override
+	public void visitInjectedInterface(String owner, String iface, boolean transitive) {
+		addInjectedInterface(owner, iface, position(UNINDEXED_SOURCE, unindexedPosition.getAndIncrement()));
+	}
+
+	@Override
+	public void visitEnumExtension(String owner, String addedConstant, boolean transitive) {
+		addEnumExtension(owner, addedConstant, position(UNINDEXED_SOURCE, unindexedPosition.getAndIncrement()));
+	}
+
+	private AccessWidenerVisitor addAccessWidener(String owner, long position) {
+		OwnerAccess accessWidener = accessWideners.computeIfAbsent(owner, OwnerAccess::new);
+		addTargets(owner, position);
+		return accessWidener;
+	}
+
+	private void addInjectedInterface(String owner, String iface, long position) {
+		injectedInterfaces.computeIfAbsent(owner, s -> new OrderedEntries<>()).add(position, new InjectedInterfaceImpl(iface));
+		addTargets(owner, position);
+	}
+
+	private void addEnumExtension(String owner, String addedConstant, long position) {
+		enumExtensions.computeIfAbsent(owner, s -> new OrderedEntries<>()).add(position, new EnumExtensionImpl(addedConstant));
+		addTargets(owner, position);
+	}
+
+	private static long position(int sourceIndex, int positionInSource) {
+		return (long) sourceIndex << 32 | (positionInSource & 0xFFFFFFFFL);
+	}
+
+	private void addTargets(String clazz, long position) {
+		boolean changed = addTarget(clazz, position);
+
+		//Also transform all parent classes
+		while (clazz.contains("$")) {
+			clazz = clazz.substring(0, clazz.lastIndexOf("$"));
+			changed |= addTarget(clazz, position);
+		}
+
+		if (changed) {
+			targetsVersion.incrementAndGet();
+		}
+	}
+
+	private boolean addTarget(String clazz, long position) {
+		Long previous = targetClasses.putIfAbsent(clazz, position);
+
+		if (previous == null) {
+			return true;
+		}
+
+		if (previous <= position) {
+			return false;
+		}
+
+		targetClasses.merge(clazz, position, Math::min);
+		return true;
+	}
+
+	/**
+	 * Lists the targets in the order a sequential load would have added them in. The targets added by the same entry
+	 * share its position, and the sequential load adds them from the innermost class outwards. Since every outer class
+	 * name is a prefix of its nested class names, the longer name comes first.
+	 */
+	private List<String> sortedTargets() {
+		List<Map.Entry<String, Long>> entries = new ArrayList<>(targetClasses.entrySet());
+		entries.sort(Comparator.<Map.Entry<String, Long>>comparingLong(Map.Entry::getValue)
+				.thenComparing(entry -> -entry.getKey().length()));
+
+		List<String> targets = new ArrayList<>(entries.size());
+
+		for (Map.Entry<String, Long> entry : entries) {
+			targets.add(entry.getKey());
+		}
+
+		return targets;
+	}
+
+	@Override
+	public ClassTweaker snapshot() {
+		Map<String, AccessWidenerImpl> accessWideners = new HashMap<>();
+		this.accessWideners.forEach((owner, accessWidener) -> accessWideners.put(owner, accessWidener.get()));
+		return new FrozenClassTweaker(namespace.get(), sortedTargets(), accessWideners, getAllInjectedInterfaces(), getAllEnumExtensions());
+	}
+
+	@Override
+	public ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer) {
+		if (accessWideners.isEmpty() && injectedInterfaces.isEmpty() && enumExtensions.isEmpty()) {
+			return classVisitor;
+		}
+
+		return new ClassTweakerClassVisitor(api, classVisitor, this);
+	}
+
+	@Override
+	public @Nullable String getNamespace() {
+		return namespace.get();
+	}
+
+	@Override
+	public Set<String> getTargets() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(sortedTargets()));
+	}
+
+	@Override
+	public boolean isTarget(CharSequence name, boolean dotted) {
+		CachedTargetIndex targetIndex = this.targetIndex;
+		int version = targetsVersion.get();
+
+		if (targetIndex == null || targetIndex.version != version) {
+			targetIndex = new CachedTargetIndex(version, new TargetIndex(targetClasses.keySet()));
+			this.targetIndex = targetIndex;
+		}
+
+		return targetIndex.index.contains(name, dotted);
+	}
+
+	@Override
+	public AccessWidener getAccessWidener(String className) {
+		OwnerAccess accessWidener = accessWideners.get(className);
+
+		if (accessWidener == null) {
+			return AccessWidenerImpl.DEFAULT;
+		}
+
+		return accessWidener.get();
+	}
+
+	@Override
+	public Map<String, AccessWidener> getAllAccessWideners() {
+		Map<String, AccessWidener> accessWideners = new HashMap<>();
+		this.accessWideners.forEach((owner, accessWidener) -> accessWideners.put(owner, accessWidener.get()));
+		return Collections.unmodifiableMap(accessWideners);
+	}
+
+	@Override
+	public List<InjectedInterface> getInjectedInterfaces(String className) {
+		OrderedEntries<InjectedInterface> entries = injectedInterfaces.get(className);
+		return entries != null ? entries.get() : Collections.emptyList();
+	}
+
+	@Override
+	public Map<String, List<InjectedInterface>> getAllInjectedInterfaces() {
+		return getAll(injectedInterfaces);
+	}
+
+	@Override
+	public List<EnumExtension> getEnumExtensions(String className) {
+		OrderedEntries<EnumExtension> entries = enumExtensions.get(className);
+		return entries != null ? entries.get() : Collections.emptyList();
+	}
+
+	@Override
+	public Map<String, List<EnumExtension>> getAllEnumExtensions() {
+		return getAll(enumExtensions);
+	}
+
+	private static <T> Map<String, List<T>> getAll(Map<String, OrderedEntries<T>> entries) {
+		Map<String, List<T>> all = new HashMap<>();
+		entries.forEach((owner, ownerEntries) -> all.put(owner, ownerEntries.get()));
+		return Collections.unmodifiableMap(all);
+	}
+
+	private final class SourceVisitor implements ClassTweakerVisitor {
+		private final int sourceIndex;
+		private int position;
+
+		SourceVisitor(int sourceIndex) {
+			this.sourceIndex = sourceIndex;
+		}
+
+		@Override
+		public void visitHeader(String namespace) {
+			ConcurrentClassTweakerImpl.this.visitHeader(namespace);
+		}
+
+		@Override
+		public AccessWidenerVisitor visitAccessWidener(String owner) {
+			return addAccessWidener(owner, position(sourceIndex, position++));
+		}
+
+		@Override
+		public void visitInjectedInterface(String owner, String iface, boolean transitive) {
+			addInjectedInterface(owner, iface, position(sourceIndex, position++));
+		}
+
+		@Override
+		public void visitEnumExtension(String owner, String addedConstant, boolean transitive) {
+			addEnumExtension(owner, addedConstant, position(sourceIndex, position++));
+		}
+	}
+
+	/**
+	 * The access of a single owner. Visits are applied to a private widener while holding the lock, since its member
+	 * access maps are plain hash tables that must not be read while they are rehashed. Readers get an immutable copy,
+	 * which is only made again after another visit changed the access.
+	 */
+	private static final class OwnerAccess implements AccessWidenerVisitor {
+		private final AccessWidenerImpl accessWidener;
+		private volatile AccessWidenerImpl published;
+
+		OwnerAccess(String owner) {
+			accessWidener = new AccessWidenerImpl(owner);
+		}
+
+		@Override
+		public synchronized void visitClass(AccessType access, boolean transitive) {
+			accessWidener.visitClass(access, transitive);
+			published = null;
+		}
+
+		@Override
+		public synchronized void visitMethod(String name, String descriptor, AccessType access, boolean transitive) {
+			accessWidener.visitMethod(name, descriptor, access, transitive);
+			published = null;
+		}
+
+		@Override
+		public synchronized void visitField(String name, String descriptor, AccessType access, boolean transitive) {
+			accessWidener.visitField(name, descriptor, access, transitive);
+			published = null;
+		}
+
+		AccessWidenerImpl get() {
+			AccessWidenerImpl published = this.published;
+
+			if (published == null) {
+				synchronized (this) {
+					published = this.published;
+
+					if (published == null) {
+						this.published = published = accessWidener.copy();
+					}
+				}
+			}
+
+			return published;
+		}
+	}
+
+	/**
+	 * The injected interfaces or enum extensions of a single owner, sorted by their position in the sequential load
+	 * order. Like {@link OwnerAccess}, readers get an immutable copy that is published through a volatile field.
+	 */
+	private static final class OrderedEntries<T> {
+		private long[] positions = new long[4];
+		private final List<T> entries = new ArrayList<>(4);
+		private volatile List<T> published;
+
+		synchronized void add(long position, T entry) {
+			int size = entries.size();
+
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+
+			// Entries mostly arrive in order, so search for the insertion point from the end
+			int index = size;
+
+			while (index > 0 && positions[index - 1] > position) {
+				index--;
+			}
+
+			System.arraycopy(positions, index, positions, index + 1, size - index);
+			positions[index] = position;
+			entries.add(index, entry);
+			published = null;
+		}
+
+		List<T> get() {
+			List<T> published = this.published;
+
+			if (published == null) {
+				synchronized (this) {
+					published = this.published;
+
+					if (published == null) {
+						this.published = published = Collections.unmodifiableList(new ArrayList<>(entries));
+					}
+				}
+			}
+
+			return published;
+		}
+	}
+
+	private static final class CachedTargetIndex {
+		final int version;
+		final TargetIndex index;
+
+		CachedTargetIndex(int version, TargetIndex index) {
+			this.version = version;
+			this.index = index;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.classvisitor.ClassTweakerClassVisitor;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+/**
+ * An immutable copy of a {@link ClassTweakerImpl}, see {@link ClassTweaker#snapshot()}.
+ *
+ * <p>All entries are stored in open addressing tables that are never modified after construction, so the instance can
+ * be shared between threads without synchronization. Equal strings are shared between the tables, and the bulk
+ * getters return views over the tables that are created once, rather than keeping a second copy of every entry.
+ */
+public final class FrozenClassTweaker implements ClassTweaker {
+	@Nullable
+	private final String namespace;
+	private final Set<String> targets;
+	private final TargetIndex targetIndex;
+	private final StringTable<FrozenAccessWidener> accessWideners;
+	private final StringTable<List<InjectedInterface>> injectedInterfaces;
+	private final StringTable<List<EnumExtension>> enumExtensions;
+	private final Map<String, AccessWidener> allAccessWideners;
+	private final Map<String, List<InjectedInterface>> allInjectedInterfaces;
+	private final Map<String, List<EnumExtension>> allEnumExtensions;
+
+	FrozenClassTweaker(ClassTweakerImpl classTweaker) {
+		this(classTweaker.namespace, classTweaker.targetClasses, classTweaker.accessWideners, classTweaker.injectedInterfaces, classTweaker.enumExtensions);
+	}
+
+	FrozenClassTweaker(@Nullable String namespace, Collection<String> targetClasses, Map<String, AccessWidenerImpl> accessWideners,
+			Map<String, ? extends List<? extends InjectedInterface>> injectedInterfaces, Map<String, ? extends List<? extends EnumExtension>> enumExtensions) {
+		Map<String, String> strings = new HashMap<>();
+		UnaryOperator<String> interner = string -> strings.computeIfAbsent(string, s -> s);
+
+		this.namespace = namespace;
+		targets = new TargetSet(targetClasses.stream().map(interner).toArray(String[]::new));
+		targetIndex = new TargetIndex(targets);
+
+		Map<String, FrozenAccessWidener> allAccessWideners = new HashMap<>();
+		accessWideners.forEach((owner, accessWidener) -> allAccessWideners.put(interner.apply(owner), new FrozenAccessWidener(interner.apply(owner), accessWidener, interner)));
+		Map<String, List<InjectedInterface>> allInjectedInterfaces = new HashMap<>();
+		injectedInterfaces.forEach((owner, list) -> allInjectedInterfaces.put(interner.apply(owner), Collections.unmodifiableList(Arrays.asList(list.toArray(new InjectedInterface[0])))));
+		Map<String, List<EnumExtension>> allEnumExtensions = new HashMap<>();
+		enumExtensions.forEach((owner, list) -> allEnumExtensions.put(interner.apply(owner), Collections.unmodifiableList(Arrays.asList(list.toArray(new EnumExtension[0])))));
+
+		this.accessWideners = new StringTable<>(allAccessWideners, interner);
+		this.injectedInterfaces = new StringTable<>(allInjectedInterfaces, interner);
+		this.enumExtensions = new StringTable<>(allEnumExtensions, interner);
+		this.allAccessWideners = Collections.unmodifiableMap(this.accessWideners.asMap());
+		this.allInjectedInterfaces = this.injectedInterfaces.asMap();
+		this.allEnumExtensions = this.enumExtensions.asMap();
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		throw readOnly();
+	}
+
+	@Override
+	public @Nullable AccessWidenerVisitor visitAccessWidener(String owner) {
+		throw readOnly();
+	}
+
+	@Override
+	public void visitInjectedInterface(String owner, String iface, boolean transitive) {
+		throw readOnly();
+	}
+
+	@Override
+	public void visitEnumExtension(String owner, String addedConstant, boolean transitive) {
+		throw readOnly();
+	}
+
+	private static UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("Class tweaker snapshots are read-only");
+	}
+
+	@Override
+	public ClassTweaker snapshot() {
+		return this;
+	}
+
+	@Override
+	public ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer) {
+		if (allAccessWideners.isEmpty() && allInjectedInterfaces.isEmpty() && allEnumExtensions.isEmpty()) {
+			return classVisitor;
+		}
+
+		return new ClassTweakerClassVisitor(api, classVisitor, this);
+	}
+
+	@Override
+	public @Nullable String getNamespace() {
+		return namespace;
+	}
+
+	@Override
+	public Set<String> getTargets() {
+		return targets;
+	}
+
+	@Override
+	public boolean isTarget(CharSequence name, boolean dotted) {
+		return targetIndex.contains(name, dotted);
+	}
+
+	@Override
+	public AccessWidener getAccessWidener(String className) {
+		AccessWidener accessWidener = accessWideners.get(className);
+
+		if (accessWidener == null) {
+			return AccessWidenerImpl.DEFAULT;
+		}
+
+		return accessWidener;
+	}
+
+	@Override
+	public Map<String, AccessWidener> getAllAccessWideners() {
+		return allAccessWideners;
+	}
+
+	@Override
+	public List<InjectedInterface> getInjectedInterfaces(String className) {
+		List<InjectedInterface> list = injectedInterfaces.get(className);
+		return list != null ? list : Collections.emptyList();
+	}
+
+	@Override
+	public Map<String, List<InjectedInterface>> getAllInjectedInterfaces() {
+		return allInjectedInterfaces;
+	}
+
+	@Override
+	public List<EnumExtension> getEnumExtensions(String className) {
+		List<EnumExtension> list = enumExtensions.get(className);
+		return list != null ? list : Collections.emptyList();
+	}
+
+	@Override
+	public Map<String, List<EnumExtension>> getAllEnumExtensions() {
+		return allEnumExtensions;
+	}
+
+	private final class TargetSet extends AbstractSet<String> {
+		private final String[] targets;
+
+		TargetSet(String[] targets) {
+			this.targets = targets;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof String && targetIndex.contains((String) o, false);
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return Collections.unmodifiableList(Arrays.asList(targets)).iterator();
+		}
+
+		@Override
+		public int size() {
+			return targets.length;
+		}
+	}
+
+	private static final class FrozenAccessWidener implements AccessWidener {
+		private final String owner;
+		private final Access classAccess;
+		private final MemberAccessMap methods;
+		private final MemberAccessMap fields;
+		private final boolean callSiteRewrite;
+		private final Map<EntryTriple, Access> allMethodAccesses;
+		private final Map<EntryTriple, Access> allFieldAccesses;
+
+		FrozenAccessWidener(String owner, AccessWidenerImpl accessWidener, UnaryOperator<String> interner) {
+			this.owner = owner;
+			classAccess = accessWidener.getClassAccess();
+			methods = accessWidener.methodAccess.copy(interner);
+			fields = accessWidener.fieldAccess.copy(interner);
+			callSiteRewrite = accessWidener.callSiteRewrite;
+			allMethodAccesses = methods.view(owner, AccessWidenerImpl::methodAccess);
+			allFieldAccesses = fields.view(owner, AccessWidenerImpl::fieldAccess);
+		}
+
+		@Override
+		public Access getClassAccess() {
+			return classAccess;
+		}
+
+		@Override
+		public Access getMethodAccess(EntryTriple entryTriple) {
+			if (!entryTriple.getOwner().equals(owner)) {
+				return AccessWidenerImpl.MutableAccess.DEFAULT;
+			}
+
+			return getMethodAccess(entryTriple.getName(), entryTriple.getDesc());
+		}
+
+		@Override
+		public Access getFieldAccess(EntryTriple entryTriple) {
+			if (!entryTriple.getOwner().equals(owner)) {
+				return AccessWidenerImpl.MutableAccess.DEFAULT;
+			}
+
+			return getFieldAccess(entryTriple.getName(), entryTriple.getDesc());
+		}
+
+		@Override
+		public Access getMethodAccess(String name, String descriptor) {
+			int access = methods.get(name, descriptor);
+			return access == 0 ? AccessWidenerImpl.MutableAccess.DEFAULT : AccessWidenerImpl.methodAccess(access);
+		}
+
+		@Override
+		public Access getFieldAccess(String name, String descriptor) {
+			int access = fields.get(name, descriptor);
+			return access == 0 ? AccessWidenerImpl.MutableAccess.DEFAULT : AccessWidenerImpl.fieldAccess(access);
+		}
+
+		@Override
+		public Access getCanonicalConstructorAccess() {
+			if (classAccess.isAccessible()) {
+				return AccessWidenerImpl.MethodAccess.ACCESSIBLE;
+			} else {
+				return AccessWidenerImpl.MethodAccess.DEFAULT;
+			}
+		}
+
+		@Override
+		public boolean needsCallSiteRewrite() {
+			return callSiteRewrite;
+		}
+
+		@Override
+		public Map<EntryTriple, Access> getAllMethodAccesses() {
+			return allMethodAccesses;
+		}
+
+		@Override
+		public Map<EntryTriple, Access> getAllFieldAccesses() {
+			return allFieldAccesses;
+		}
+	}
+}
@@ -16,6 +16,9 @@
 
 package net.fabricmc.classtweaker.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 
 import org.objectweb.asm.Opcodes;
@@ -24,32 +27,61 @@ import org.objectweb.asm.signature.SignatureVisitor;
 
 import net.fabricmc.classtweaker.api.InjectedInterface;
 
+/**
+ * An injected interface. The signature is only parsed once, the first time the raw interface name or the type variables
+ * of a generic interface are needed.
+ */
 public class InjectedInterfaceImpl implements InjectedInterface {
 	private final String injectedInterface;
+	private final String signature;
+	private final boolean generics;
+	private volatile ParsedSignature parsed;
 
 	public InjectedInterfaceImpl(String injectedInterface) {
 		this.injectedInterface = injectedInterface;
+		this.signature = "L" + injectedInterface + ";";
+		this.generics = injectedInterface.indexOf('<') != -1;
 	}
 
 	@Override
 	public String getInterfaceName() {
-		if (!hasGenerics()) {
+		if (!generics) {
 			return injectedInterface;
 		}
 
-		RawTypeFromSignatureVisitor rawTypeFromSignatureVisitor = new RawTypeFromSignatureVisitor();
-		new SignatureReader("L" + injectedInterface + ";").accept(rawTypeFromSignatureVisitor);
-		return rawTypeFromSignatureVisitor.rawType.toString();
+		return parse().rawType;
 	}
 
 	@Override
 	public String getInterfaceSignature() {
-		return "L" + injectedInterface + ";";
+		return signature;
 	}
 
 	@Override
 	public boolean hasGenerics() {
-		return injectedInterface.contains("<");
+		return generics;
+	}
+
+	@Override
+	public List<String> getTypeVariables() {
+		if (!generics) {
+			return Collections.emptyList();
+		}
+
+		return parse().typeVariables;
+	}
+
+	private ParsedSignature parse() {
+		ParsedSignature parsed = this.parsed;
+
+		if (parsed == null) {
+			// Racing threads parse the same signature into equal results, so there is no need to lock
+			ParsedSignature visitor = new ParsedSignature();
+			new SignatureReader(signature).accept(visitor);
+			this.parsed = parsed = visitor;
+		}
+
+		return parsed;
 	}
 
 	@Override
@@ -57,28 +89,43 @@ public class InjectedInterfaceImpl implements InjectedInterface {
 		return Objects.hash(injectedInterface);
 	}
 
-	private static final class RawTypeFromSignatureVisitor extends SignatureVisitor {
-		private final StringBuilder rawType = new StringBuilder();
+	private static final class ParsedSignature extends SignatureVisitor {
+		private final StringBuilder rawTypeBuilder = new StringBuilder();
+		private final List<String> typeVariableBuilder = new ArrayList<>();
+		private String rawType;
+		private List<String> typeVariables;
 
-		RawTypeFromSignatureVisitor() {
+		ParsedSignature() {
 			super(Opcodes.ASM9);
 		}
 
 		@Override
 		public void visitClassType(String name) {
-			rawType.append(name);
+			rawTypeBuilder.append(name);
 		}
 
 		@Override
 		public void visitInnerClassType(String name) {
-			rawType.append('$').append(name);
+			rawTypeBuilder.append('$').append(name);
 		}
 
 		@Override
 		public SignatureVisitor visitTypeArgument(char wildcard) {
-			// don't include anything inside the type arguments in the raw type, return a dummy visitor.
+			// Anything inside the type arguments is not part of the raw type, only the type variables are collected
 			return new SignatureVisitor(Opcodes.ASM9) {
+				@Override
+				public void visitTypeVariable(String name) {
+					if (!typeVariableBuilder.contains(name)) {
+						typeVariableBuilder.add(name);
+					}
+				}
 			};
 		}
+
+		@Override
+		public void visitEnd() {
+			rawType = rawTypeBuilder.toString();
+			typeVariables = Collections.unmodifiableList(typeVariableBuilder);
+		}
 	}
 }
@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+/**
+ * Generates the {@link ClassTweakerLookup} of a {@link CompiledClassTweaker}.
+ *
+ * <p>Strings are looked up like a {@code switch} over strings: a {@code lookupswitch} on the hash code followed by
+ * {@code equals} checks against constants. Owners are dispatched by index with a {@code tableswitch}. Large switches
+ * are split into several methods so that no method exceeds the size limit of the class file format.
+ *
+ * <p>Every owner adds a number of entries to the constant pool of the class, which is limited to 65535 entries. Large
+ * class tweakers are therefore split into several classes by the hash code of the owner names, see {@link #shardOf}.
+ */
+final class LookupClassGenerator {
+	static final String CLASS_NAME = "net/fabricmc/classtweaker/impl/generated/CompiledClassTweakerLookup";
+	private static final String LOOKUP_NAME = Type.getInternalName(ClassTweakerLookup.class);
+	private static final String STRING = "Ljava/lang/String;";
+	private static final String MEMBER_DESCRIPTOR = "(" + STRING + STRING + ")I";
+	private static final String INDEXED_MEMBER_DESCRIPTOR = "(I" + STRING + STRING + ")I";
+	// Upper bounds for the cases in a single method, well below the limit of 64k bytes of code
+	private static final int MAX_STRING_CASES = 256;
+	private static final int MAX_INDEX_CASES = 1024;
+	// Upper bound for the estimated constant pool entries of a single class, leaving room below the limit of 65535 for
+	// the shared entries and the methods that split large switches
+	private static final int MAX_CONSTANTS = 60000;
+
+	private final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+
+	private LookupClassGenerator() {
+	}
+
+	/**
+	 * @param owners the owner names, sorted
+	 * @param classAccess the class access of each owner, including {@link ClassTweakerLookup#CALL_SITE_REWRITE}
+	 * @param methods the method access of each owner
+	 * @param fields the field access of each owner
+	 * @return a class per shard, with the owners of each shard numbered in order of their names
+	 */
+	static byte[][] generate(String cacheKey, String[] owners, int[] classAccess, List<List<Entry>> methods, List<List<Entry>> fields) {
+		int shardCount = 1;
+
+		while (shardCount < owners.length && !fits(owners, methods, fields, shardCount)) {
+			shardCount *= 2;
+		}
+
+		List<List<Integer>> shards = new ArrayList<>(shardCount);
+
+		for (int shard = 0; shard < shardCount; shard++) {
+			shards.add(new ArrayList<>());
+		}
+
+		for (int owner = 0; owner < owners.length; owner++) {
+			shards.get(shardOf(owners[owner], shardCount)).add(owner);
+		}
+
+		byte[][] classes = new byte[shardCount][];
+
+		for (int shard = 0; shard < shardCount; shard++) {
+			List<Integer> shardOwners = shards.get(shard);
+			int count = shardOwners.size();
+			String[] names = new String[count];
+			int[] access = new int[count];
+			List<List<Entry>> shardMethods = new ArrayList<>(count);
+			List<List<Entry>> shardFields = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+				int owner = shardOwners.get(i);
+				names[i] = owners[owner];
+				access[i] = classAccess[owner];
+				shardMethods.add(methods.get(owner));
+				shardFields.add(fields.get(owner));
+			}
+
+			classes[shard] = new LookupClassGenerator().generateClass(cacheKey, names, access, shardMethods, shardFields);
+		}
+
+		return classes;
+	}
+
+	/**
+	 * @return the shard of the generated classes that looks up the owner
+	 */
+	static int shardOf(String owner, int shardCount) {
+		return shardCount == 1 ? 0 : Math.floorMod(owner.hashCode(), shardCount);
+	}
+
+	private static boolean fits(String[] owners, List<List<Entry>> methods, List<List<Entry>> fields, int shardCount) {
+		int[] constants = new int[shardCount];
+
+		for (int owner = 0; owner < owners.length; owner++) {
+			int shard = shardOf(owners[owner], shardCount);
+			constants[shard] += estimateConstants(methods.get(owner)) + estimateConstants(fields.get(owner));
+
+			if (constants[shard] > MAX_CONSTANTS) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int estimateConstants(List<Entry> members) {
+		if (members.isEmpty()) {
+			// Only the owner name, shared with the other member kind
+			return 1;
+		}
+
+		// The static method for the members of the owner, plus the name and descriptor of each member as a string
+		return 4 + 4 * members.size();
+	}
+
+	/**
+	 * Reads the cache key of a generated class without loading it.
+	 *
+	 * @return the cache key, or {@code null} if the class has none
+	 * @throws IllegalArgumentException if the bytes are not a generated class
+	 */
+	static @Nullable String readCacheKey(byte[] lookupClass) {
+		String[] cacheKey = new String[1];
+		ClassReader classReader;
+
+		try {
+			classReader = new ClassReader(lookupClass);
+			classReader.accept(new ClassVisitor(Opcodes.ASM9) {
+				@Override
+				public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+					if (!name.equals("getCacheKey") || !descriptor.equals("()" + STRING)) {
+						return null;
+					}
+
+					return new MethodVisitor(Opcodes.ASM9) {
+						@Override
+						public void visitLdcInsn(Object value) {
+							if (value instanceof String) {
+								cacheKey[0] = (String) value;
+							}
+						}
+					};
+				}
+			}, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		} catch (RuntimeException e) {
+			// ClassReader fails with various exceptions on malformed input
+			throw new IllegalArgumentException("Not a class tweaker lookup class", e);
+		}
+
+		if (!classReader.getClassName().equals(CLASS_NAME) || !Arrays.asList(classReader.getInterfaces()).contains(LOOKUP_NAME)) {
+			throw new IllegalArgumentException("Not a class tweaker lookup class: " + classReader.getClassName());
+		}
+
+		return cacheKey[0];
+	}
+
+	private byte[] generateClass(String cacheKey, String[] owners, int[] classAccess, List<List<Entry>> methods, List<List<Entry>> fields) {
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, "java/lang/Object", new String[] {LOOKUP_NAME});
+
+		MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "getCacheKey", "()" + STRING, null, null);
+		mv.visitCode();
+		mv.visitLdcInsn(cacheKey);
+		mv.visitInsn(Opcodes.ARETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "getOwnerCount", "()I", null, null);
+		mv.visitCode();
+		push(mv, owners.length);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		List<Entry> ownerEntries = new ArrayList<>(owners.length);
+
+		for (int i = 0; i < owners.length; i++) {
+			ownerEntries.add(new Entry(owners[i], null, i));
+		}
+
+		stringSwitch("owner", "(" + STRING + ")I", ownerEntries, false, -1);
+		delegate("getOwnerIndex", "(" + STRING + ")I", "owner");
+
+		indexSwitch("classAccess", "(I)I", owners.length, owner -> classAccess[owner] != 0, (visitor, owner) -> {
+			push(visitor, classAccess[owner]);
+			visitor.visitInsn(Opcodes.IRETURN);
+		});
+		delegate("getClassAccess", "(I)I", "classAccess");
+
+		members("method", "getMethodAccess", methods);
+		members("field", "getFieldAccess", fields);
+
+		classWriter.visitEnd();
+		return classWriter.toByteArray();
+	}
+
+	private void members(String prefix, String interfaceMethod, List<List<Entry>> members) {
+		for (int owner = 0; owner < members.size(); owner++) {
+			if (!members.get(owner).isEmpty()) {
+				stringSwitch(prefix + owner, MEMBER_DESCRIPTOR, members.get(owner), true, 0);
+			}
+		}
+
+		indexSwitch(prefix, INDEXED_MEMBER_DESCRIPTOR, members.size(), owner -> !members.get(owner).isEmpty(), (mv, owner) -> {
+			mv.visitVarInsn(Opcodes.ALOAD, 1);
+			mv.visitVarInsn(Opcodes.ALOAD, 2);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, prefix + owner, MEMBER_DESCRIPTOR, false);
+			mv.visitInsn(Opcodes.IRETURN);
+		});
+		delegate(interfaceMethod, INDEXED_MEMBER_DESCRIPTOR, prefix);
+	}
+
+	/**
+	 * Generates an interface method that passes its arguments on to the static method with the same descriptor.
+	 */
+	private void delegate(String name, String descriptor, String target) {
+		MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PUBLIC, name, descriptor, null, null);
+		mv.visitCode();
+		loadArguments(mv, descriptor, 1);
+		mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, target, descriptor, false);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	/**
+	 * Generates a static method which switches over the index passed as its first argument, and returns 0 for the
+	 * indices without a case.
+	 */
+	private void indexSwitch(String name, String descriptor, int count, IntPredicate hasCase, ObjIntConsumer<MethodVisitor> caseWriter) {
+		if (count <= MAX_INDEX_CASES) {
+			indexCases(name, descriptor, 0, count, hasCase, caseWriter);
+			return;
+		}
+
+		// Dispatch to a method per group of indices first
+		int groups = (count + MAX_INDEX_CASES - 1) / MAX_INDEX_CASES;
+
+		for (int group = 0; group < groups; group++) {
+			indexCases(name + "$" + group, descriptor, group * MAX_INDEX_CASES, Math.min(count, (group + 1) * MAX_INDEX_CASES), hasCase, caseWriter);
+		}
+
+		MethodVisitor mv = staticMethod(name, descriptor);
+		Label defaultLabel = new Label();
+		Label[] labels = newLabels(groups);
+		mv.visitVarInsn(Opcodes.ILOAD, 0);
+		push(mv, MAX_INDEX_CASES);
+		mv.visitInsn(Opcodes.IDIV);
+		mv.visitTableSwitchInsn(0, groups - 1, defaultLabel, labels);
+
+		for (int group = 0; group < groups; group++) {
+			mv.visitLabel(labels[group]);
+			loadArguments(mv, descriptor, 0);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, name + "$" + group, descriptor, false);
+			mv.visitInsn(Opcodes.IRETURN);
+		}
+
+		endMethod(mv, defaultLabel, 0);
+	}
+
+	private void indexCases(String name, String descriptor, int start, int end, IntPredicate hasCase, ObjIntConsumer<MethodVisitor> caseWriter) {
+		MethodVisitor mv = staticMethod(name, descriptor);
+		Label defaultLabel = new Label();
+
+		if (end > start) {
+			Label[] labels = new Label[end - start];
+
+			for (int i = start; i < end; i++) {
+				labels[i - start] = hasCase.test(i) ? new Label() : defaultLabel;
+			}
+
+			mv.visitVarInsn(Opcodes.ILOAD, 0);
+			mv.visitTableSwitchInsn(start, end - 1, defaultLabel, labels);
+
+			for (int i = start; i < end; i++) {
+				if (labels[i - start] != defaultLabel) {
+					mv.visitLabel(labels[i - start]);
+					caseWriter.accept(mv, i);
+				}
+			}
+		}
+
+		endMethod(mv, defaultLabel, 0);
+	}
+
+	/**
+	 * Generates a static method which looks up the string passed as its first argument, and the descriptor passed as
+	 * its second argument if {@code withDescriptor} is set.
+	 */
+	private void stringSwitch(String name, String descriptor, List<Entry> entries, boolean withDescriptor, int defaultValue) {
+		if (entries.size() <= MAX_STRING_CASES) {
+			stringCases(name, descriptor, entries, withDescriptor, defaultValue);
+			return;
+		}
+
+		// Dispatch to a method per bucket of hash codes first
+		int buckets = Integer.highestOneBit((entries.size() * 2 - 1) / MAX_STRING_CASES) * 2;
+		List<List<Entry>> bucketEntries = new ArrayList<>(buckets);
+
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			bucketEntries.add(new ArrayList<>());
+		}
+
+		for (Entry entry : entries) {
+			bucketEntries.get(entry.key.hashCode() & (buckets - 1)).add(entry);
+		}
+
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			if (!bucketEntries.get(bucket).isEmpty()) {
+				stringCases(name + "$" + bucket, descriptor, bucketEntries.get(bucket), withDescriptor, defaultValue);
+			}
+		}
+
+		MethodVisitor mv = staticMethod(name, descriptor);
+		Label defaultLabel = new Label();
+		Label[] labels = new Label[buckets];
+
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			labels[bucket] = bucketEntries.get(bucket).isEmpty() ? defaultLabel : new Label();
+		}
+
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+		push(mv, buckets - 1);
+		mv.visitInsn(Opcodes.IAND);
+		mv.visitTableSwitchInsn(0, buckets - 1, defaultLabel, labels);
+
+		for (int bucket = 0; bucket < buckets; bucket++) {
+			if (labels[bucket] != defaultLabel) {
+				mv.visitLabel(labels[bucket]);
+				loadArguments(mv, descriptor, 0);
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, CLASS_NAME, name + "$" + bucket, descriptor, false);
+				mv.visitInsn(Opcodes.IRETURN);
+			}
+		}
+
+		endMethod(mv, defaultLabel, defaultValue);
+	}
+
+	private void stringCases(String name, String descriptor, List<Entry> entries, boolean withDescriptor, int defaultValue) {
+		Map<Integer, List<Entry>> hashes = new TreeMap<>();
+
+		for (Entry entry : entries) {
+			hashes.computeIfAbsent(entry.key.hashCode(), hash -> new ArrayList<>()).add(entry);
+		}
+
+		MethodVisitor mv = staticMethod(name, descriptor);
+		Label defaultLabel = new Label();
+		int[] keys = new int[hashes.size()];
+		Label[] labels = newLabels(hashes.size());
+		int i = 0;
+
+		for (int hash : hashes.keySet()) {
+			keys[i++] = hash;
+		}
+
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+		mv.visitLookupSwitchInsn(defaultLabel, keys, labels);
+		i = 0;
+
+		for (List<Entry> sameHash : hashes.values()) {
+			mv.visitLabel(labels[i++]);
+
+			for (Entry entry : sameHash) {
+				Label next = new Label();
+				mv.visitLdcInsn(entry.key);
+				mv.visitVarInsn(Opcodes.ALOAD, 0);
+				mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+				mv.visitJumpInsn(Opcodes.IFEQ, next);
+
+				if (withDescriptor) {
+					mv.visitLdcInsn(entry.descriptor);
+					mv.visitVarInsn(Opcodes.ALOAD, 1);
+					mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z", false);
+					mv.visitJumpInsn(Opcodes.IFEQ, next);
+				}
+
+				push(mv, entry.value);
+				mv.visitInsn(Opcodes.IRETURN);
+				mv.visitLabel(next);
+			}
+
+			mv.visitJumpInsn(Opcodes.GOTO, defaultLabel);
+		}
+
+		endMethod(mv, defaultLabel, defaultValue);
+	}
+
+	private MethodVisitor staticMethod(String name, String descriptor) {
+		MethodVisitor mv = classWriter.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, name, descriptor, null, null);
+		mv.visitCode();
+		return mv;
+	}
+
+	private static void endMethod(MethodVisitor mv, Label defaultLabel, int defaultValue) {
+		mv.visitLabel(defaultLabel);
+		push(mv, defaultValue);
+		mv.visitInsn(Opcodes.IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	private static Label[] newLabels(int count) {
+		Label[] labels = new Label[count];
+
+		for (int i = 0; i < count; i++) {
+			labels[i] = new Label();
+		}
+
+		return labels;
+	}
+
+	private static void loadArguments(MethodVisitor mv, String descriptor, int slot) {
+		for (Type argument : Type.getArgumentTypes(descriptor)) {
+			mv.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), slot);
+			slot += argument.getSize();
+		}
+	}
+
+	private static void push(MethodVisitor mv, int value) {
+		if (value >= -1 && value <= 5) {
+			mv.visitInsn(Opcodes.ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.BIPUSH, value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(value);
+		}
+	}
+
+	static final class Entry {
+		final String key;
+		@Nullable
+		final String descriptor;
+		final int value;
+
+		Entry(String key, @Nullable String descriptor, int value) {
+			this.key = key;
+			this.descriptor = descriptor;
+			this.value = value;
+		}
+	}
+}
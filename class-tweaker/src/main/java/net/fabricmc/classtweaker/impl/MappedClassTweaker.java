@@ -0,0 +1,817 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.ACCESSIBLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.ACCESS_WIDENER_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.ENUM_EXTENSION_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.EXTENDABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.FORMAT_VERSION;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_ACCESS_WIDENER;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_CALL_SITE_REWRITE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_ENUM_EXTENSIONS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_INJECTED_INTERFACES;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HEADER_SIZE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.INJECTED_INTERFACE_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.MAGIC;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.MEMBER_SLOT_SIZE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.MUTABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.NAMESPACE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_CLASS_ACCESS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_ENUM_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_ENUM_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_FIELD_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_FIELD_TABLE_CAPACITY;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_INTERFACE_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_INTERFACE_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_KINDS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_METHOD_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_METHOD_TABLE_CAPACITY;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_NAME;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_RECORD_SIZE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_TABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_TABLE_CAPACITY;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.STRING_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.STRING_HASHES;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.STRING_OFFSETS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_TABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_TABLE_CAPACITY;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.decode;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.headerOffset;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.memberHash;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.slot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassVisitor;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.classvisitor.ClassTweakerClassVisitor;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+/**
+ * A read-only class tweaker that answers all queries directly from the binary format, see
+ * {@link ClassTweakerBinaryFormat}. The tables are validated when opening, but entries are only decoded when queried,
+ * so the buffer can be a memory mapped file that is shared between processes.
+ *
+ * <p>The lookups used while transforming classes ({@link #getTargets()}{@code .contains},
+ * {@link #getAccessWidener(String)} and the access lookups of the returned access widener) hash the given strings and
+ * compare them against the stored bytes. Only the first lookup of an owner allocates: its access widener and its
+ * decoded injected interfaces and enum extensions are cached by owner table slot, so later lookups return the same
+ * instances. The bulk getters return the same unmodifiable map, in target order, every time they are called.
+ */
+public final class MappedClassTweaker implements ClassTweaker {
+	private final ByteBuffer buffer;
+	private final int header;
+	private final int stringOffsets;
+	private final int stringHashes;
+	private final int targetCount;
+	private final int targetList;
+	private final int targetTableCapacity;
+	private final int targetTable;
+	private final int ownerCount;
+	private final int ownerList;
+	private final int ownerTableCapacity;
+	private final int ownerTable;
+	private final Set<String> targets = new TargetSet();
+	@Nullable
+	private final String namespace;
+	// Indexed by owner table slot, allocated on first use
+	private Owner[] owners;
+	private volatile Map<String, AccessWidener> allAccessWideners;
+	private volatile Map<String, List<InjectedInterface>> allInjectedInterfaces;
+	private volatile Map<String, List<EnumExtension>> allEnumExtensions;
+
+	private MappedClassTweaker(ByteBuffer buffer, int header) {
+		this.buffer = buffer;
+		this.header = header;
+		stringOffsets = headerInt(STRING_OFFSETS);
+		stringHashes = headerInt(STRING_HASHES);
+		targetCount = headerInt(TARGET_COUNT);
+		targetList = headerInt(TARGET_LIST);
+		targetTableCapacity = headerInt(TARGET_TABLE_CAPACITY);
+		targetTable = headerInt(TARGET_TABLE);
+		ownerCount = headerInt(OWNER_COUNT);
+		ownerList = headerInt(OWNER_LIST);
+		ownerTableCapacity = headerInt(OWNER_TABLE_CAPACITY);
+		ownerTable = headerInt(OWNER_TABLE);
+
+		int namespaceIndex = headerInt(NAMESPACE);
+		namespace = namespaceIndex < 0 ? null : string(namespaceIndex);
+	}
+
+	/**
+	 * Opens a view of the binary data starting at the buffer's position. The buffer is not modified.
+	 *
+	 * @return the view, or {@code null} if the data was written with a different cache key or format version
+	 * @throws IllegalArgumentException if the data is not a binary class tweaker, or is truncated or corrupt
+	 */
+	public static @Nullable MappedClassTweaker open(ByteBuffer buffer, byte[] cacheKey) {
+		ByteBuffer data = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+
+		if (data.limit() < 12 || data.getInt(0) != MAGIC) {
+			throw new IllegalArgumentException("Not a binary class tweaker");
+		}
+
+		if (data.getInt(4) != FORMAT_VERSION) {
+			return null;
+		}
+
+		int keyLength = data.getInt(8);
+
+		if (keyLength != cacheKey.length) {
+			return null;
+		}
+
+		int header = headerOffset(keyLength);
+
+		if (keyLength < 0 || data.limit() < header + HEADER_SIZE) {
+			throw new IllegalArgumentException("Truncated binary class tweaker");
+		}
+
+		for (int i = 0; i < keyLength; i++) {
+			if (data.get(12 + i) != cacheKey[i]) {
+				return null;
+			}
+		}
+
+		if (!isValid(data, header)) {
+			throw new IllegalArgumentException("Truncated or corrupt binary class tweaker");
+		}
+
+		return new MappedClassTweaker(data, header);
+	}
+
+	/**
+	 * Checks all offsets, capacities, string indices and access flags up front, since the data is usually a cache file
+	 * read from disk. Afterwards every lookup stays within the buffer, every probe sequence ends at an empty slot and
+	 * every access flag word names an access.
+	 */
+	private static boolean isValid(ByteBuffer data, int header) {
+		int limit = data.limit();
+		int stringCount = data.getInt(header + STRING_COUNT);
+		int stringOffsets = data.getInt(header + STRING_OFFSETS);
+
+		if (stringCount < 0 || !fits(stringOffsets, stringCount + 1L, 4, limit) || !fits(data.getInt(header + STRING_HASHES), stringCount, 4, limit)) {
+			return false;
+		}
+
+		int previous = 0;
+
+		for (int i = 0; i <= stringCount; i++) {
+			int offset = data.getInt(stringOffsets + i * 4);
+
+			if (offset < previous || offset > limit) {
+				return false;
+			}
+
+			previous = offset;
+		}
+
+		int namespace = data.getInt(header + NAMESPACE);
+
+		if (namespace != -1 && !isString(namespace, stringCount)) {
+			return false;
+		}
+
+		int targetCount = data.getInt(header + TARGET_COUNT);
+		int targetList = data.getInt(header + TARGET_LIST);
+
+		if (!fits(targetList, targetCount, 4, limit)) {
+			return false;
+		}
+
+		for (int i = 0; i < targetCount; i++) {
+			if (!isString(data.getInt(targetList + i * 4), stringCount)) {
+				return false;
+			}
+		}
+
+		int targetTableCapacity = data.getInt(header + TARGET_TABLE_CAPACITY);
+		int targetTable = data.getInt(header + TARGET_TABLE);
+
+		if (!isCapacity(targetTableCapacity, targetCount) || !fits(targetTable, targetTableCapacity, 4, limit)) {
+			return false;
+		}
+
+		for (int i = 0; i < targetTableCapacity; i++) {
+			int index = data.getInt(targetTable + i * 4) - 1;
+
+			if (index != -1 && !isString(index, stringCount)) {
+				return false;
+			}
+		}
+
+		int ownerCount = data.getInt(header + OWNER_COUNT);
+		int ownerList = data.getInt(header + OWNER_LIST);
+
+		if (!fits(ownerList, ownerCount, 4, limit)) {
+			return false;
+		}
+
+		for (int i = 0; i < ownerCount; i++) {
+			if (!isOwnerRecord(data, data.getInt(ownerList + i * 4), stringCount)) {
+				return false;
+			}
+		}
+
+		int ownerTableCapacity = data.getInt(header + OWNER_TABLE_CAPACITY);
+		int ownerTable = data.getInt(header + OWNER_TABLE);
+
+		if (!isCapacity(ownerTableCapacity, ownerCount) || !fits(ownerTable, ownerTableCapacity, 4, limit)) {
+			return false;
+		}
+
+		for (int i = 0; i < ownerTableCapacity; i++) {
+			int record = data.getInt(ownerTable + i * 4);
+
+			if (record != 0 && !isOwnerRecord(data, record, stringCount)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isOwnerRecord(ByteBuffer data, int record, int stringCount) {
+		int limit = data.limit();
+
+		if (record <= 0 || !fits(record, 1, OWNER_RECORD_SIZE, limit) || !isString(data.getInt(record + OWNER_NAME), stringCount)) {
+			return false;
+		}
+
+		if (!isClassOrMethodAccess(data.getInt(record + OWNER_CLASS_ACCESS))) {
+			return false;
+		}
+
+		if (!isMemberTable(data, data.getInt(record + OWNER_METHOD_COUNT), record + OWNER_METHOD_TABLE_CAPACITY, stringCount, false)
+				|| !isMemberTable(data, data.getInt(record + OWNER_FIELD_COUNT), record + OWNER_FIELD_TABLE_CAPACITY, stringCount, true)) {
+			return false;
+		}
+
+		return isStringList(data, data.getInt(record + OWNER_INTERFACE_LIST), data.getInt(record + OWNER_INTERFACE_COUNT), stringCount)
+				&& isStringList(data, data.getInt(record + OWNER_ENUM_LIST), data.getInt(record + OWNER_ENUM_COUNT), stringCount);
+	}
+
+	/**
+	 * @param table the offset of the table's capacity, which is followed by the offset of its slots
+	 */
+	private static boolean isMemberTable(ByteBuffer data, int count, int table, int stringCount, boolean fields) {
+		int capacity = data.getInt(table);
+		int slots = data.getInt(table + 4);
+
+		if (!isCapacity(capacity, count) || !fits(slots, capacity, MEMBER_SLOT_SIZE, data.limit())) {
+			return false;
+		}
+
+		for (int i = 0; i < capacity; i++) {
+			int slot = slots + i * MEMBER_SLOT_SIZE;
+			int nameIndex = data.getInt(slot) - 1;
+
+			if (nameIndex == -1) {
+				continue;
+			}
+
+			int flags = data.getInt(slot + 8);
+
+			if (!isString(nameIndex, stringCount) || !isString(data.getInt(slot + 4), stringCount)
+					|| !(fields ? isFieldAccess(flags) : isClassOrMethodAccess(flags))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isStringList(ByteBuffer data, int list, int count, int stringCount) {
+		if (!fits(list, count, 4, data.limit())) {
+			return false;
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (!isString(data.getInt(list + i * 4), stringCount)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * @return whether the flags are a combination of {@link AccessWidenerImpl#ACCESSIBLE} and
+	 * {@link AccessWidenerImpl#EXTENDABLE}
+	 */
+	private static boolean isClassOrMethodAccess(int flags) {
+		return (flags & ~(AccessWidenerImpl.ACCESSIBLE | AccessWidenerImpl.EXTENDABLE)) == 0;
+	}
+
+	/**
+	 * @return whether the flags are a combination of {@link AccessWidenerImpl#ACCESSIBLE} and
+	 * {@link AccessWidenerImpl#MUTABLE}
+	 */
+	private static boolean isFieldAccess(int flags) {
+		return (flags & ~(AccessWidenerImpl.ACCESSIBLE | AccessWidenerImpl.MUTABLE)) == 0;
+	}
+
+	private static boolean isString(int index, int stringCount) {
+		return index >= 0 && index < stringCount;
+	}
+
+	/**
+	 * @return whether the capacity is a power of two larger than the number of entries, so that there is always an
+	 * empty slot
+	 */
+	private static boolean isCapacity(int capacity, int count) {
+		return count >= 0 && capacity > count && Integer.bitCount(capacity) == 1;
+	}
+
+	/**
+	 * @return whether {@code count} items of {@code size} bytes starting at {@code offset} end within the limit
+	 */
+	private static boolean fits(int offset, long count, int size, int limit) {
+		return offset >= 0 && count >= 0 && offset + count * size <= limit;
+	}
+
+	/**
+	 * Replays all entries into the given visitor, owner by owner in target order. Visiting a {@link ClassTweakerImpl}
+	 * results in the same entries and the same target order as the class tweaker that was written.
+	 */
+	public void accept(ClassTweakerVisitor visitor) {
+		if (namespace != null) {
+			visitor.visitHeader(namespace);
+		}
+
+		for (int i = 0; i < ownerCount; i++) {
+			int record = buffer.getInt(ownerList + i * 4);
+			String owner = string(buffer.getInt(record + OWNER_NAME));
+			int kinds = buffer.getInt(record + OWNER_KINDS);
+
+			if ((kinds & HAS_ACCESS_WIDENER) != 0) {
+				acceptAccessWidener(record, visitor.visitAccessWidener(owner));
+			}
+
+			int interfaces = buffer.getInt(record + OWNER_INTERFACE_LIST);
+
+			for (int j = 0; j < buffer.getInt(record + OWNER_INTERFACE_COUNT); j++) {
+				visitor.visitInjectedInterface(owner, string(buffer.getInt(interfaces + j * 4)), false);
+			}
+
+			int constants = buffer.getInt(record + OWNER_ENUM_LIST);
+
+			for (int j = 0; j < buffer.getInt(record + OWNER_ENUM_COUNT); j++) {
+				visitor.visitEnumExtension(owner, string(buffer.getInt(constants + j * 4)), false);
+			}
+		}
+	}
+
+	private void acceptAccessWidener(int record, @Nullable AccessWidenerVisitor visitor) {
+		if (visitor == null) {
+			return;
+		}
+
+		int classFlags = buffer.getInt(record + OWNER_CLASS_ACCESS);
+
+		if ((classFlags & ACCESSIBLE) != 0) {
+			visitor.visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		}
+
+		if ((classFlags & EXTENDABLE) != 0) {
+			visitor.visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		}
+
+		forEachMember(record + OWNER_METHOD_TABLE_CAPACITY, (name, descriptor, flags) -> {
+			if ((flags & ACCESSIBLE) != 0) {
+				visitor.visitMethod(name, descriptor, AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+			}
+
+			if ((flags & EXTENDABLE) != 0) {
+				visitor.visitMethod(name, descriptor, AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+			}
+		});
+
+		forEachMember(record + OWNER_FIELD_TABLE_CAPACITY, (name, descriptor, flags) -> {
+			if ((flags & ACCESSIBLE) != 0) {
+				visitor.visitField(name, descriptor, AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+			}
+
+			if ((flags & MUTABLE) != 0) {
+				visitor.visitField(name, descriptor, AccessWidenerVisitor.AccessType.MUTABLE, false);
+			}
+		});
+	}
+
+	@Override
+	public void visitHeader(String namespace) {
+		throw readOnly();
+	}
+
+	@Override
+	public @Nullable AccessWidenerVisitor visitAccessWidener(String owner) {
+		throw readOnly();
+	}
+
+	@Override
+	public void visitInjectedInterface(String owner, String iface, boolean transitive) {
+		throw readOnly();
+	}
+
+	@Override
+	public void visitEnumExtension(String owner, String addedConstant, boolean transitive) {
+		throw readOnly();
+	}
+
+	private static UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("Mapped class tweakers are read-only");
+	}
+
+	@Override
+	public ClassTweaker snapshot() {
+		return this;
+	}
+
+	@Override
+	public ClassVisitor createClassVisitor(int api, @Nullable ClassVisitor classVisitor, @Nullable BiConsumer<String, byte[]> generatedClassConsumer) {
+		if (headerInt(ACCESS_WIDENER_COUNT) == 0 && headerInt(INJECTED_INTERFACE_COUNT) == 0 && headerInt(ENUM_EXTENSION_COUNT) == 0) {
+			return classVisitor;
+		}
+
+		return new ClassTweakerClassVisitor(api, classVisitor, this);
+	}
+
+	@Override
+	public @Nullable String getNamespace() {
+		return namespace;
+	}
+
+	@Override
+	public Set<String> getTargets() {
+		return targets;
+	}
+
+	@Override
+	public AccessWidener getAccessWidener(String className) {
+		Owner owner = findOwner(className);
+
+		if (owner == null || owner.accessWidener == null) {
+			return AccessWidenerImpl.DEFAULT;
+		}
+
+		return owner.accessWidener;
+	}
+
+	@Override
+	public Map<String, AccessWidener> getAllAccessWideners() {
+		Map<String, AccessWidener> accessWideners = allAccessWideners;
+
+		if (accessWideners == null) {
+			// Racing threads decode equal maps, so there is no need to lock
+			this.allAccessWideners = accessWideners = collectOwners(HAS_ACCESS_WIDENER, owner -> owner.accessWidener);
+		}
+
+		return accessWideners;
+	}
+
+	@Override
+	public List<InjectedInterface> getInjectedInterfaces(String className) {
+		Owner owner = findOwner(className);
+		return owner == null ? Collections.emptyList() : owner.injectedInterfaces;
+	}
+
+	@Override
+	public Map<String, List<InjectedInterface>> getAllInjectedInterfaces() {
+		Map<String, List<InjectedInterface>> injectedInterfaces = allInjectedInterfaces;
+
+		if (injectedInterfaces == null) {
+			this.allInjectedInterfaces = injectedInterfaces = collectOwners(HAS_INJECTED_INTERFACES, owner -> owner.injectedInterfaces);
+		}
+
+		return injectedInterfaces;
+	}
+
+	@Override
+	public List<EnumExtension> getEnumExtensions(String className) {
+		Owner owner = findOwner(className);
+		return owner == null ? Collections.emptyList() : owner.enumExtensions;
+	}
+
+	@Override
+	public Map<String, List<EnumExtension>> getAllEnumExtensions() {
+		Map<String, List<EnumExtension>> enumExtensions = allEnumExtensions;
+
+		if (enumExtensions == null) {
+			this.allEnumExtensions = enumExtensions = collectOwners(HAS_ENUM_EXTENSIONS, owner -> owner.enumExtensions);
+		}
+
+		return enumExtensions;
+	}
+
+	private <T> Map<String, T> collectOwners(int kind, Function<Owner, T> valueFactory) {
+		Map<String, T> values = new LinkedHashMap<>();
+
+		for (int i = 0; i < ownerCount; i++) {
+			int record = buffer.getInt(ownerList + i * 4);
+
+			if ((buffer.getInt(record + OWNER_KINDS) & kind) != 0) {
+				String name = string(buffer.getInt(record + OWNER_NAME));
+				values.put(name, valueFactory.apply(findOwner(name)));
+			}
+		}
+
+		return Collections.unmodifiableMap(values);
+	}
+
+	private int headerInt(int offset) {
+		return buffer.getInt(header + offset);
+	}
+
+	private String string(int index) {
+		return decode(buffer, buffer.getInt(stringOffsets + index * 4), buffer.getInt(stringOffsets + index * 4 + 4));
+	}
+
+	private boolean stringEquals(int index, int hash, String string) {
+		return buffer.getInt(stringHashes + index * 4) == hash
+				&& ClassTweakerBinaryFormat.equals(buffer, buffer.getInt(stringOffsets + index * 4), buffer.getInt(stringOffsets + index * 4 + 4), string);
+	}
+
+	@Override
+	public boolean isTarget(CharSequence name, boolean dotted) {
+		char separatorChar = dotted ? '.' : '/';
+		int hash = ClassTweakerBinaryFormat.internalNameHash(name, separatorChar);
+
+		for (int probe = 0, i = slot(hash, targetTableCapacity); probe < targetTableCapacity; probe++, i = (i + 1) & (targetTableCapacity - 1)) {
+			int index = buffer.getInt(targetTable + i * 4) - 1;
+
+			if (index < 0) {
+				return false;
+			}
+
+			if (buffer.getInt(stringHashes + index * 4) == hash
+					&& ClassTweakerBinaryFormat.equals(buffer, buffer.getInt(stringOffsets + index * 4), buffer.getInt(stringOffsets + index * 4 + 4), name, separatorChar)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the decoded entries of the class, or {@code null} if the class has no entries
+	 */
+	private @Nullable Owner findOwner(String className) {
+		int hash = className.hashCode();
+
+		for (int probe = 0, i = slot(hash, ownerTableCapacity); probe < ownerTableCapacity; probe++, i = (i + 1) & (ownerTableCapacity - 1)) {
+			int record = buffer.getInt(ownerTable + i * 4);
+
+			if (record == 0) {
+				return null;
+			}
+
+			if (stringEquals(buffer.getInt(record + OWNER_NAME), hash, className)) {
+				return owner(i, record, className);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * @param slot the slot of the owner in the owner table, which the decoded owners are cached by
+	 */
+	private Owner owner(int slot, int record, String className) {
+		// Racing threads decode equal owners, which only have final fields, so there is no need to lock
+		Owner[] owners = this.owners;
+
+		if (owners == null) {
+			this.owners = owners = new Owner[ownerTableCapacity];
+		}
+
+		Owner owner = owners[slot];
+
+		if (owner == null) {
+			owners[slot] = owner = new Owner(record, className);
+		}
+
+		return owner;
+	}
+
+	/**
+	 * @return the access flags of the member, or -1 if the member has no entry
+	 */
+	private int findMember(int table, String name, String descriptor) {
+		int capacity = buffer.getInt(table);
+		int slots = buffer.getInt(table + 4);
+		int nameHash = name.hashCode();
+		int descriptorHash = descriptor.hashCode();
+
+		for (int probe = 0, i = slot(memberHash(nameHash, descriptorHash), capacity); probe < capacity; probe++, i = (i + 1) & (capacity - 1)) {
+			int slot = slots + i * MEMBER_SLOT_SIZE;
+			int nameIndex = buffer.getInt(slot) - 1;
+
+			if (nameIndex < 0) {
+				return -1;
+			}
+
+			if (stringEquals(nameIndex, nameHash, name) && stringEquals(buffer.getInt(slot + 4), descriptorHash, descriptor)) {
+				return buffer.getInt(slot + 8);
+			}
+		}
+
+		return -1;
+	}
+
+	private void forEachMember(int table, MemberConsumer consumer) {
+		int capacity = buffer.getInt(table);
+		int slots = buffer.getInt(table + 4);
+
+		for (int i = 0; i < capacity; i++) {
+			int slot = slots + i * MEMBER_SLOT_SIZE;
+			int nameIndex = buffer.getInt(slot) - 1;
+
+			if (nameIndex >= 0) {
+				consumer.accept(string(nameIndex), string(buffer.getInt(slot + 4)), buffer.getInt(slot + 8));
+			}
+		}
+	}
+
+	private interface MemberConsumer {
+		void accept(String name, String descriptor, int flags);
+	}
+
+	private final class TargetSet extends AbstractSet<String> {
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof String && isTarget((String) o, false);
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			return new Iterator<String>() {
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return index < targetCount;
+				}
+
+				@Override
+				public String next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+
+					return string(buffer.getInt(targetList + index++ * 4));
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return targetCount;
+		}
+	}
+
+	/**
+	 * The entries of a single owner. The access widener reads the member tables in place, the injected interfaces and
+	 * enum extensions are decoded once so that their parsed signatures are reused.
+	 */
+	private final class Owner {
+		@Nullable
+		final MappedAccessWidener accessWidener;
+		final List<InjectedInterface> injectedInterfaces;
+		final List<EnumExtension> enumExtensions;
+
+		Owner(int record, String name) {
+			accessWidener = (buffer.getInt(record + OWNER_KINDS) & HAS_ACCESS_WIDENER) != 0 ? new MappedAccessWidener(record, name) : null;
+			injectedInterfaces = decodeList(buffer.getInt(record + OWNER_INTERFACE_LIST), buffer.getInt(record + OWNER_INTERFACE_COUNT), InjectedInterfaceImpl::new);
+			enumExtensions = decodeList(buffer.getInt(record + OWNER_ENUM_LIST), buffer.getInt(record + OWNER_ENUM_COUNT), EnumExtensionImpl::new);
+		}
+
+		private <T> List<T> decodeList(int list, int size, Function<String, T> factory) {
+			if (size == 0) {
+				return Collections.emptyList();
+			}
+
+			List<T> values = new ArrayList<>(size);
+
+			for (int i = 0; i < size; i++) {
+				values.add(factory.apply(string(buffer.getInt(list + i * 4))));
+			}
+
+			return Collections.unmodifiableList(values);
+		}
+	}
+
+	private final class MappedAccessWidener implements AccessWidener {
+		private final int record;
+		private final String owner;
+
+		MappedAccessWidener(int record, String owner) {
+			this.record = record;
+			this.owner = owner;
+		}
+
+		@Override
+		public Access getClassAccess() {
+			return AccessWidenerImpl.classAccess(buffer.getInt(record + OWNER_CLASS_ACCESS));
+		}
+
+		@Override
+		public Access getMethodAccess(EntryTriple entryTriple) {
+			if (!entryTriple.getOwner().equals(owner)) {
+				return AccessWidenerImpl.MutableAccess.DEFAULT;
+			}
+
+			return getMethodAccess(entryTriple.getName(), entryTriple.getDesc());
+		}
+
+		@Override
+		public Access getFieldAccess(EntryTriple entryTriple) {
+			if (!entryTriple.getOwner().equals(owner)) {
+				return AccessWidenerImpl.MutableAccess.DEFAULT;
+			}
+
+			return getFieldAccess(entryTriple.getName(), entryTriple.getDesc());
+		}
+
+		@Override
+		public Access getMethodAccess(String name, String descriptor) {
+			int flags = findMember(record + OWNER_METHOD_TABLE_CAPACITY, name, descriptor);
+			return flags < 0 ? AccessWidenerImpl.MutableAccess.DEFAULT : AccessWidenerImpl.methodAccess(flags);
+		}
+
+		@Override
+		public Access getFieldAccess(String name, String descriptor) {
+			int flags = findMember(record + OWNER_FIELD_TABLE_CAPACITY, name, descriptor);
+			return flags < 0 ? AccessWidenerImpl.MutableAccess.DEFAULT : AccessWidenerImpl.fieldAccess(flags);
+		}
+
+		@Override
+		public Access getCanonicalConstructorAccess() {
+			if (getClassAccess().isAccessible()) {
+				return AccessWidenerImpl.MethodAccess.ACCESSIBLE;
+			} else {
+				return AccessWidenerImpl.MethodAccess.DEFAULT;
+			}
+		}
+
+		@Override
+		public boolean needsCallSiteRewrite() {
+			return (buffer.getInt(record + OWNER_KINDS) & HAS_CALL_SITE_REWRITE) != 0;
+		}
+
+		@Override
+		public Map<EntryTriple, Access> getAllMethodAccesses() {
+			return members(record + OWNER_METHOD_TABLE_CAPACITY, AccessWidenerImpl::methodAccess);
+		}
+
+		@Override
+		public Map<EntryTriple, Access> getAllFieldAccesses() {
+			return members(record + OWNER_FIELD_TABLE_CAPACITY, AccessWidenerImpl::fieldAccess);
+		}
+
+		private Map<EntryTriple, Access> members(int table, IntFunction<Access> accesses) {
+			Map<EntryTriple, Access> members = new HashMap<>();
+			forEachMember(table, (name, descriptor, flags) -> members.put(new EntryTriple(owner, name, descriptor), accesses.apply(flags)));
+			return Collections.unmodifiableMap(members);
+		}
+	}
+}
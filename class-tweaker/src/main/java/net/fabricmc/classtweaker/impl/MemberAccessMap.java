@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+/**
+ * Maps the members of a single class, by name and descriptor, to their access bitmask (see
+ * {@link AccessWidenerImpl#ACCESSIBLE}). An open addressing hash table using linear probing over parallel arrays,
+ * so neither lookups nor merges allocate, and an entry costs a few bytes rather than a map node, a key and a value.
+ */
+final class MemberAccessMap {
+	private String[] names;
+	private String[] descriptors;
+	private byte[] access;
+	private int size;
+
+	MemberAccessMap() {
+		this(8);
+	}
+
+	private MemberAccessMap(int capacity) {
+		names = new String[capacity];
+		descriptors = new String[capacity];
+		access = new byte[capacity];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the access bitmask of the member, or 0 if it has no entry
+	 */
+	int get(String name, String descriptor) {
+		for (int slot = slot(name, descriptor, names.length); ; slot = (slot + 1) & (names.length - 1)) {
+			String candidate = names[slot];
+
+			if (candidate == null) {
+				return 0;
+			}
+
+			if (candidate.equals(name) && descriptors[slot].equals(descriptor)) {
+				return access[slot];
+			}
+		}
+	}
+
+	/**
+	 * Adds the given access bits to the member.
+	 */
+	void add(String name, String descriptor, int bits) {
+		int slot = slot(name, descriptor, names.length);
+
+		while (names[slot] != null) {
+			if (names[slot].equals(name) && descriptors[slot].equals(descriptor)) {
+				access[slot] |= bits;
+				return;
+			}
+
+			slot = (slot + 1) & (names.length - 1);
+		}
+
+		names[slot] = name;
+		descriptors[slot] = descriptor;
+		access[slot] = (byte) bits;
+
+		if (++size * 2 > names.length) {
+			rehash(names.length * 2, UnaryOperator.identity());
+		}
+	}
+
+	void addAll(MemberAccessMap other) {
+		for (int slot = 0; slot < other.names.length; slot++) {
+			if (other.names[slot] != null) {
+				add(other.names[slot], other.descriptors[slot], other.access[slot]);
+			}
+		}
+	}
+
+	/**
+	 * @return a copy sized to fit its entries, with all names and descriptors passed through {@code interner}
+	 */
+	MemberAccessMap copy(UnaryOperator<String> interner) {
+		MemberAccessMap copy = new MemberAccessMap(names.length);
+		copy.names = names;
+		copy.descriptors = descriptors;
+		copy.access = access;
+		copy.size = size;
+		copy.rehash(Integer.highestOneBit(Math.max(1, size * 2 - 1)) << 1, interner);
+		return copy;
+	}
+
+	/**
+	 * @param owner the class the members belong to
+	 * @param accessByBits maps an access bitmask to the corresponding access
+	 */
+	Map<EntryTriple, AccessWidener.Access> toMap(String owner, IntFunction<? extends AccessWidener.Access> accessByBits) {
+		Map<EntryTriple, AccessWidener.Access> map = new HashMap<>();
+
+		for (int slot = 0; slot < names.length; slot++) {
+			if (names[slot] != null) {
+				map.put(new EntryTriple(owner, names[slot], descriptors[slot]), accessByBits.apply(access[slot]));
+			}
+		}
+
+		return Collections.unmodifiableMap(map);
+	}
+
+	/**
+	 * Like {@link #toMap}, but returns an unmodifiable view instead of a copy. Only for maps that are no longer
+	 * modified, such as the copies held by a {@link FrozenClassTweaker}.
+	 */
+	Map<EntryTriple, AccessWidener.Access> view(String owner, IntFunction<? extends AccessWidener.Access> accessByBits) {
+		return new AbstractMap<EntryTriple, AccessWidener.Access>() {
+			@Override
+			public AccessWidener.Access get(Object key) {
+				if (!(key instanceof EntryTriple) || !((EntryTriple) key).getOwner().equals(owner)) {
+					return null;
+				}
+
+				int bits = MemberAccessMap.this.get(((EntryTriple) key).getName(), ((EntryTriple) key).getDesc());
+				return bits == 0 ? null : accessByBits.apply(bits);
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return get(key) != null;
+			}
+
+			@Override
+			public Set<Entry<EntryTriple, AccessWidener.Access>> entrySet() {
+				return new AbstractSet<Entry<EntryTriple, AccessWidener.Access>>() {
+					@Override
+					public Iterator<Entry<EntryTriple, AccessWidener.Access>> iterator() {
+						return new Iterator<Entry<EntryTriple, AccessWidener.Access>>() {
+							private int slot = nextSlot(0);
+
+							@Override
+							public boolean hasNext() {
+								return slot < names.length;
+							}
+
+							@Override
+							public Entry<EntryTriple, AccessWidener.Access> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+
+								Entry<EntryTriple, AccessWidener.Access> entry = new SimpleImmutableEntry<>(new EntryTriple(owner, names[slot], descriptors[slot]), accessByBits.apply(access[slot]));
+								slot = nextSlot(slot + 1);
+								return entry;
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return size;
+					}
+				};
+			}
+		};
+	}
+
+	private int nextSlot(int slot) {
+		while (slot < names.length && names[slot] == null) {
+			slot++;
+		}
+
+		return slot;
+	}
+
+	private void rehash(int capacity, UnaryOperator<String> interner) {
+		String[] oldNames = names;
+		String[] oldDescriptors = descriptors;
+		byte[] oldAccess = access;
+		names = new String[capacity];
+		descriptors = new String[capacity];
+		access = new byte[capacity];
+
+		for (int i = 0; i < oldNames.length; i++) {
+			if (oldNames[i] == null) {
+				continue;
+			}
+
+			int slot = slot(oldNames[i], oldDescriptors[i], capacity);
+
+			while (names[slot] != null) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			names[slot] = interner.apply(oldNames[i]);
+			descriptors[slot] = interner.apply(oldDescriptors[i]);
+			access[slot] = oldAccess[i];
+		}
+	}
+
+	private static int slot(String name, String descriptor, int capacity) {
+		int hash = name.hashCode() * 31 + descriptor.hashCode();
+		return (hash ^ (hash >>> 16)) & (capacity - 1);
+	}
+}
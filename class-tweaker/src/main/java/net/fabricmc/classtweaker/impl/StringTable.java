@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An immutable open addressing hash table with string keys, using linear probing. Safe for concurrent reads once
+ * published, and lookups do not allocate.
+ */
+final class StringTable<V> {
+	private final String[] keys;
+	private final Object[] values;
+	private final int size;
+
+	/**
+	 * @param interner applied to every key before storing it, to share equal strings between tables
+	 */
+	StringTable(Map<String, ? extends V> entries, UnaryOperator<String> interner) {
+		int capacity = Integer.highestOneBit(Math.max(1, entries.size() * 2 - 1)) << 1;
+		keys = new String[capacity];
+		values = new Object[capacity];
+		size = entries.size();
+
+		for (Map.Entry<String, ? extends V> entry : entries.entrySet()) {
+			int slot = slot(entry.getKey());
+
+			while (keys[slot] != null) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			keys[slot] = interner.apply(entry.getKey());
+			values[slot] = entry.getValue();
+		}
+	}
+
+	@Nullable
+	@SuppressWarnings("unchecked")
+	V get(Object key) {
+		if (!(key instanceof String)) {
+			return null;
+		}
+
+		for (int slot = slot((String) key); ; slot = (slot + 1) & (keys.length - 1)) {
+			String candidate = keys[slot];
+
+			if (candidate == null) {
+				return null;
+			}
+
+			if (candidate.equals(key)) {
+				return (V) values[slot];
+			}
+		}
+	}
+
+	/**
+	 * @return an unmodifiable map view of the table, in table order
+	 */
+	Map<String, V> asMap() {
+		return new AbstractMap<String, V>() {
+			@Override
+			public @Nullable V get(Object key) {
+				return StringTable.this.get(key);
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return StringTable.this.get(key) != null;
+			}
+
+			@Override
+			public Set<Entry<String, V>> entrySet() {
+				return new AbstractSet<Entry<String, V>>() {
+					@Override
+					public Iterator<Entry<String, V>> iterator() {
+						return new Iterator<Entry<String, V>>() {
+							private int slot = nextSlot(0);
+
+							@Override
+							public boolean hasNext() {
+								return slot < keys.length;
+							}
+
+							@Override
+							@SuppressWarnings("unchecked")
+							public Entry<String, V> next() {
+								if (!hasNext()) {
+									throw new NoSuchElementException();
+								}
+
+								Entry<String, V> entry = new SimpleImmutableEntry<>(keys[slot], (V) values[slot]);
+								slot = nextSlot(slot + 1);
+								return entry;
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return size;
+					}
+				};
+			}
+		};
+	}
+
+	private int nextSlot(int slot) {
+		while (slot < keys.length && keys[slot] == null) {
+			slot++;
+		}
+
+		return slot;
+	}
+
+	private int slot(String key) {
+		int hash = key.hashCode();
+		return (hash ^ (hash >>> 16)) & (keys.length - 1);
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.impl;
+
+import java.util.Collection;
+
+/**
+ * A read-only index of target class names, answering {@link #contains(CharSequence, boolean)} for internal
+ * (a/b/C) or dotted binary names (a.b.C) without allocating.
+ *
+ * <p>Most queried classes are not targets, so a lookup is rejected as early as possible: first by the hash of its
+ * package, then by a Bloom filter over the full name, and only then checked against a hash set of the names.
+ */
+final class TargetIndex {
+	private static final int BLOOM_HASHES = 3;
+
+	private final long[] packageFilter;
+	private final long[] bloomFilter;
+	private final String[] names;
+
+	/**
+	 * @param targets the target names, which may be a view of a collection that is still being added to
+	 */
+	TargetIndex(Collection<String> targets) {
+		// Sized from a copy, so that targets added while building can't fill up the table
+		String[] targetArray = targets.toArray(new String[0]);
+		packageFilter = new long[filterWords(targetArray.length * 8)];
+		bloomFilter = new long[filterWords(targetArray.length * 16)];
+		names = new String[Integer.highestOneBit(Math.max(1, targetArray.length * 2 - 1)) << 1];
+
+		for (String target : targetArray) {
+			int separator = target.lastIndexOf('/');
+			set(packageFilter, mix(separator < 0 ? 0 : target.substring(0, separator).hashCode()));
+			int hash = target.hashCode();
+
+			for (int i = 0; i < BLOOM_HASHES; i++) {
+				set(bloomFilter, bloomHash(hash, i));
+			}
+
+			int slot = mix(hash) & (names.length - 1);
+
+			while (names[slot] != null) {
+				slot = (slot + 1) & (names.length - 1);
+			}
+
+			names[slot] = target;
+		}
+	}
+
+	/**
+	 * @param dotted whether the name uses periods instead of forward slashes as the package separator
+	 */
+	boolean contains(CharSequence name, boolean dotted) {
+		char separatorChar = dotted ? '.' : '/';
+		int length = name.length();
+		int separator = length - 1;
+
+		while (separator >= 0 && name.charAt(separator) != separatorChar) {
+			separator--;
+		}
+
+		// Hash the package like String.hashCode on the internal name would
+		int hash = 0;
+
+		for (int i = 0; i < separator; i++) {
+			char c = name.charAt(i);
+			hash = 31 * hash + (c == separatorChar ? '/' : c);
+		}
+
+		if (!isSet(packageFilter, mix(hash))) {
+			return false;
+		}
+
+		for (int i = Math.max(separator, 0); i < length; i++) {
+			char c = name.charAt(i);
+			hash = 31 * hash + (c == separatorChar ? '/' : c);
+		}
+
+		for (int i = 0; i < BLOOM_HASHES; i++) {
+			if (!isSet(bloomFilter, bloomHash(hash, i))) {
+				return false;
+			}
+		}
+
+		for (int slot = mix(hash) & (names.length - 1); ; slot = (slot + 1) & (names.length - 1)) {
+			String candidate = names[slot];
+
+			if (candidate == null) {
+				return false;
+			}
+
+			if (candidate.hashCode() == hash && equals(candidate, name, separatorChar)) {
+				return true;
+			}
+		}
+	}
+
+	private static boolean equals(String internalName, CharSequence name, char separatorChar) {
+		if (internalName.length() != name.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+
+			if (internalName.charAt(i) != (c == separatorChar ? '/' : c)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int filterWords(int bits) {
+		return Integer.highestOneBit(Math.max(64, bits - 1)) << 1 >>> 6;
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static int bloomHash(int hash, int i) {
+		int second = (hash * 0x9E3779B9) | 1;
+		return mix(hash) + i * second;
+	}
+
+	private static void set(long[] filter, int hash) {
+		int bit = hash & (filter.length * 64 - 1);
+		filter[bit >>> 6] |= 1L << bit;
+	}
+
+	private static boolean isSet(long[] filter, int hash) {
+		int bit = hash & (filter.length * 64 - 1);
+		return (filter[bit >>> 6] & 1L << bit) != 0;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.utils.ClassFile;
+
+/**
+ * Records which classes of a jar have {@code InnerClasses} entries for nested classes whose access is widened.
+ *
+ * <p>Any class that refers to a nested class has an inner class entry for it, but only the nested class and the
+ * classes it is nested in are targets of a class tweaker. This index finds the other classes, whose inner class
+ * entries also have to be widened to stay consistent, by scanning every class of the jar once in parallel.
+ */
+public final class InnerClassReferenceIndex {
+	private final ClassTweaker classTweaker;
+	// Widened nested classes by the classes referencing them
+	private final Map<String, Set<String>> references;
+
+	private InnerClassReferenceIndex(ClassTweaker classTweaker, Map<String, Set<String>> references) {
+		this.classTweaker = classTweaker;
+		this.references = references;
+	}
+
+	public static InnerClassReferenceIndex build(Path jar, ClassTweaker classTweaker) throws IOException {
+		return build(jar, classTweaker, ForkJoinPool.commonPool());
+	}
+
+	public static InnerClassReferenceIndex build(Path jar, ClassTweaker classTweaker, ForkJoinPool pool) throws IOException {
+		return build(RawZipArchive.read(Files.readAllBytes(jar)), classTweaker, pool, jar);
+	}
+
+	static InnerClassReferenceIndex build(RawZipArchive archive, ClassTweaker classTweaker, ForkJoinPool pool, Path jar) throws IOException {
+		Set<String> widenedClasses = getWidenedClasses(classTweaker);
+		Map<String, Set<String>> references = new ConcurrentHashMap<>();
+
+		if (!widenedClasses.isEmpty()) {
+			List<Callable<Void>> tasks = new ArrayList<>();
+
+			for (RawZipArchive.Entry entry : archive.entries) {
+				if (!entry.name.endsWith(".class")) {
+					continue;
+				}
+
+				tasks.add(() -> {
+					try {
+						ClassFile classFile = new ClassFile(archive.inflate(entry));
+						Set<String> referenced = findReferences(classFile, widenedClasses);
+
+						if (!referenced.isEmpty()) {
+							references.put(classFile.getClassName(), referenced);
+						}
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+
+					return null;
+				});
+			}
+
+			JarTransformer.invokeAll(pool, tasks, jar);
+		}
+
+		return new InnerClassReferenceIndex(classTweaker, references);
+	}
+
+	/**
+	 * @return the nested classes whose class access is widened by the class tweaker
+	 */
+	static Set<String> getWidenedClasses(ClassTweaker classTweaker) {
+		Set<String> widenedClasses = new HashSet<>();
+
+		for (String target : classTweaker.getTargets()) {
+			if (target.indexOf('$') > 0 && classTweaker.getAccessWidener(target).getClassAccess().isChanged()) {
+				widenedClasses.add(target);
+			}
+		}
+
+		return widenedClasses;
+	}
+
+	/**
+	 * @return the widened classes that the class has inner class entries for, sorted by name
+	 */
+	static Set<String> findReferences(ClassFile classFile, Set<String> widenedClasses) {
+		int offset = widenedClasses.isEmpty() ? -1 : classFile.findAttribute(classFile.getAttributes(), "InnerClasses");
+
+		if (offset < 0) {
+			return Collections.emptySet();
+		}
+
+		Set<String> referenced = null;
+		int count = classFile.readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++, offset += 8) {
+			String name = classFile.readClass(offset);
+
+			if (widenedClasses.contains(name)) {
+				if (referenced == null) {
+					referenced = new TreeSet<>();
+				}
+
+				referenced.add(name);
+			}
+		}
+
+		return referenced != null ? Collections.unmodifiableSet(referenced) : Collections.emptySet();
+	}
+
+	/**
+	 * @return the classes that are not targets of the class tweaker, but have inner class entries that it widens
+	 */
+	public Set<String> getClassesNeedingFixups() {
+		Set<String> classes = new TreeSet<>();
+
+		for (String className : references.keySet()) {
+			if (!classTweaker.isTarget(className, false)) {
+				classes.add(className);
+			}
+		}
+
+		return classes;
+	}
+
+	/**
+	 * @return whether the class has inner class entries that the class tweaker widens
+	 */
+	public boolean hasWidenedReferences(String className) {
+		return references.containsKey(className);
+	}
+
+	/**
+	 * @return the widened nested classes the class has inner class entries for, sorted by name
+	 */
+	public Set<String> getWidenedReferences(String className) {
+		return references.getOrDefault(className, Collections.emptySet());
+	}
+}
@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.classvisitor.AccessFlagPatcher;
+import net.fabricmc.classtweaker.classvisitor.ApiStubClassVisitor;
+import net.fabricmc.classtweaker.utils.ClassFile;
+
+/**
+ * Applies a {@link ClassTweaker} to a whole jar. Only the classes that are targets of the class tweaker are
+ * decompressed and transformed, in parallel. All other entries, and targets that end up unchanged, are copied with
+ * their compressed data as is.
+ *
+ * <p>The output keeps the order, names and timestamps of the input entries, so transforming the same jar with the same
+ * class tweaker always produces the same bytes. It is written to a temporary file first and then moved into place, so
+ * the output path never holds a partially written jar.
+ *
+ * <p>With a {@link TransformCache}, targets whose content and tweaks were transformed before are taken from the cache
+ * instead, already compressed.
+ */
+public final class JarTransformer {
+	private final ClassTweaker classTweaker;
+	private final ForkJoinPool pool;
+	@Nullable
+	private final TransformCache cache;
+	private final boolean indexInnerClassReferences;
+	private final boolean apiStubs;
+
+	private JarTransformer(ClassTweaker classTweaker, ForkJoinPool pool, @Nullable TransformCache cache, boolean indexInnerClassReferences, boolean apiStubs) {
+		this.classTweaker = classTweaker;
+		this.pool = pool;
+		this.cache = cache;
+		this.indexInnerClassReferences = indexInnerClassReferences;
+		this.apiStubs = apiStubs;
+	}
+
+	public static JarTransformer create(ClassTweaker classTweaker) {
+		return create(classTweaker, ForkJoinPool.commonPool());
+	}
+
+	public static JarTransformer create(ClassTweaker classTweaker, ForkJoinPool pool) {
+		return create(classTweaker, pool, null);
+	}
+
+	public static JarTransformer create(ClassTweaker classTweaker, ForkJoinPool pool, @Nullable TransformCache cache) {
+		return new JarTransformer(classTweaker, pool, cache, false, false);
+	}
+
+	/**
+	 * @return a transformer that also transforms the classes that are not targets, but have inner class entries for
+	 * widened nested classes. These classes are found by building an {@link InnerClassReferenceIndex} of the input jar.
+	 */
+	public JarTransformer withInnerClassReferences() {
+		return new JarTransformer(classTweaker, pool, cache, true, apiStubs);
+	}
+
+	/**
+	 * @return a transformer that produces a jar to compile against only. Every class is transformed, but read without
+	 * its code and debug information, and every method body is replaced with a stub, see {@link ApiStubClassVisitor}.
+	 * Access widening, injected interfaces and enum constants are applied as usual.
+	 */
+	public JarTransformer withApiStubs() {
+		return new JarTransformer(classTweaker, pool, cache, indexInnerClassReferences, true);
+	}
+
+	public Result transform(Path input, Path output) throws IOException {
+		long start = System.nanoTime();
+		RawZipArchive archive = RawZipArchive.read(Files.readAllBytes(input));
+		List<RawZipArchive.Entry> entries = archive.entries;
+		long read = System.nanoTime();
+
+		InnerClassReferenceIndex index = indexInnerClassReferences ? InnerClassReferenceIndex.build(archive, classTweaker, pool, input) : null;
+		long indexed = System.nanoTime();
+
+		Transformed[] transformed = new Transformed[entries.size()];
+		List<Callable<Void>> tasks = new ArrayList<>();
+		TweakFingerprints fingerprints = cache != null ? TweakFingerprints.create(classTweaker) : null;
+		// Without an index, the inner class entries of each target are scanned before looking it up in the cache
+		Set<String> widenedClasses = cache != null && index == null ? InnerClassReferenceIndex.getWidenedClasses(classTweaker) : null;
+		AtomicInteger cacheHits = new AtomicInteger();
+
+		for (int i = 0; i < entries.size(); i++) {
+			RawZipArchive.Entry entry = entries.get(i);
+
+			if (isTarget(entry.name, index)) {
+				final int entryIndex = i;
+				tasks.add(() -> {
+					transformed[entryIndex] = fingerprints != null ? transformCached(archive, entry, fingerprints, index, widenedClasses, cacheHits) : transform(archive, entry);
+					return null;
+				});
+			}
+		}
+
+		invokeAll(pool, tasks, input);
+
+		long transform = System.nanoTime();
+		int transformedCount = 0;
+		Path directory = output.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, output.getFileName().toString(), ".tmp");
+
+		try {
+			try (RawZipWriter writer = new RawZipWriter(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				for (int i = 0; i < entries.size(); i++) {
+					RawZipArchive.Entry entry = entries.get(i);
+
+					if (transformed[i] != null) {
+						writer.write(entry, RawZipArchive.DEFLATED, transformed[i].crc, transformed[i].size, transformed[i].data, 0, transformed[i].data.length);
+						transformedCount++;
+					} else {
+						writer.write(entry, entry.method, entry.crc, entry.size, archive.data, entry.dataOffset, entry.compressedSize);
+					}
+				}
+			}
+
+			try {
+				Files.move(temp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+
+		long write = System.nanoTime();
+		return new Result(entries.size(), transformedCount, cacheHits.get(), read - start, indexed - read, transform - indexed, write - transform);
+	}
+
+	/**
+	 * Runs the tasks on the pool, rethrowing the first failure.
+	 */
+	static void invokeAll(ForkJoinPool pool, List<Callable<Void>> tasks, Path input) throws IOException {
+		for (Future<Void> future : pool.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while processing " + input, e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof UncheckedIOException) {
+					throw ((UncheckedIOException) e.getCause()).getCause();
+				}
+
+				throw new RuntimeException("Failed to process " + input, e.getCause());
+			}
+		}
+	}
+
+	private boolean isTarget(String entryName, @Nullable InnerClassReferenceIndex index) {
+		if (!entryName.endsWith(".class")) {
+			return false;
+		} else if (apiStubs) {
+			return true;
+		}
+
+		String className = entryName.substring(0, entryName.length() - ".class".length());
+		return classTweaker.isTarget(className, false) || index != null && index.hasWidenedReferences(className);
+	}
+
+	private Transformed transformCached(RawZipArchive archive, RawZipArchive.Entry entry, TweakFingerprints fingerprints, @Nullable InnerClassReferenceIndex index,
+			@Nullable Set<String> widenedClasses, AtomicInteger cacheHits) {
+		String className = entry.name.substring(0, entry.name.length() - ".class".length());
+
+		try {
+			byte[] classFile = archive.inflate(entry);
+			// The transform also widens the inner class entries for nested classes of other classes, so the fingerprint
+			// has to cover their access as well
+			Set<String> references = index != null ? index.getWidenedReferences(className) : InnerClassReferenceIndex.findReferences(new ClassFile(classFile), widenedClasses);
+			byte[] fingerprint = fingerprints.get(className, references);
+			byte[] key = TransformCache.key(classFile, fingerprint, apiStubs);
+			byte[] cached = cache.get(key);
+
+			// A damaged entry is transformed again, which replaces it
+			if (cached != null && Transformed.isIntact(cached)) {
+				cacheHits.incrementAndGet();
+				return Transformed.decode(cached);
+			}
+
+			Transformed transformed = transform(classFile);
+			cache.put(key, Transformed.encode(transformed));
+			return transformed;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the transformed entry, or {@code null} if the class was not changed
+	 */
+	private Transformed transform(RawZipArchive archive, RawZipArchive.Entry entry) {
+		try {
+			return transform(archive.inflate(entry));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Nullable
+	private Transformed transform(byte[] classFile) {
+		if (apiStubs) {
+			ClassReader classReader = new ClassReader(classFile);
+			ClassWriter classWriter = new ClassWriter(0);
+			ClassVisitor visitor = classTweaker.createClassVisitor(Opcodes.ASM9, new ApiStubClassVisitor(Opcodes.ASM9, classWriter), null);
+			classReader.accept(visitor, ApiStubClassVisitor.PARSING_OPTIONS);
+			return deflate(classWriter.toByteArray());
+		}
+
+		byte[] result = AccessFlagPatcher.transform(Opcodes.ASM9, classFile, classTweaker);
+		return result == classFile ? null : deflate(result);
+	}
+
+	private static Transformed deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+		byte[] buffer = new byte[8192];
+
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+		} finally {
+			deflater.end();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return new Transformed(out.toByteArray(), (int) crc.getValue(), data.length);
+	}
+
+	private static final class Transformed {
+		final byte[] data;
+		final int crc;
+		final int size;
+
+		Transformed(byte[] data, int crc, int size) {
+			this.data = data;
+			this.crc = crc;
+			this.size = size;
+		}
+
+		/**
+		 * Encodes a transformed entry, or an unchanged one as {@code null}, for the cache.
+		 */
+		static byte[] encode(@Nullable Transformed transformed) {
+			if (transformed == null) {
+				return new byte[0];
+			}
+
+			return ByteBuffer.allocate(8 + transformed.data.length).putInt(transformed.crc).putInt(transformed.size).put(transformed.data).array();
+		}
+
+		/**
+		 * Checks the stored size and CRC against the data of an encoded entry, since a damaged entry would otherwise be
+		 * copied into the output jar as is.
+		 */
+		static boolean isIntact(byte[] encoded) {
+			if (encoded.length == 0) {
+				return true;
+			} else if (encoded.length < 8) {
+				return false;
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(encoded);
+			int crc = buffer.getInt();
+			int size = buffer.getInt();
+			Inflater inflater = new Inflater(true);
+			CRC32 actualCrc = new CRC32();
+			byte[] chunk = new byte[8192];
+			long length = 0;
+
+			try {
+				inflater.setInput(encoded, 8, encoded.length - 8);
+
+				while (!inflater.finished()) {
+					int inflated = inflater.inflate(chunk);
+
+					if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						return false;
+					}
+
+					actualCrc.update(chunk, 0, inflated);
+					length += inflated;
+				}
+			} catch (DataFormatException e) {
+				return false;
+			} finally {
+				inflater.end();
+			}
+
+			return length == size && (int) actualCrc.getValue() == crc;
+		}
+
+		@Nullable
+		static Transformed decode(byte[] encoded) {
+			if (encoded.length == 0) {
+				return null;
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(encoded);
+			return new Transformed(Arrays.copyOfRange(encoded, 8, encoded.length), buffer.getInt(), buffer.getInt());
+		}
+	}
+
+	public static final class Result {
+		private final int entryCount;
+		private final int transformedCount;
+		private final int cacheHitCount;
+		private final long readTime;
+		private final long indexTime;
+		private final long transformTime;
+		private final long writeTime;
+
+		Result(int entryCount, int transformedCount, int cacheHitCount, long readTime, long indexTime, long transformTime, long writeTime) {
+			this.entryCount = entryCount;
+			this.transformedCount = transformedCount;
+			this.cacheHitCount = cacheHitCount;
+			this.readTime = readTime;
+			this.indexTime = indexTime;
+			this.transformTime = transformTime;
+			this.writeTime = writeTime;
+		}
+
+		public int getEntryCount() {
+			return entryCount;
+		}
+
+		/**
+		 * @return the number of entries whose data was changed, all others were copied as is
+		 */
+		public int getTransformedCount() {
+			return transformedCount;
+		}
+
+		/**
+		 * @return the number of targets that were taken from the cache instead of being transformed
+		 */
+		public int getCacheHitCount() {
+			return cacheHitCount;
+		}
+
+		/**
+		 * @return the time taken to read the input jar and its central directory
+		 */
+		public Duration getReadTime() {
+			return Duration.ofNanos(readTime);
+		}
+
+		/**
+		 * @return the time taken to build the {@link InnerClassReferenceIndex}, if requested
+		 */
+		public Duration getIndexTime() {
+			return Duration.ofNanos(indexTime);
+		}
+
+		/**
+		 * @return the time taken to decompress, transform and recompress the target classes
+		 */
+		public Duration getTransformTime() {
+			return Duration.ofNanos(transformTime);
+		}
+
+		/**
+		 * @return the time taken to write the output jar and move it into place
+		 */
+		public Duration getWriteTime() {
+			return Duration.ofNanos(writeTime);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Transformed %d of %d entries, %d from cache (read: %d ms, index: %d ms, transform: %d ms, write: %d ms)",
+					transformedCount, entryCount, cacheHitCount, readTime / 1_000_000, indexTime / 1_000_000, transformTime / 1_000_000, writeTime / 1_000_000);
+		}
+	}
+}
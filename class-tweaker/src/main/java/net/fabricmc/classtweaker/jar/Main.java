@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+
+/**
+ * Command line entry point for {@link JarTransformer}.
+ *
+ * <p>Usage: {@code [--cache <directory>] [--inner-class-references] [--api-stubs] <input jar> <output jar> <class tweaker files...>}
+ */
+public final class Main {
+	private Main() {
+	}
+
+	public static void main(String[] args) throws IOException {
+		TransformCache cache = null;
+		boolean innerClassReferences = false;
+		boolean apiStubs = false;
+
+		while (args.length > 0 && args[0].startsWith("--")) {
+			if (args[0].equals("--cache") && args.length >= 2) {
+				cache = TransformCache.open(Paths.get(args[1]));
+				args = Arrays.copyOfRange(args, 2, args.length);
+			} else if (args[0].equals("--inner-class-references")) {
+				innerClassReferences = true;
+				args = Arrays.copyOfRange(args, 1, args.length);
+			} else if (args[0].equals("--api-stubs")) {
+				apiStubs = true;
+				args = Arrays.copyOfRange(args, 1, args.length);
+			} else {
+				break;
+			}
+		}
+
+		if (args.length < 3) {
+			System.err.println("Usage: [--cache <directory>] [--inner-class-references] [--api-stubs] <input jar> <output jar> <class tweaker files...>");
+			System.exit(1);
+			return;
+		}
+
+		long start = System.nanoTime();
+		List<ClassTweakerReader.Source> sources = new ArrayList<>();
+
+		for (int i = 2; i < args.length; i++) {
+			sources.add(ClassTweakerReader.Source.of(Files.readAllBytes(Paths.get(args[i])), null));
+		}
+
+		ClassTweaker classTweaker = ClassTweakerReader.readAll(sources).snapshot();
+		System.out.printf("Loaded %d class tweakers in %d ms%n", sources.size(), (System.nanoTime() - start) / 1_000_000);
+
+		Path input = Paths.get(args[0]);
+		Path output = Paths.get(args[1]);
+		JarTransformer transformer = JarTransformer.create(classTweaker, ForkJoinPool.commonPool(), cache);
+
+		if (innerClassReferences) {
+			transformer = transformer.withInnerClassReferences();
+		}
+
+		if (apiStubs) {
+			transformer = transformer.withApiStubs();
+		}
+
+		System.out.println(transformer.transform(input, output));
+	}
+}
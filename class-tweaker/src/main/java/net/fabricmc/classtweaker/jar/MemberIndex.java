@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.utils.ClassFile;
+import net.fabricmc.classtweaker.validator.ValidationEnvironment;
+
+/**
+ * An index of the classes in a set of jars and of the members they declare, to validate class tweakers against (see
+ * {@link ClassTweakerVisitor#validate(ValidationEnvironment, net.fabricmc.classtweaker.api.ProblemSink)}) without
+ * setting up a complete tiny-remapper environment.
+ *
+ * <p>The class files of each jar are scanned in parallel, reading only their header and member tables, into a compact
+ * table per jar that is queried in place. When a {@link TransformCache} is given, the table of a jar is stored in it
+ * keyed by a SHA-256 hash of the jar, and memory mapped instead of scanning the jar again on later builds. The hash is
+ * cached as well, keyed by the path, size and modification time of the jar, so that a jar that was not touched since
+ * is not even read. When several jars contain the same class, the one in the first jar is used.
+ */
+public final class MemberIndex implements ValidationEnvironment {
+	private final MemberTable[] tables;
+	private final int cachedJarCount;
+
+	private MemberIndex(MemberTable[] tables, int cachedJarCount) {
+		this.tables = tables;
+		this.cachedJarCount = cachedJarCount;
+	}
+
+	public static MemberIndex build(Collection<Path> jars) throws IOException {
+		return build(jars, ForkJoinPool.commonPool());
+	}
+
+	public static MemberIndex build(Collection<Path> jars, ForkJoinPool pool) throws IOException {
+		return build(jars, pool, null);
+	}
+
+	public static MemberIndex build(Collection<Path> jars, ForkJoinPool pool, @Nullable TransformCache cache) throws IOException {
+		List<MemberTable> tables = new ArrayList<>();
+		int cachedJarCount = 0;
+
+		for (Path jar : jars) {
+			byte[] data = null;
+			byte[] key = null;
+			MemberTable table = null;
+
+			if (cache != null) {
+				byte[] fileKey = MemberTable.fileKey(jar, Files.readAttributes(jar, BasicFileAttributes.class));
+				key = cache.get(fileKey);
+
+				if (key == null || key.length != MemberTable.KEY_LENGTH) {
+					data = Files.readAllBytes(jar);
+					key = MemberTable.key(data);
+					cache.put(fileKey, key);
+				}
+
+				ByteBuffer cached = cache.map(key);
+
+				// Entries written by a different version, or damaged ones, are replaced
+				if (cached != null) {
+					table = MemberTable.open(cached);
+				}
+			}
+
+			if (table != null) {
+				cachedJarCount++;
+			} else {
+				if (data == null) {
+					data = Files.readAllBytes(jar);
+				}
+
+				byte[] encoded = MemberTable.write(scan(RawZipArchive.read(data), pool, jar));
+
+				if (cache != null) {
+					cache.put(key, encoded);
+				}
+
+				table = MemberTable.open(ByteBuffer.wrap(encoded));
+			}
+
+			tables.add(table);
+		}
+
+		return new MemberIndex(tables.toArray(new MemberTable[0]), cachedJarCount);
+	}
+
+	private static List<MemberTable.ScannedClass> scan(RawZipArchive archive, ForkJoinPool pool, Path jar) throws IOException {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		MemberTable.ScannedClass[] scanned = new MemberTable.ScannedClass[archive.entries.size()];
+
+		for (int i = 0; i < scanned.length; i++) {
+			RawZipArchive.Entry entry = archive.entries.get(i);
+
+			// Multi-release versions of a class are the same class as far as validation is concerned
+			if (!entry.name.endsWith(".class") || entry.name.startsWith("META-INF/")) {
+				continue;
+			}
+
+			int index = i;
+			tasks.add(() -> {
+				try {
+					scanned[index] = scan(new ClassFile(archive.inflate(entry)));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+
+				return null;
+			});
+		}
+
+		JarTransformer.invokeAll(pool, tasks, jar);
+		List<MemberTable.ScannedClass> classes = new ArrayList<>(tasks.size());
+
+		for (MemberTable.ScannedClass scannedClass : scanned) {
+			if (scannedClass != null) {
+				classes.add(scannedClass);
+			}
+		}
+
+		return classes;
+	}
+
+	private static MemberTable.ScannedClass scan(ClassFile classFile) {
+		int header = classFile.getHeader();
+		String superName = classFile.readUnsignedShort(header + 4) == 0 ? null : classFile.readClass(header + 4);
+		return new MemberTable.ScannedClass(
+				classFile.getClassName(),
+				superName,
+				classFile.readUnsignedShort(header),
+				members(classFile, classFile.getFields()),
+				members(classFile, classFile.getMethods())
+		);
+	}
+
+	private static String[] members(ClassFile classFile, int offset) {
+		String[] members = new String[classFile.readUnsignedShort(offset) * 2];
+		offset += 2;
+
+		for (int i = 0; i < members.length; i += 2) {
+			members[i] = classFile.readUtf8(offset + 2);
+			members[i + 1] = classFile.readUtf8(offset + 4);
+			offset = classFile.skipAttributes(offset + 6);
+		}
+
+		return members;
+	}
+
+	/**
+	 * @return the number of classes in each jar added together, classes that are in several jars are counted once for
+	 * every jar
+	 */
+	public int getClassCount() {
+		int count = 0;
+
+		for (MemberTable table : tables) {
+			count += table.getClassCount();
+		}
+
+		return count;
+	}
+
+	/**
+	 * @return the number of jars whose index was read from the cache instead of scanning the jar
+	 */
+	public int getCachedJarCount() {
+		return cachedJarCount;
+	}
+
+	@Override
+	public boolean hasClass(String className) {
+		for (MemberTable table : tables) {
+			int record = table.findClass(className);
+
+			if (record >= 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean isEnum(String className) {
+		for (MemberTable table : tables) {
+			int record = table.findClass(className);
+
+			if (record >= 0) {
+				return (table.getAccess(record) & Opcodes.ACC_ENUM) != 0;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public @Nullable String getSuperName(String className) {
+		for (MemberTable table : tables) {
+			int record = table.findClass(className);
+
+			if (record >= 0) {
+				return table.getSuperName(record);
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	public boolean hasMethod(String owner, String name, String descriptor) {
+		for (MemberTable table : tables) {
+			int record = table.findClass(owner);
+
+			if (record >= 0) {
+				return table.hasMethod(record, name, descriptor);
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public boolean hasField(String owner, String name, String descriptor) {
+		for (MemberTable table : tables) {
+			int record = table.findClass(owner);
+
+			if (record >= 0) {
+				return table.hasField(record, name, descriptor);
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The classes and members of a single jar for {@link MemberIndex}, stored in a compact binary format that is queried
+ * in place, so that it can be memory mapped from a {@link TransformCache}.
+ *
+ * <p>The format consists of a header, an open addressing table of the classes by the hash code of their name, all
+ * strings, and then a record per class. Each record holds open addressing tables of its fields and methods by the hash
+ * codes of their name and descriptor. Strings are compared in place to rule out a collision of hash codes.
+ *
+ * <pre>
+ * header:  int magic, int version, int classCount, int classCapacity
+ * class slot:  int hash, int record (0 if empty)
+ * string:  int length, UTF-8 bytes
+ * record:  int name, int superName (0 if none), int access, int fieldCapacity, int methodCapacity,
+ *          followed by the field slots and the method slots
+ * member slot:  int hash, int name (0 if empty), int descriptor
+ * </pre>
+ */
+final class MemberTable {
+	private static final int MAGIC = 0x43544D49; // "CTMI"
+	private static final int VERSION = 1;
+	private static final byte[] KEY_VERSION = ("class-tweaker member index " + VERSION).getBytes(StandardCharsets.UTF_8);
+	private static final byte[] FILE_KEY_VERSION = ("class-tweaker member index file " + VERSION).getBytes(StandardCharsets.UTF_8);
+	static final int KEY_LENGTH = 32;
+	private static final int HEADER_SIZE = 16;
+	private static final int CLASS_SLOT_SIZE = 8;
+	private static final int RECORD_SIZE = 20;
+	private static final int MEMBER_SLOT_SIZE = 12;
+
+	private final ByteBuffer buffer;
+	private final int classCount;
+	private final int classCapacity;
+
+	private MemberTable(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.classCount = buffer.getInt(8);
+		this.classCapacity = buffer.getInt(12);
+	}
+
+	/**
+	 * Checks all offsets and capacities of the table up front, so that a truncated or otherwise damaged entry of a
+	 * {@link TransformCache} is rebuilt instead of failing once it is queried.
+	 *
+	 * @return the table, or {@code null} if the data was written by a different version or is damaged
+	 */
+	static @Nullable MemberTable open(ByteBuffer buffer) {
+		int limit = buffer.limit();
+
+		if (limit < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+			return null;
+		}
+
+		int classCount = buffer.getInt(8);
+		int classCapacity = buffer.getInt(12);
+
+		if (!isCapacity(classCapacity) || !fits(HEADER_SIZE, classCapacity, CLASS_SLOT_SIZE, limit)) {
+			return null;
+		}
+
+		int classes = 0;
+
+		for (int i = 0; i < classCapacity; i++) {
+			int slot = HEADER_SIZE + i * CLASS_SLOT_SIZE;
+			int record = buffer.getInt(slot + 4);
+
+			if (record == 0) {
+				continue;
+			}
+
+			classes++;
+
+			if (record < HEADER_SIZE || !fits(record, 1, RECORD_SIZE, limit)
+					|| !isString(buffer, buffer.getInt(record))
+					|| buffer.getInt(record + 4) != 0 && !isString(buffer, buffer.getInt(record + 4))) {
+				return null;
+			}
+
+			int fieldCapacity = buffer.getInt(record + 12);
+			int methodCapacity = buffer.getInt(record + 16);
+
+			if (!isCapacity(fieldCapacity) || !isCapacity(methodCapacity)
+					|| !fits(record + RECORD_SIZE, fieldCapacity + methodCapacity, MEMBER_SLOT_SIZE, limit)
+					|| !areMemberSlots(buffer, record + RECORD_SIZE, fieldCapacity)
+					|| !areMemberSlots(buffer, record + RECORD_SIZE + fieldCapacity * MEMBER_SLOT_SIZE, methodCapacity)) {
+				return null;
+			}
+		}
+
+		// Every probe sequence has to end at an empty slot
+		if (classes != classCount || classes >= classCapacity) {
+			return null;
+		}
+
+		return new MemberTable(buffer);
+	}
+
+	private static boolean areMemberSlots(ByteBuffer buffer, int slots, int capacity) {
+		int members = 0;
+
+		for (int i = 0; i < capacity; i++) {
+			int slot = slots + i * MEMBER_SLOT_SIZE;
+			int name = buffer.getInt(slot + 4);
+
+			if (name == 0) {
+				continue;
+			}
+
+			members++;
+
+			if (!isString(buffer, name) || !isString(buffer, buffer.getInt(slot + 8))) {
+				return false;
+			}
+		}
+
+		return members < capacity;
+	}
+
+	private static boolean isString(ByteBuffer buffer, int offset) {
+		return offset >= HEADER_SIZE && fits(offset, 1, 4, buffer.limit()) && fits(offset + 4, buffer.getInt(offset), 1, buffer.limit());
+	}
+
+	private static boolean isCapacity(int capacity) {
+		return capacity > 0 && Integer.bitCount(capacity) == 1;
+	}
+
+	/**
+	 * @return whether {@code count} items of {@code size} bytes starting at {@code offset} end within the limit
+	 */
+	private static boolean fits(int offset, int count, int size, int limit) {
+		return offset >= 0 && count >= 0 && offset + (long) count * size <= limit;
+	}
+
+	/**
+	 * @return the key of the table of a jar in a {@link TransformCache}, a hash of the jar's content
+	 */
+	static byte[] key(byte[] jar) throws IOException {
+		MessageDigest digest = TransformCache.newDigest();
+		digest.update(KEY_VERSION);
+		digest.update(jar);
+		return digest.digest();
+	}
+
+	/**
+	 * The {@link #key key} of a jar is stored in a {@link TransformCache} under this key, so that a jar that was not
+	 * touched since it was last indexed is neither read nor hashed again. A jar that is rewritten with the same size
+	 * within the resolution of the file system's modification times is not noticed.
+	 *
+	 * @return a hash of the path, size and modification time of the jar
+	 */
+	static byte[] fileKey(Path jar, BasicFileAttributes attributes) throws IOException {
+		MessageDigest digest = TransformCache.newDigest();
+		digest.update(FILE_KEY_VERSION);
+		digest.update(jar.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+		digest.update(ByteBuffer.allocate(16).putLong(attributes.size()).putLong(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)).array());
+
+		// Also notices a jar that was replaced by another one, where the file system tells them apart
+		if (attributes.fileKey() != null) {
+			digest.update(attributes.fileKey().toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		return digest.digest();
+	}
+
+	int getClassCount() {
+		return classCount;
+	}
+
+	/**
+	 * @return the offset of the class record, or -1 if the jar does not contain the class
+	 */
+	int findClass(String name) {
+		int hash = name.hashCode();
+		int mask = classCapacity - 1;
+
+		for (int i = hash & mask; ; i = (i + 1) & mask) {
+			int slot = HEADER_SIZE + i * CLASS_SLOT_SIZE;
+			int record = buffer.getInt(slot + 4);
+
+			if (record == 0) {
+				return -1;
+			} else if (buffer.getInt(slot) == hash && stringEquals(buffer.getInt(record), name)) {
+				return record;
+			}
+		}
+	}
+
+	int getAccess(int record) {
+		return buffer.getInt(record + 8);
+	}
+
+	@Nullable
+	String getSuperName(int record) {
+		int superName = buffer.getInt(record + 4);
+		return superName == 0 ? null : string(superName);
+	}
+
+	boolean hasField(int record, String name, String descriptor) {
+		return hasMember(record + RECORD_SIZE, buffer.getInt(record + 12), name, descriptor);
+	}
+
+	boolean hasMethod(int record, String name, String descriptor) {
+		int fieldCapacity = buffer.getInt(record + 12);
+		return hasMember(record + RECORD_SIZE + fieldCapacity * MEMBER_SLOT_SIZE, buffer.getInt(record + 16), name, descriptor);
+	}
+
+	private boolean hasMember(int slots, int capacity, String name, String descriptor) {
+		int hash = memberHash(name, descriptor);
+		int mask = capacity - 1;
+
+		for (int i = hash & mask; ; i = (i + 1) & mask) {
+			int slot = slots + i * MEMBER_SLOT_SIZE;
+			int memberName = buffer.getInt(slot + 4);
+
+			if (memberName == 0) {
+				return false;
+			} else if (buffer.getInt(slot) == hash && stringEquals(memberName, name) && stringEquals(buffer.getInt(slot + 8), descriptor)) {
+				return true;
+			}
+		}
+	}
+
+	private String string(int offset) {
+		byte[] bytes = new byte[buffer.getInt(offset)];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(offset + 4 + i);
+		}
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compares the string at the offset with the given one without decoding it.
+	 */
+	private boolean stringEquals(int offset, String string) {
+		int length = buffer.getInt(offset);
+		int start = offset + 4;
+
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+
+			if (c >= 0x80) {
+				// Names beyond ASCII are rare, so the rest of those is compared encoded
+				byte[] rest = string.substring(i).getBytes(StandardCharsets.UTF_8);
+
+				if (length - i != rest.length) {
+					return false;
+				}
+
+				for (int j = 0; j < rest.length; j++) {
+					if (buffer.get(start + i + j) != rest[j]) {
+						return false;
+					}
+				}
+
+				return true;
+			} else if (i >= length || buffer.get(start + i) != c) {
+				return false;
+			}
+		}
+
+		return length == string.length();
+	}
+
+	private static int memberHash(String name, String descriptor) {
+		return name.hashCode() * 31 + descriptor.hashCode();
+	}
+
+	private static int capacity(int count) {
+		// At most half full, so that every probe sequence ends at an empty slot
+		return Integer.highestOneBit(Math.max(1, count) * 2 - 1) * 2;
+	}
+
+	/**
+	 * Writes the table of the given classes. Only the first of several classes with the same name is written.
+	 */
+	static byte[] write(List<ScannedClass> scannedClasses) {
+		Map<String, ScannedClass> classes = new LinkedHashMap<>();
+		Set<String> strings = new HashSet<>();
+
+		for (ScannedClass scannedClass : scannedClasses) {
+			if (classes.putIfAbsent(scannedClass.name, scannedClass) == null) {
+				strings.add(scannedClass.name);
+
+				if (scannedClass.superName != null) {
+					strings.add(scannedClass.superName);
+				}
+
+				for (String[] members : new String[][] {scannedClass.fields, scannedClass.methods}) {
+					for (String member : members) {
+						strings.add(member);
+					}
+				}
+			}
+		}
+
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			int classCapacity = capacity(classes.size());
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(classes.size());
+			out.writeInt(classCapacity);
+			// The class slots are filled in once the records are written
+			out.write(new byte[classCapacity * CLASS_SLOT_SIZE]);
+
+			Map<String, Integer> stringOffsets = new LinkedHashMap<>();
+
+			for (String string : strings) {
+				byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+				stringOffsets.put(string, out.size());
+				out.writeInt(encoded.length);
+				out.write(encoded);
+			}
+
+			Map<String, Integer> records = new LinkedHashMap<>();
+
+			for (ScannedClass scannedClass : classes.values()) {
+				records.put(scannedClass.name, out.size());
+				int fieldCapacity = capacity(scannedClass.fields.length / 2);
+				int methodCapacity = capacity(scannedClass.methods.length / 2);
+				out.writeInt(stringOffsets.get(scannedClass.name));
+				out.writeInt(scannedClass.superName == null ? 0 : stringOffsets.get(scannedClass.superName));
+				out.writeInt(scannedClass.access);
+				out.writeInt(fieldCapacity);
+				out.writeInt(methodCapacity);
+				out.write(memberSlots(scannedClass.fields, fieldCapacity, stringOffsets));
+				out.write(memberSlots(scannedClass.methods, methodCapacity, stringOffsets));
+			}
+
+			byte[] data = bytes.toByteArray();
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			int mask = classCapacity - 1;
+
+			for (Map.Entry<String, Integer> record : records.entrySet()) {
+				int hash = record.getKey().hashCode();
+				int i = hash & mask;
+
+				while (buffer.getInt(HEADER_SIZE + i * CLASS_SLOT_SIZE + 4) != 0) {
+					i = (i + 1) & mask;
+				}
+
+				buffer.putInt(HEADER_SIZE + i * CLASS_SLOT_SIZE, hash);
+				buffer.putInt(HEADER_SIZE + i * CLASS_SLOT_SIZE + 4, record.getValue());
+			}
+
+			return data;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static byte[] memberSlots(String[] members, int capacity, Map<String, Integer> stringOffsets) {
+		ByteBuffer slots = ByteBuffer.allocate(capacity * MEMBER_SLOT_SIZE);
+		int mask = capacity - 1;
+
+		for (int member = 0; member < members.length; member += 2) {
+			int hash = memberHash(members[member], members[member + 1]);
+			int i = hash & mask;
+
+			while (slots.getInt(i * MEMBER_SLOT_SIZE + 4) != 0) {
+				i = (i + 1) & mask;
+			}
+
+			slots.putInt(i * MEMBER_SLOT_SIZE, hash);
+			slots.putInt(i * MEMBER_SLOT_SIZE + 4, stringOffsets.get(members[member]));
+			slots.putInt(i * MEMBER_SLOT_SIZE + 8, stringOffsets.get(members[member + 1]));
+		}
+
+		return slots.array();
+	}
+
+	/**
+	 * A class as read from a class file.
+	 */
+	static final class ScannedClass {
+		final String name;
+		@Nullable
+		final String superName;
+		final int access;
+		// Pairs of name and descriptor
+		final String[] fields;
+		final String[] methods;
+
+		ScannedClass(String name, @Nullable String superName, int access, String[] fields, String[] methods) {
+			this.name = name;
+			this.superName = superName;
+			this.access = access;
+			this.fields = fields;
+			this.methods = methods;
+		}
+	}
+}
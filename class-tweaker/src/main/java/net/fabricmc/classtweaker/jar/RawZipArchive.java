@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * A zip archive held in memory, giving access to the still compressed data of its entries so that they can be copied
+ * to another archive without being inflated and deflated again. Zip64 archives are not supported.
+ */
+final class RawZipArchive {
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int END_SIGNATURE = 0x06054b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_SIZE = 22;
+
+	static final int STORED = 0;
+	static final int DEFLATED = 8;
+
+	final byte[] data;
+	final List<Entry> entries;
+
+	private RawZipArchive(byte[] data, List<Entry> entries) {
+		this.data = data;
+		this.entries = entries;
+	}
+
+	static RawZipArchive read(byte[] data) throws IOException {
+		int end = findEnd(data);
+		int count = readShort(data, end + 10);
+		long directorySize = readInt(data, end + 12) & 0xFFFFFFFFL;
+		long directoryOffset = readInt(data, end + 16) & 0xFFFFFFFFL;
+
+		if (count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL) {
+			throw new IOException("Zip64 archives are not supported");
+		}
+
+		List<Entry> entries = new ArrayList<>(count);
+		int offset = (int) directoryOffset;
+
+		for (int i = 0; i < count; i++) {
+			if (offset + CENTRAL_HEADER_SIZE > data.length || readInt(data, offset) != CENTRAL_HEADER_SIGNATURE) {
+				throw new IOException("Invalid central directory header at offset " + offset);
+			}
+
+			Entry entry = new Entry();
+			entry.versionMadeBy = readShort(data, offset + 4);
+			entry.flags = readShort(data, offset + 8);
+			entry.method = readShort(data, offset + 10);
+			entry.time = readShort(data, offset + 12);
+			entry.date = readShort(data, offset + 14);
+			entry.crc = readInt(data, offset + 16);
+			long compressedSize = readInt(data, offset + 20) & 0xFFFFFFFFL;
+			long size = readInt(data, offset + 24) & 0xFFFFFFFFL;
+			int nameLength = readShort(data, offset + 28);
+			int extraLength = readShort(data, offset + 30);
+			int commentLength = readShort(data, offset + 32);
+			entry.internalAttributes = readShort(data, offset + 36);
+			entry.externalAttributes = readInt(data, offset + 38);
+			long localOffset = readInt(data, offset + 42) & 0xFFFFFFFFL;
+
+			if (compressedSize == 0xFFFFFFFFL || size == 0xFFFFFFFFL || localOffset == 0xFFFFFFFFL) {
+				throw new IOException("Zip64 archives are not supported");
+			}
+
+			entry.compressedSize = (int) compressedSize;
+			entry.size = (int) size;
+			entry.rawName = new byte[nameLength];
+			System.arraycopy(data, offset + CENTRAL_HEADER_SIZE, entry.rawName, 0, nameLength);
+			entry.name = new String(entry.rawName, StandardCharsets.UTF_8);
+
+			int local = (int) localOffset;
+
+			if (local + LOCAL_HEADER_SIZE > data.length || readInt(data, local) != LOCAL_HEADER_SIGNATURE) {
+				throw new IOException("Invalid local header for " + entry.name);
+			}
+
+			// The local header has its own extra field, which may differ in length from the central one
+			entry.dataOffset = local + LOCAL_HEADER_SIZE + readShort(data, local + 26) + readShort(data, local + 28);
+
+			if (entry.dataOffset + entry.compressedSize > data.length) {
+				throw new IOException("Truncated data for " + entry.name);
+			}
+
+			entries.add(entry);
+			offset += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+
+		return new RawZipArchive(data, Collections.unmodifiableList(entries));
+	}
+
+	/**
+	 * @return the uncompressed data of the entry
+	 */
+	byte[] inflate(Entry entry) throws IOException {
+		byte[] result = new byte[entry.size];
+
+		if (entry.method == STORED) {
+			System.arraycopy(data, entry.dataOffset, result, 0, entry.size);
+			return result;
+		} else if (entry.method != DEFLATED) {
+			throw new IOException("Unsupported compression method " + entry.method + " for " + entry.name);
+		}
+
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(data, entry.dataOffset, entry.compressedSize);
+			int length = 0;
+
+			while (length < result.length) {
+				int inflated = inflater.inflate(result, length, result.length - length);
+
+				if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("Truncated data for " + entry.name);
+				}
+
+				length += inflated;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed data for " + entry.name, e);
+		} finally {
+			inflater.end();
+		}
+
+		return result;
+	}
+
+	private static int findEnd(byte[] data) throws IOException {
+		// The end record is followed by a comment of at most 65535 bytes
+		for (int offset = data.length - END_SIZE; offset >= Math.max(0, data.length - END_SIZE - 0xFFFF); offset--) {
+			if (readInt(data, offset) == END_SIGNATURE) {
+				return offset;
+			}
+		}
+
+		throw new IOException("Not a zip archive");
+	}
+
+	static int readShort(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+	}
+
+	static int readInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+	}
+
+	static final class Entry {
+		String name;
+		byte[] rawName;
+		int versionMadeBy;
+		int flags;
+		int method;
+		int time;
+		int date;
+		int crc;
+		int compressedSize;
+		int size;
+		int internalAttributes;
+		int externalAttributes;
+		// Offset of the compressed data in the archive
+		int dataOffset;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a zip archive from already compressed entry data. Only the fields needed to read the archive back are
+ * written, extra fields and comments are dropped, and nothing depends on the time of writing.
+ */
+final class RawZipWriter implements Closeable {
+	// Sizes and CRCs are always in the local header, so no data descriptor follows the data
+	private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+	private static final int VERSION_NEEDED = 20;
+
+	private final OutputStream out;
+	private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+	private final byte[] header = new byte[RawZipArchive.CENTRAL_HEADER_SIZE];
+	private long offset;
+	private int count;
+
+	RawZipWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes an entry with the same name and attributes as {@code entry}, but with the given data.
+	 *
+	 * @param method the compression method {@code data} is compressed with
+	 */
+	void write(RawZipArchive.Entry entry, int method, int crc, int size, byte[] data, int dataOffset, int dataLength) throws IOException {
+		if (offset > 0xFFFFFFFEL || count == 0xFFFE) {
+			throw new IOException("Zip64 archives are not supported");
+		}
+
+		int flags = entry.flags & ~DATA_DESCRIPTOR_FLAG;
+
+		putInt(0, RawZipArchive.LOCAL_HEADER_SIGNATURE);
+		putShort(4, VERSION_NEEDED);
+		putShort(6, flags);
+		putShort(8, method);
+		putShort(10, entry.time);
+		putShort(12, entry.date);
+		putInt(14, crc);
+		putInt(18, dataLength);
+		putInt(22, size);
+		putShort(26, entry.rawName.length);
+		putShort(28, 0);
+		out.write(header, 0, RawZipArchive.LOCAL_HEADER_SIZE);
+		out.write(entry.rawName);
+		out.write(data, dataOffset, dataLength);
+
+		putInt(0, RawZipArchive.CENTRAL_HEADER_SIGNATURE);
+		putShort(4, entry.versionMadeBy);
+		putShort(6, VERSION_NEEDED);
+		putShort(8, flags);
+		putShort(10, method);
+		putShort(12, entry.time);
+		putShort(14, entry.date);
+		putInt(16, crc);
+		putInt(20, dataLength);
+		putInt(24, size);
+		putShort(28, entry.rawName.length);
+		putShort(30, 0);
+		putShort(32, 0);
+		putShort(34, 0);
+		putShort(36, entry.internalAttributes);
+		putInt(38, entry.externalAttributes);
+		putInt(42, (int) offset);
+		centralDirectory.write(header, 0, RawZipArchive.CENTRAL_HEADER_SIZE);
+		centralDirectory.write(entry.rawName);
+
+		offset += RawZipArchive.LOCAL_HEADER_SIZE + entry.rawName.length + dataLength;
+		count++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (offset + centralDirectory.size() > 0xFFFFFFFFL) {
+				throw new IOException("Zip64 archives are not supported");
+			}
+
+			centralDirectory.writeTo(out);
+
+			putInt(0, RawZipArchive.END_SIGNATURE);
+			putShort(4, 0);
+			putShort(6, 0);
+			putShort(8, count);
+			putShort(10, count);
+			putInt(12, centralDirectory.size());
+			putInt(16, (int) offset);
+			putShort(20, 0);
+			out.write(header, 0, RawZipArchive.END_SIZE);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void putShort(int index, int value) {
+		header[index] = (byte) value;
+		header[index + 1] = (byte) (value >>> 8);
+	}
+
+	private void putInt(int index, int value) {
+		header[index] = (byte) value;
+		header[index + 1] = (byte) (value >>> 8);
+		header[index + 2] = (byte) (value >>> 16);
+		header[index + 3] = (byte) (value >>> 24);
+	}
+}
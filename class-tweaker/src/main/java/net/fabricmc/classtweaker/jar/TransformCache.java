@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+
+/**
+ * An on-disk cache of transformed classes for {@link JarTransformer}. Entries are keyed by the inflated content of the
+ * input class together with its {@link TweakFingerprints fingerprint}, so changing a class tweaker only causes the
+ * classes whose tweaks actually changed to be transformed again, and recompressing a jar does not miss the cache. Since a
+ * key covers everything its value depends on, entries never go stale, which makes it safe to share a cache directory
+ * between different class tweakers, jars and processes. Readers check the entries they get, and an entry that turns out
+ * to be damaged, or was written by another format version, is computed and written again.
+ *
+ * <p>All keys are salted with a hash of the code of this library and of ASM, as loaded, so that an upgrade that changes
+ * the output of the transform never serves entries written by the previous version. Those entries are not removed,
+ * they are just no longer used.
+ *
+ * <p>The same cache also holds the {@link MemberIndex member indexes} of jars, keyed by the content of the jar.
+ */
+public final class TransformCache {
+	private static final byte[] VERSION = "class-tweaker transform cache 2".getBytes(StandardCharsets.UTF_8);
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	@Nullable
+	private static volatile byte[] codeHash;
+
+	private final Path directory;
+
+	private TransformCache(Path directory) {
+		this.directory = directory;
+	}
+
+	public static TransformCache open(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		return new TransformCache(directory);
+	}
+
+	/**
+	 * @param classFile the inflated input class
+	 * @param fingerprint the fingerprint of the tweaks applied to the class
+	 * @param apiStubs whether the class is transformed into an API stub
+	 */
+	static byte[] key(byte[] classFile, byte[] fingerprint, boolean apiStubs) throws IOException {
+		MessageDigest digest = newDigest();
+		digest.update(classFile);
+		digest.update(fingerprint);
+		digest.update((byte) (apiStubs ? 1 : 0));
+		return digest.digest();
+	}
+
+	/**
+	 * @return a digest for a key, already salted with the version of the code that computes the values
+	 */
+	static MessageDigest newDigest() throws IOException {
+		byte[] hash = codeHash;
+
+		if (hash == null) {
+			// Racing threads compute the same hash, so there is no need to lock
+			codeHash = hash = computeCodeHash();
+		}
+
+		MessageDigest digest = TweakFingerprints.newDigest();
+		digest.update(hash);
+		return digest;
+	}
+
+	private static byte[] computeCodeHash() throws IOException {
+		MessageDigest digest = TweakFingerprints.newDigest();
+		digest.update(VERSION);
+
+		for (Class<?> cls : new Class<?>[] {TransformCache.class, ClassReader.class}) {
+			Path location = codeLocation(cls);
+
+			if (location == null) {
+				// Not loaded from the file system, so the declared version is the best there is
+				digest.update(String.valueOf(cls.getPackage().getImplementationVersion()).getBytes(StandardCharsets.UTF_8));
+			} else if (Files.isDirectory(location)) {
+				List<Path> classFiles;
+
+				try (Stream<Path> stream = Files.walk(location)) {
+					classFiles = stream.filter(path -> path.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+				}
+
+				for (Path classFile : classFiles) {
+					digest.update(location.relativize(classFile).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8));
+					digest.update(Files.readAllBytes(classFile));
+				}
+			} else {
+				digest.update(Files.readAllBytes(location));
+			}
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * @return the jar or class directory that the class was loaded from, or {@code null} if it is not a local file
+	 */
+	@Nullable
+	private static Path codeLocation(Class<?> cls) {
+		CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+		URL url = codeSource != null ? codeSource.getLocation() : null;
+
+		if (url == null) {
+			return null;
+		}
+
+		try {
+			return Paths.get(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException | FileSystemNotFoundException e) {
+			return null;
+		}
+	}
+
+	@Nullable
+	byte[] get(byte[] key) throws IOException {
+		try {
+			return Files.readAllBytes(path(key));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Maps an entry into memory instead of reading it, for large entries of which only small parts are accessed.
+	 */
+	@Nullable
+	ByteBuffer map(byte[] key) throws IOException {
+		try (FileChannel channel = FileChannel.open(path(key), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	void put(byte[] key, byte[] value) throws IOException {
+		Path path = path(key);
+		Files.createDirectories(path.getParent());
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+		try {
+			Files.write(temp, value);
+
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path);
+			}
+		} catch (FileAlreadyExistsException e) {
+			// Another process put the same entry, which has the same value
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private Path path(byte[] key) {
+		char[] name = new char[key.length * 2];
+
+		for (int i = 0; i < key.length; i++) {
+			name[i * 2] = HEX[(key[i] >>> 4) & 0xF];
+			name[i * 2 + 1] = HEX[key[i] & 0xF];
+		}
+
+		return directory.resolve(new String(name, 0, 2)).resolve(new String(name));
+	}
+}
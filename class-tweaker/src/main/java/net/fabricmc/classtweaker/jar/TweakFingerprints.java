@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.toFlags;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+/**
+ * Computes a stable hash of the tweaks that apply to a single class: its access widening, injected interfaces and
+ * enum constants, plus the class access of its nested classes and nested injected interfaces, which is applied to its
+ * inner class entries. Two class tweakers give a class the same fingerprint if and only if they transform it the same
+ * way, regardless of how their entries were spread over files or in which order they were read.
+ *
+ * <p>Inner class entries that a class has for nested classes of other classes are only covered by its fingerprint if
+ * they are passed in. {@link JarTransformer} takes them from an {@link InnerClassReferenceIndex}, or otherwise scans
+ * the inner class entries of each class before looking it up in its cache.
+ */
+public final class TweakFingerprints {
+	private static final Comparator<Map.Entry<EntryTriple, AccessWidener.Access>> MEMBER_ORDER = Comparator
+			.comparing((Map.Entry<EntryTriple, AccessWidener.Access> entry) -> entry.getKey().getName())
+			.thenComparing(entry -> entry.getKey().getDesc());
+
+	private final ClassTweaker classTweaker;
+	// Targets by each of the classes they are nested in
+	private final Map<String, List<String>> nestedTargets = new HashMap<>();
+
+	private TweakFingerprints(ClassTweaker classTweaker) {
+		this.classTweaker = classTweaker;
+
+		for (String target : classTweaker.getTargets()) {
+			for (int i = target.indexOf('$'); i > 0; i = target.indexOf('$', i + 1)) {
+				nestedTargets.computeIfAbsent(target.substring(0, i), k -> new ArrayList<>()).add(target);
+			}
+		}
+
+		nestedTargets.values().forEach(Collections::sort);
+	}
+
+	/**
+	 * The class tweaker must not be modified while the returned instance is in use.
+	 */
+	public static TweakFingerprints create(ClassTweaker classTweaker) {
+		return new TweakFingerprints(classTweaker);
+	}
+
+	/**
+	 * @return the SHA-256 fingerprint of the tweaks applied to the given class, {@code className} separated by slashes
+	 */
+	public byte[] get(String className) {
+		return get(className, Collections.emptyList());
+	}
+
+	/**
+	 * @param innerClassReferences the nested classes of other classes that the class has inner class entries for
+	 * @return the SHA-256 fingerprint of the tweaks applied to the given class, {@code className} separated by slashes
+	 */
+	public byte[] get(String className, Collection<String> innerClassReferences) {
+		MessageDigest digest = newDigest();
+		update(digest, className);
+
+		AccessWidener accessWidener = classTweaker.getAccessWidener(className);
+		digest.update((byte) toFlags(accessWidener.getClassAccess()));
+		updateMembers(digest, accessWidener.getAllMethodAccesses());
+		updateMembers(digest, accessWidener.getAllFieldAccesses());
+
+		List<InjectedInterface> injectedInterfaces = classTweaker.getInjectedInterfaces(className);
+		updateInt(digest, injectedInterfaces.size());
+
+		for (InjectedInterface injectedInterface : injectedInterfaces) {
+			update(digest, injectedInterface.getInterfaceSignature());
+
+			// The inner class entries added for a nested interface and its nested outer classes are widened too
+			String interfaceName = injectedInterface.getInterfaceName();
+
+			if (interfaceName.indexOf('$') > 0) {
+				for (int i = interfaceName.indexOf('$', interfaceName.indexOf('$') + 1); i > 0; i = interfaceName.indexOf('$', i + 1)) {
+					digest.update((byte) toFlags(classTweaker.getAccessWidener(interfaceName.substring(0, i)).getClassAccess()));
+				}
+
+				digest.update((byte) toFlags(classTweaker.getAccessWidener(interfaceName).getClassAccess()));
+			}
+		}
+
+		List<EnumExtension> enumExtensions = classTweaker.getEnumExtensions(className);
+		updateInt(digest, enumExtensions.size());
+
+		for (EnumExtension enumExtension : enumExtensions) {
+			update(digest, enumExtension.getAddedConstant());
+		}
+
+		List<String> nested = nestedTargets.getOrDefault(className, Collections.emptyList());
+		updateInt(digest, nested.size());
+
+		for (String nestedClass : nested) {
+			update(digest, nestedClass);
+			digest.update((byte) toFlags(classTweaker.getAccessWidener(nestedClass).getClassAccess()));
+		}
+
+		updateInt(digest, innerClassReferences.size());
+
+		for (String reference : innerClassReferences) {
+			update(digest, reference);
+			digest.update((byte) toFlags(classTweaker.getAccessWidener(reference).getClassAccess()));
+		}
+
+		return digest.digest();
+	}
+
+	private static void updateMembers(MessageDigest digest, Map<EntryTriple, AccessWidener.Access> members) {
+		List<Map.Entry<EntryTriple, AccessWidener.Access>> entries = new ArrayList<>(members.entrySet());
+		entries.sort(MEMBER_ORDER);
+		updateInt(digest, entries.size());
+
+		for (Map.Entry<EntryTriple, AccessWidener.Access> entry : entries) {
+			update(digest, entry.getKey().getName());
+			update(digest, entry.getKey().getDesc());
+			digest.update((byte) toFlags(entry.getValue()));
+		}
+	}
+
+	private static void update(MessageDigest digest, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		updateInt(digest, bytes.length);
+		digest.update(bytes);
+	}
+
+	private static void updateInt(MessageDigest digest, int value) {
+		digest.update((byte) (value >>> 24));
+		digest.update((byte) (value >>> 16));
+		digest.update((byte) (value >>> 8));
+		digest.update((byte) value);
+	}
+
+	static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not supported", e);
+		}
+	}
+}
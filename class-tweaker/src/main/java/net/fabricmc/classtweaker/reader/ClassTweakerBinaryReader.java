@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.reader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat;
+import net.fabricmc.classtweaker.impl.ClassTweakerImpl;
+import net.fabricmc.classtweaker.impl.MappedClassTweaker;
+import net.fabricmc.classtweaker.writer.ClassTweakerBinaryWriter;
+
+/**
+ * Reads the binary format written by {@link ClassTweakerBinaryWriter}.
+ *
+ * <p>The data can either be used in place, see {@link #map(Path, byte[])}, or its entries can be replayed owner by
+ * owner into a {@link ClassTweakerVisitor}. For a {@link ClassTweakerImpl} this results in the same access, the same
+ * injected interface and enum extension lists, and the same target order as the class tweaker that was written.
+ */
+public final class ClassTweakerBinaryReader {
+	private ClassTweakerBinaryReader() {
+	}
+
+	/**
+	 * @return the read class tweaker, or {@code null} if the data was written with a different cache key or format
+	 * version and should be treated as a cache miss
+	 */
+	public static @Nullable ClassTweaker read(byte[] content, byte[] cacheKey) {
+		ClassTweakerImpl classTweaker = new ClassTweakerImpl();
+		return read(content, cacheKey, classTweaker) ? classTweaker : null;
+	}
+
+	/**
+	 * @return whether the data was read, {@code false} if it was written with a different cache key or format version
+	 */
+	public static boolean read(byte[] content, byte[] cacheKey, ClassTweakerVisitor visitor) {
+		MappedClassTweaker classTweaker = MappedClassTweaker.open(ByteBuffer.wrap(content), cacheKey);
+
+		if (classTweaker == null) {
+			return false;
+		}
+
+		try {
+			classTweaker.accept(visitor);
+		} catch (IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Truncated or corrupt binary class tweaker", e);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Maps the file into memory and returns a read-only view of it. The file must not be modified while the view is
+	 * in use.
+	 *
+	 * @return the view, or {@code null} if the file was written with a different cache key or format version
+	 */
+	public static @Nullable ClassTweaker map(Path path, byte[] cacheKey) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			return MappedClassTweaker.open(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), cacheKey);
+		}
+	}
+
+	/**
+	 * Computes a key over the content and the expected namespace of all sources, including their order.
+	 */
+	public static byte[] computeCacheKey(List<ClassTweakerReader.Source> sources) {
+		MessageDigest digest;
+
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+
+		ByteBuffer lengths = ByteBuffer.allocate(12);
+
+		for (ClassTweakerReader.Source source : sources) {
+			byte[] namespace = source.getNamespace() == null ? null : source.getNamespace().getBytes(ClassTweakerReaderImpl.ENCODING);
+			lengths.clear();
+			lengths.putInt(namespace == null ? -1 : namespace.length).putInt(source.getContent().length).putInt(ClassTweakerBinaryFormat.FORMAT_VERSION);
+			digest.update(lengths.array());
+
+			if (namespace != null) {
+				digest.update(namespace);
+			}
+
+			digest.update(source.getContent());
+		}
+
+		return digest.digest();
+	}
+}
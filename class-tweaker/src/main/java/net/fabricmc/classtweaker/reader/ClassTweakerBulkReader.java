@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.reader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.impl.ClassTweakerImpl;
+import net.fabricmc.classtweaker.utils.Futures;
+
+/**
+ * Reads many class tweaker files in parallel, each into its own {@link ClassTweakerImpl} as those are not thread-safe.
+ * The partial results are merged in source order, so the result does not depend on which task finished first.
+ */
+public final class ClassTweakerBulkReader {
+	private ClassTweakerBulkReader() {
+	}
+
+	public static ClassTweaker readAll(List<ClassTweakerReader.Source> sources, Executor executor) {
+		List<CompletableFuture<ClassTweakerImpl>> partials = new ArrayList<>(sources.size());
+
+		for (ClassTweakerReader.Source source : sources) {
+			partials.add(CompletableFuture.supplyAsync(() -> read(source), executor));
+		}
+
+		ClassTweakerImpl classTweaker = new ClassTweakerImpl();
+
+		for (CompletableFuture<ClassTweakerImpl> partial : partials) {
+			classTweaker.merge(Futures.join(partial));
+		}
+
+		return classTweaker;
+	}
+
+	private static ClassTweakerImpl read(ClassTweakerReader.Source source) {
+		ClassTweakerImpl partial = new ClassTweakerImpl();
+		new ClassTweakerReaderImpl(partial).read(source.getContent(), source.getNamespace());
+		return partial;
+	}
+
+	public static final class SourceImpl implements ClassTweakerReader.Source {
+		private final byte[] content;
+		@Nullable
+		private final String namespace;
+
+		public SourceImpl(byte[] content, @Nullable String namespace) {
+			this.content = content;
+			this.namespace = namespace;
+		}
+
+		@Override
+		public byte[] getContent() {
+			return content;
+		}
+
+		@Override
+		public @Nullable String getNamespace() {
+			return namespace;
+		}
+	}
+}
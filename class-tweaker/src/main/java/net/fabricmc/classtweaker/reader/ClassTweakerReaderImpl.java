@@ -18,11 +18,8 @@ package net.fabricmc.classtweaker.reader;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
-import java.util.List;
 import java.util.Locale;
 import java.util.regex.Pattern;
 
@@ -34,18 +31,22 @@ import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
 public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 	public static final Charset ENCODING = StandardCharsets.UTF_8;
 
-	// Also includes some weirdness such as vertical tabs
-	private static final Pattern V1_DELIMITER = Pattern.compile("\\s+");
-	// Only spaces or tabs
-	private static final Pattern V2_DELIMITER = Pattern.compile("[ \\t]+");
 	// Prefix used on access types to denote the entry should be inherited by mods depending on this mod
 	private static final String TRANSITIVE_PREFIX = "transitive-";
+	// The longest valid line has 5 tokens, one more is enough to detect lines with too many tokens
+	private static final int MAX_TOKENS = 6;
+	private static final int HEADER_TOKENS = 3;
 
 	private static final String ENUM_PARAMS_USAGE = "Expected (<tab> params <owner> <name> <desc>) got (%s)";
 	private static final Pattern ENUM_PARAMS_STR_PATTERN = Pattern.compile("[^\\s\"']+|\"([^\"]*)\"|'([^']*)'");
 
 	private final ClassTweakerVisitor visitor;
 
+	// Byte offsets of the tokens of the current line, the count may exceed the capacity of the arrays
+	private final int[] tokenStarts = new int[MAX_TOKENS];
+	private final int[] tokenEnds = new int[MAX_TOKENS];
+	private int tokenCount;
+
 	private int lineNumber;
 
 	public ClassTweakerReaderImpl(ClassTweakerVisitor visitor) {
@@ -67,12 +68,16 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 
 	@Override
 	public void read(byte[] content, String currentNamespace) {
-		String strContent = new String(content, ENCODING);
+		HeaderImpl header = readHeader(content);
+		visitHeader(header, currentNamespace);
 
-		try {
-			read(new BufferedReader(new StringReader(strContent)), currentNamespace);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		// Work directly on the UTF-8 bytes, strings are only created for the names passed to the visitor
+		int pos = nextLineStart(content, lineEnd(content, 0));
+
+		while (pos < content.length) {
+			int end = lineEnd(content, pos);
+			readLine(header.version, content, pos, end);
+			pos = nextLineStart(content, end);
 		}
 	}
 
@@ -84,104 +89,145 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 	@Override
 	public void read(BufferedReader reader, String currentNamespace) throws IOException {
 		HeaderImpl header = readHeader(reader);
+		visitHeader(header, currentNamespace);
+
+		String line;
+
+		while ((line = reader.readLine()) != null) {
+			byte[] bytes = line.getBytes(ENCODING);
+			readLine(header.version, bytes, 0, bytes.length);
+		}
+	}
+
+	private void visitHeader(HeaderImpl header, String currentNamespace) {
 		lineNumber = 1;
 		visitor.visitLineNumber(1);
 
-		int version = header.version;
-
 		if (currentNamespace != null && !header.namespace.equals(currentNamespace)) {
 			throw error("Namespace (%s) does not match current runtime namespace (%s)", header.namespace, currentNamespace);
 		}
 
 		visitor.visitHeader(header.namespace);
+	}
 
-		String line;
+	private void readLine(int version, byte[] content, int start, int end) {
+		lineNumber++;
+		visitor.visitLineNumber(lineNumber);
 
-		Pattern delimiter = version < ClassTweaker.AW_V2 ? V1_DELIMITER : V2_DELIMITER;
+		//Comment handling
+		int commentPos = indexOf(content, start, end, '#');
 
-		while ((line = reader.readLine()) != null) {
-			lineNumber++;
-			visitor.visitLineNumber(lineNumber);
+		if (commentPos >= 0) {
+			end = commentPos;
 
-			line = handleComment(version, line);
+			// In V1, trimming led to leading whitespace being tolerated
+			// The tailing whitespace is already skipped by the tokenizer below
+			if (version <= ClassTweaker.AW_V1) {
+				while (start < end && (content[start] & 0xFF) <= ' ') {
+					start++;
+				}
 
-			if (line.isEmpty()) {
-				continue;
+				while (end > start && (content[end - 1] & 0xFF) <= ' ') {
+					end--;
+				}
 			}
+		}
 
-			if (Character.isWhitespace(line.codePointAt(0))) {
-				throw error("Leading whitespace is not allowed");
-			}
+		if (start == end) {
+			return;
+		}
 
-			// Note that this trims trailing spaces. See the docs of split for details.
-			List<String> tokens = Arrays.asList(delimiter.split(line));
+		if (startsWithWhitespace(content, start, end)) {
+			throw error("Leading whitespace is not allowed");
+		}
 
-			String firstToken = tokens.get(0);
+		tokenCount = tokenize(content, start, end, version < ClassTweaker.AW_V2, tokenStarts, tokenEnds);
 
-			if (version >= ClassTweaker.CT_V1) {
-				if (("inject-interface".equals(firstToken) || (TRANSITIVE_PREFIX + "inject-interface").equals(firstToken))) {
-					if (tokens.size() != 3) {
-						throw error("Expected (inject-interface <className> <interfaceName>) got (%s)", line);
-					}
+		if (version >= ClassTweaker.CT_V1) {
+			if (isKeyword(content, "inject-interface")) {
+				if (tokenCount != 3) {
+					throw error("Expected (inject-interface <className> <interfaceName>) got (%s)", string(content, start, end));
+				}
 
-					visitor.visitInjectedInterface(tokens.get(1), tokens.get(2), tokens.get(0).startsWith(TRANSITIVE_PREFIX));
+				visitor.visitInjectedInterface(token(content, 1), token(content, 2), isTransitive(content));
 
-					continue;
-				}
+				return;
 			}
+		}
 
-			if (version >= ClassTweaker.CT_V2) {
-				if ("extend-enum".equals(firstToken) || (TRANSITIVE_PREFIX + "extend-enum").equals(firstToken)) {
-					if (tokens.size() != 3) {
-						throw error("Expected (extend-enum <className> <constantName>) got (%s)", line);
-					}
+		if (version >= ClassTweaker.CT_V2) {
+			if (isKeyword(content, "extend-enum")) {
+				if (tokenCount != 3) {
+					throw error("Expected (extend-enum <className> <constantName>) got (%s)", string(content, start, end));
+				}
 
-					visitor.visitEnumExtension(tokens.get(1), tokens.get(2), tokens.get(0).startsWith(TRANSITIVE_PREFIX));
+				visitor.visitEnumExtension(token(content, 1), token(content, 2), isTransitive(content));
 
-					continue;
-				}
+				return;
 			}
+		}
 
-			boolean transitive = false;
+		boolean transitive = false;
+		int accessStart = tokenStarts[0];
 
-			if (version >= ClassTweaker.AW_V2) {
-				// transitive access widener flag
-				if (firstToken.startsWith(TRANSITIVE_PREFIX)) {
-					firstToken = firstToken.substring(TRANSITIVE_PREFIX.length());
-					transitive = true;
-				}
+		if (version >= ClassTweaker.AW_V2) {
+			// transitive access widener flag
+			if (isTransitive(content)) {
+				accessStart += TRANSITIVE_PREFIX.length();
+				transitive = true;
 			}
+		}
 
-			AccessWidenerVisitor.AccessType access = readAccessType(firstToken);
+		AccessWidenerVisitor.AccessType access = readAccessType(content, accessStart, tokenEnds[0]);
 
-			if (tokens.size() < 2) {
-				throw error("Expected <class|field|method> following " + tokens.get(0));
-			}
+		if (tokenCount < 2) {
+			throw error("Expected <class|field|method> following " + token(content, 0));
+		}
 
-			switch (tokens.get(1)) {
-			case "class":
-				handleClass(line, tokens, transitive, access);
-				break;
-			case "field":
-				handleField(line, tokens, transitive, access);
-				break;
-			case "method":
-				handleMethod(line, tokens, transitive, access);
-				break;
-			default:
-				throw error("Unsupported type: '" + tokens.get(1) + "'");
-			}
+		if (regionEquals(content, tokenStarts[1], tokenEnds[1], "class")) {
+			handleClass(content, start, end, transitive, access);
+		} else if (regionEquals(content, tokenStarts[1], tokenEnds[1], "field")) {
+			handleField(content, start, end, transitive, access);
+		} else if (regionEquals(content, tokenStarts[1], tokenEnds[1], "method")) {
+			handleMethod(content, start, end, transitive, access);
+		} else {
+			throw error("Unsupported type: '" + token(content, 1) + "'");
 		}
 	}
 
 	public static HeaderImpl readHeader(byte[] content) {
-		String strContent = new String(content, ENCODING);
+		int[] starts = new int[HEADER_TOKENS];
+		int[] ends = new int[HEADER_TOKENS];
+		int end = lineEnd(content, 0);
+		// A leading delimiter would be split into an empty first token
+		int tokens = end > 0 && isDelimiter(content[0], true) ? -1 : tokenize(content, 0, end, true, starts, ends);
 
-		try {
-			return readHeader(new BufferedReader(new StringReader(strContent)));
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		if (tokens != HEADER_TOKENS || (!regionEquals(content, starts[0], ends[0], "accessWidener") && !regionEquals(content, starts[0], ends[0], "classTweaker"))) {
+			throw new ClassTweakerFormatException(
+					1,
+					"Invalid access widener file header. Expected: 'classTweaker <version> <namespace>'"
+			);
+		}
+
+		final boolean accessWidener = regionEquals(content, starts[0], ends[0], "accessWidener");
+		final boolean v1 = regionEquals(content, starts[1], ends[1], "v1");
+
+		if (!v1 && !regionEquals(content, starts[1], ends[1], "v2")) {
+			throw new ClassTweakerFormatException(
+					1,
+					(accessWidener ? "Unsupported access widener format: " : "Unsupported class tweaker format: ") + string(content, starts[1], ends[1])
+			);
 		}
+
+		int version;
+
+		if (accessWidener) {
+			version = v1 ? ClassTweaker.AW_V1 : ClassTweaker.AW_V2;
+		} else {
+			version = v1 ? ClassTweaker.CT_V1 : ClassTweaker.CT_V2;
+		}
+
+		return new HeaderImpl(version, string(content, starts[2], ends[2]));
 	}
 
 	public static HeaderImpl readHeader(BufferedReader reader) throws IOException {
@@ -231,12 +277,12 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 		return new HeaderImpl(version, header[2]);
 	}
 
-	private void handleClass(String line, List<String> tokens, boolean transitive, AccessWidenerVisitor.AccessType access) {
-		if (tokens.size() != 3) {
-			throw error("Expected (<access> class <className>) got (%s)", line);
+	private void handleClass(byte[] content, int start, int end, boolean transitive, AccessWidenerVisitor.AccessType access) {
+		if (tokenCount != 3) {
+			throw error("Expected (<access> class <className>) got (%s)", string(content, start, end));
 		}
 
-		String name = tokens.get(2);
+		String name = token(content, 2);
 		validateClassName(name);
 
 		try {
@@ -246,14 +292,14 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 		}
 	}
 
-	private void handleField(String line, List<String> tokens, boolean transitive, AccessWidenerVisitor.AccessType access) {
-		if (tokens.size() != 5) {
-			throw error("Expected (<access> field <className> <fieldName> <fieldDesc>) got (%s)", line);
+	private void handleField(byte[] content, int start, int end, boolean transitive, AccessWidenerVisitor.AccessType access) {
+		if (tokenCount != 5) {
+			throw error("Expected (<access> field <className> <fieldName> <fieldDesc>) got (%s)", string(content, start, end));
 		}
 
-		String owner = tokens.get(2);
-		String fieldName = tokens.get(3);
-		String descriptor = tokens.get(4);
+		String owner = token(content, 2);
+		String fieldName = token(content, 3);
+		String descriptor = token(content, 4);
 
 		validateClassName(owner);
 
@@ -264,14 +310,14 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 		}
 	}
 
-	private void handleMethod(String line, List<String> tokens, boolean transitive, AccessWidenerVisitor.AccessType access) {
-		if (tokens.size() != 5) {
-			throw error("Expected (<access> method <className> <methodName> <methodDesc>) got (%s)", line);
+	private void handleMethod(byte[] content, int start, int end, boolean transitive, AccessWidenerVisitor.AccessType access) {
+		if (tokenCount != 5) {
+			throw error("Expected (<access> method <className> <methodName> <methodDesc>) got (%s)", string(content, start, end));
 		}
 
-		String owner = tokens.get(2);
-		String methodName = tokens.get(3);
-		String descriptor = tokens.get(4);
+		String owner = token(content, 2);
+		String methodName = token(content, 3);
+		String descriptor = token(content, 4);
 
 		validateClassName(owner);
 
@@ -282,34 +328,39 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 		}
 	}
 
-	private String handleComment(int version, String line) {
-		//Comment handling
-		int commentPos = line.indexOf('#');
+	private AccessWidenerVisitor.AccessType readAccessType(byte[] content, int start, int end) {
+		if (regionEqualsIgnoreCase(content, start, end, "accessible")) {
+			return AccessWidenerVisitor.AccessType.ACCESSIBLE;
+		} else if (regionEqualsIgnoreCase(content, start, end, "extendable")) {
+			return AccessWidenerVisitor.AccessType.EXTENDABLE;
+		} else if (regionEqualsIgnoreCase(content, start, end, "mutable")) {
+			return AccessWidenerVisitor.AccessType.MUTABLE;
+		}
 
-		if (commentPos >= 0) {
-			line = line.substring(0, commentPos);
+		throw error("Unknown access type: " + string(content, start, end));
+	}
 
-			// In V1, trimming led to leading whitespace being tolerated
-			// The tailing whitespace is already stripped by the split below
-			if (version <= ClassTweaker.AW_V1) {
-				line = line.trim();
-			}
+	/**
+	 * Whether the first token is the given keyword, optionally prefixed with {@link #TRANSITIVE_PREFIX}.
+	 */
+	private boolean isKeyword(byte[] content, String keyword) {
+		int start = tokenStarts[0];
+
+		if (isTransitive(content)) {
+			start += TRANSITIVE_PREFIX.length();
 		}
 
-		return line;
+		return regionEquals(content, start, tokenEnds[0], keyword);
 	}
 
-	private AccessWidenerVisitor.AccessType readAccessType(String access) {
-		switch (access.toLowerCase(Locale.ROOT)) {
-		case "accessible":
-			return AccessWidenerVisitor.AccessType .ACCESSIBLE;
-		case "extendable":
-			return AccessWidenerVisitor.AccessType .EXTENDABLE;
-		case "mutable":
-			return AccessWidenerVisitor.AccessType .MUTABLE;
-		default:
-			throw error("Unknown access type: " + access);
-		}
+	private boolean isTransitive(byte[] content) {
+		int start = tokenStarts[0];
+		int end = start + TRANSITIVE_PREFIX.length();
+		return end <= tokenEnds[0] && regionEquals(content, start, end, TRANSITIVE_PREFIX);
+	}
+
+	private String token(byte[] content, int index) {
+		return string(content, tokenStarts[index], tokenEnds[index]);
 	}
 
 	private ClassTweakerFormatException error(String format, Object... args) {
@@ -327,6 +378,140 @@ public final class ClassTweakerReaderImpl implements ClassTweakerReader {
 		}
 	}
 
+	/**
+	 * Splits the given range into tokens, storing up to {@code starts.length} token offsets.
+	 * The range must not start with a delimiter.
+	 *
+	 * @param v1 whether to split on any whitespace like {@code \s+} (v1), or only on spaces and tabs (v2 and later)
+	 * @return the total number of tokens, which may be larger than the number of stored offsets
+	 */
+	private static int tokenize(byte[] content, int start, int end, boolean v1, int[] starts, int[] ends) {
+		int count = 0;
+		int pos = start;
+
+		while (pos < end) {
+			int tokenStart = pos;
+
+			while (pos < end && !isDelimiter(content[pos], v1)) {
+				pos++;
+			}
+
+			if (count < starts.length) {
+				starts[count] = tokenStart;
+				ends[count] = pos;
+			}
+
+			count++;
+
+			while (pos < end && isDelimiter(content[pos], v1)) {
+				pos++;
+			}
+		}
+
+		return count;
+	}
+
+	private static boolean isDelimiter(byte b, boolean v1) {
+		switch (b) {
+		case ' ':
+		case '\t':
+			return true;
+		// Also includes some weirdness such as vertical tabs
+		case '\n':
+		case 0x0B:
+		case '\f':
+		case '\r':
+			return v1;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean startsWithWhitespace(byte[] content, int start, int end) {
+		int b = content[start] & 0xFF;
+
+		if (b < 0x80) {
+			return Character.isWhitespace(b);
+		}
+
+		// Multibyte sequence, decode just the leading code point
+		return Character.isWhitespace(string(content, start, Math.min(end, start + 4)).codePointAt(0));
+	}
+
+	/**
+	 * Same line breaks as {@link BufferedReader#readLine()}: {@code \n}, {@code \r} or {@code \r\n}.
+	 */
+	private static int lineEnd(byte[] content, int pos) {
+		while (pos < content.length && content[pos] != '\n' && content[pos] != '\r') {
+			pos++;
+		}
+
+		return pos;
+	}
+
+	private static int nextLineStart(byte[] content, int lineEnd) {
+		if (lineEnd + 1 < content.length && content[lineEnd] == '\r' && content[lineEnd + 1] == '\n') {
+			return lineEnd + 2;
+		}
+
+		return lineEnd + 1;
+	}
+
+	private static int indexOf(byte[] content, int start, int end, char c) {
+		for (int i = start; i < end; i++) {
+			if (content[i] == c) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Compares the range to an ASCII string, any multibyte sequence in the range never matches.
+	 */
+	private static boolean regionEquals(byte[] content, int start, int end, String ascii) {
+		if (end - start != ascii.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < ascii.length(); i++) {
+			if (content[start + i] != ascii.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Equivalent to comparing {@code toLowerCase(Locale.ROOT)} of the range to a lower-case ASCII string,
+	 * as no non-ASCII character lower-cases to a letter of the access type keywords.
+	 */
+	private static boolean regionEqualsIgnoreCase(byte[] content, int start, int end, String lowerAscii) {
+		if (end - start != lowerAscii.length()) {
+			return false;
+		}
+
+		for (int i = 0; i < lowerAscii.length(); i++) {
+			int b = content[start + i];
+
+			if (b >= 'A' && b <= 'Z') {
+				b += 'a' - 'A';
+			}
+
+			if (b != lowerAscii.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static String string(byte[] content, int start, int end) {
+		return new String(content, start, end - start, ENCODING);
+	}
+
 	static class HeaderImpl implements Header {
 		private final int version;
 		private final String namespace;
@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.utils;
+
+/**
+ * A minimal reader for the raw bytes of a class file. It locates the constant pool entries and the start of the
+ * member tables and class attributes, and reads values at given offsets, without decoding anything up front.
+ *
+ * <p>Offsets of constant pool references point at the u2 index, as they appear in the class file.
+ */
+public final class ClassFile {
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_FLOAT = 4;
+	private static final int CONSTANT_LONG = 5;
+	private static final int CONSTANT_DOUBLE = 6;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	private static final int CONSTANT_METHOD_HANDLE = 15;
+	private static final int CONSTANT_METHOD_TYPE = 16;
+	private static final int CONSTANT_DYNAMIC = 17;
+	private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+	private static final int CONSTANT_MODULE = 19;
+	private static final int CONSTANT_PACKAGE = 20;
+
+	private final byte[] data;
+	// Offsets of the constant pool entries, just past their tag
+	private final int[] constants;
+	private final String[] strings;
+	private final int header;
+	private final int fields;
+	private final int methods;
+	private final int attributes;
+
+	public ClassFile(byte[] data) {
+		this.data = data;
+
+		if (readInt(0) != 0xCAFEBABE) {
+			throw new IllegalArgumentException("Not a class file");
+		}
+
+		int count = readUnsignedShort(8);
+		constants = new int[count];
+		strings = new String[count];
+		int offset = 10;
+
+		for (int i = 1; i < count; i++) {
+			constants[i] = offset + 1;
+
+			switch (data[offset]) {
+			case CONSTANT_UTF8:
+				offset += 3 + readUnsignedShort(offset + 1);
+				break;
+			case CONSTANT_INTEGER:
+			case CONSTANT_FLOAT:
+			case CONSTANT_FIELDREF:
+			case CONSTANT_METHODREF:
+			case CONSTANT_INTERFACE_METHODREF:
+			case CONSTANT_NAME_AND_TYPE:
+			case CONSTANT_DYNAMIC:
+			case CONSTANT_INVOKE_DYNAMIC:
+				offset += 5;
+				break;
+			case CONSTANT_LONG:
+			case CONSTANT_DOUBLE:
+				// Takes up two entries
+				offset += 9;
+				i++;
+				break;
+			case CONSTANT_CLASS:
+			case CONSTANT_STRING:
+			case CONSTANT_METHOD_TYPE:
+			case CONSTANT_MODULE:
+			case CONSTANT_PACKAGE:
+				offset += 3;
+				break;
+			case CONSTANT_METHOD_HANDLE:
+				offset += 4;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown constant pool tag " + data[offset] + " at offset " + offset);
+			}
+		}
+
+		header = offset;
+		fields = header + 8 + readUnsignedShort(header + 6) * 2;
+		methods = skipMembers(fields);
+		attributes = skipMembers(methods);
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return the offset of the class access flags, which are followed by the this and super class
+	 */
+	public int getHeader() {
+		return header;
+	}
+
+	public String getClassName() {
+		return readClass(header + 2);
+	}
+
+	/**
+	 * @return the offset of the {@code fields_count} item
+	 */
+	public int getFields() {
+		return fields;
+	}
+
+	/**
+	 * @return the offset of the {@code methods_count} item
+	 */
+	public int getMethods() {
+		return methods;
+	}
+
+	/**
+	 * @return the offset of the class {@code attributes_count} item
+	 */
+	public int getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @param offset the offset of an {@code attributes_count} item
+	 * @return the offset of the named attribute's data, just past its length, or -1 if there is no such attribute
+	 */
+	public int findAttribute(int offset, String name) {
+		int count = readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++) {
+			if (readUtf8(offset).equals(name)) {
+				return offset + 6;
+			}
+
+			offset += 6 + readInt(offset + 2);
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @param offset the offset of a {@code fields_count} or {@code methods_count} item
+	 * @return the offset just past the members
+	 */
+	public int skipMembers(int offset) {
+		int count = readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++) {
+			offset = skipAttributes(offset + 6);
+		}
+
+		return offset;
+	}
+
+	/**
+	 * @param offset the offset of an {@code attributes_count} item
+	 * @return the offset just past the attributes
+	 */
+	public int skipAttributes(int offset) {
+		int count = readUnsignedShort(offset);
+		offset += 2;
+
+		for (int i = 0; i < count; i++) {
+			offset += 6 + readInt(offset + 2);
+		}
+
+		return offset;
+	}
+
+	/**
+	 * Reads the name of the class referenced by the constant pool index at {@code offset}.
+	 */
+	public String readClass(int offset) {
+		return readUtf8(constants[readUnsignedShort(offset)]);
+	}
+
+	/**
+	 * Reads the modified UTF-8 string referenced by the constant pool index at {@code offset}.
+	 */
+	public String readUtf8(int offset) {
+		int index = readUnsignedShort(offset);
+		String string = strings[index];
+
+		if (string != null) {
+			return string;
+		}
+
+		int start = constants[index] + 2;
+		int end = start + readUnsignedShort(start - 2);
+		char[] chars = new char[end - start];
+		int length = 0;
+
+		for (int i = start; i < end; ) {
+			int b = data[i++];
+
+			if ((b & 0x80) == 0) {
+				chars[length++] = (char) (b & 0x7F);
+			} else if ((b & 0xE0) == 0xC0) {
+				chars[length++] = (char) (((b & 0x1F) << 6) + (data[i++] & 0x3F));
+			} else {
+				chars[length++] = (char) (((b & 0xF) << 12) + ((data[i++] & 0x3F) << 6) + (data[i++] & 0x3F));
+			}
+		}
+
+		return strings[index] = new String(chars, 0, length);
+	}
+
+	public int readUnsignedShort(int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+
+	public int readInt(int offset) {
+		return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+	}
+}
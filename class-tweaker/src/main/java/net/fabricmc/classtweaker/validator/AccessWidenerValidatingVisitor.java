@@ -21,12 +21,16 @@ import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
 import net.fabricmc.tinyremapper.api.TrEnvironment;
 
 public class AccessWidenerValidatingVisitor implements AccessWidenerVisitor {
-	private final TrEnvironment environment;
+	private final ValidationEnvironment environment;
 	private final ProblemSink sink;
 	private final String owner;
 	private final int lineNumber;
 
 	public AccessWidenerValidatingVisitor(TrEnvironment environment, ProblemSink sink, String owner, int lineNumber) {
+		this(ValidationEnvironment.of(environment), sink, owner, lineNumber);
+	}
+
+	public AccessWidenerValidatingVisitor(ValidationEnvironment environment, ProblemSink sink, String owner, int lineNumber) {
 		this.environment = environment;
 		this.sink = sink;
 		this.owner = owner;
@@ -35,21 +39,21 @@ public class AccessWidenerValidatingVisitor implements AccessWidenerVisitor {
 
 	@Override
 	public void visitClass(AccessWidenerVisitor.AccessType access, boolean transitive) {
-		if (environment.getClass(owner) == null) {
+		if (!environment.hasClass(owner)) {
 			sink.addProblem(lineNumber, String.format("Could not find class (%s)", owner));
 		}
 	}
 
 	@Override
 	public void visitMethod(String name, String descriptor, AccessWidenerVisitor.AccessType access, boolean transitive) {
-		if (environment.getMethod(owner, name, descriptor) == null) {
+		if (!environment.hasMethod(owner, name, descriptor)) {
 			sink.addProblem(lineNumber, String.format("Could not find method (%s%s) in class (%s)", name, descriptor, owner));
 		}
 	}
 
 	@Override
 	public void visitField(String name, String descriptor, AccessWidenerVisitor.AccessType access, boolean transitive) {
-		if (environment.getField(owner, name, descriptor) == null) {
+		if (!environment.hasField(owner, name, descriptor)) {
 			sink.addProblem(lineNumber, String.format("Could not find field (%s:%s) in class (%s)", name, descriptor, owner));
 		}
 	}
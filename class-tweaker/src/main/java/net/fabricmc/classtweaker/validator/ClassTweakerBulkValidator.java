@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.validator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.ProblemSink;
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.reader.ClassTweakerFormatException;
+import net.fabricmc.classtweaker.utils.Futures;
+import net.fabricmc.tinyremapper.api.TrEnvironment;
+
+/**
+ * Validates many class tweaker files in parallel against the same environment, such as a
+ * {@link net.fabricmc.classtweaker.jar.MemberIndex}, which must be safe to query from multiple threads.
+ */
+public final class ClassTweakerBulkValidator {
+	private ClassTweakerBulkValidator() {
+	}
+
+	/**
+	 * Validates all sources in parallel on the common {@link ForkJoinPool}, see
+	 * {@link #validateAll(List, ValidationEnvironment, Executor)}.
+	 */
+	public static List<ProblemCollector.Problem> validateAll(List<ClassTweakerReader.Source> sources, TrEnvironment environment) {
+		return validateAll(sources, ValidationEnvironment.of(environment), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Validates all sources in parallel on the common {@link ForkJoinPool}, see
+	 * {@link #validateAll(List, ValidationEnvironment, Executor)}.
+	 */
+	public static List<ProblemCollector.Problem> validateAll(List<ClassTweakerReader.Source> sources, ValidationEnvironment environment) {
+		return validateAll(sources, environment, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Validates all sources in parallel against a tiny-remapper environment, see
+	 * {@link #validateAll(List, ValidationEnvironment, Executor)}.
+	 */
+	public static List<ProblemCollector.Problem> validateAll(List<ClassTweakerReader.Source> sources, TrEnvironment environment, Executor executor) {
+		return validateAll(sources, ValidationEnvironment.of(environment), executor);
+	}
+
+	/**
+	 * Validates all sources in parallel. Sources that can't be read are reported as a problem on the line the format
+	 * error was found on, so that the problems of all sources are gathered in one pass.
+	 *
+	 * @return the problems found, with {@link ProblemCollector.Problem#getSource()} being the index of the source
+	 */
+	public static List<ProblemCollector.Problem> validateAll(List<ClassTweakerReader.Source> sources, ValidationEnvironment environment, Executor executor) {
+		ProblemCollector collector = new ProblemCollector();
+		List<CompletableFuture<Void>> futures = new ArrayList<>(sources.size());
+
+		for (int i = 0; i < sources.size(); i++) {
+			ClassTweakerReader.Source source = sources.get(i);
+			ProblemSink sink = collector.forSource(i);
+			futures.add(CompletableFuture.runAsync(() -> validate(source, environment, sink), executor));
+		}
+
+		for (CompletableFuture<Void> future : futures) {
+			Futures.join(future);
+		}
+
+		return collector.getProblems();
+	}
+
+	private static void validate(ClassTweakerReader.Source source, ValidationEnvironment environment, ProblemSink sink) {
+		try {
+			ClassTweakerReader.create(ClassTweakerVisitor.validate(environment, sink)).read(source.getContent(), source.getNamespace());
+		} catch (ClassTweakerFormatException e) {
+			sink.addProblem(e.getLineNumber(), e.getMessage());
+		}
+	}
+}
@@ -21,15 +21,18 @@ import org.jetbrains.annotations.Nullable;
 import net.fabricmc.classtweaker.api.ProblemSink;
 import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
 import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
-import net.fabricmc.tinyremapper.api.TrClass;
 import net.fabricmc.tinyremapper.api.TrEnvironment;
 
 public class ClassTweakerValidatingVisitor implements ClassTweakerVisitor {
-	private final TrEnvironment environment;
+	private final ValidationEnvironment environment;
 	private final ProblemSink sink;
 	private int lineNumber;
 
 	public ClassTweakerValidatingVisitor(TrEnvironment environment, ProblemSink sink) {
+		this(ValidationEnvironment.of(environment), sink);
+	}
+
+	public ClassTweakerValidatingVisitor(ValidationEnvironment environment, ProblemSink sink) {
 		this.environment = environment;
 		this.sink = sink;
 	}
@@ -41,18 +44,16 @@ public class ClassTweakerValidatingVisitor implements ClassTweakerVisitor {
 
 	@Override
 	public void visitInjectedInterface(String owner, String iface, boolean transitive) {
-		if (environment.getClass(owner) == null) {
+		if (!environment.hasClass(owner)) {
 			sink.addProblem(lineNumber, String.format("Could not find target class (%s)", owner));
 		}
 	}
 
 	@Override
 	public void visitEnumExtension(String owner, String addedConstant, boolean transitive) {
-		TrClass clazz = environment.getClass(owner);
-
-		if (clazz == null) {
+		if (!environment.hasClass(owner)) {
 			sink.addProblem(lineNumber, String.format("Could not find target class (%s)", owner));
-		} else if (!clazz.isEnum() || !clazz.getSuperName().equals("java/lang/Enum")) {
+		} else if (!environment.isEnum(owner) || !"java/lang/Enum".equals(environment.getSuperName(owner))) {
 			sink.addProblem(lineNumber, String.format("Class (%s) is not an enum", owner));
 		}
 	}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.validator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+
+/**
+ * Checks that generic injected interfaces only use type variables declared by their target class.
+ *
+ * <p>{@link #validate} checks every target class up front against an index of class signatures, so problems can be
+ * reported together when the class tweaker is loaded rather than one at a time while classes are transformed.
+ */
+public final class InjectedInterfaceValidator {
+	private InjectedInterfaceValidator() {
+	}
+
+	/**
+	 * Checks the injected interfaces of all target classes.
+	 *
+	 * @param classSignatures returns the generic signature of a class, or {@code null} if the class has none
+	 * @return a message for each problem found, empty if there are none
+	 */
+	public static List<String> validate(ClassTweaker classTweaker, Function<String, @Nullable String> classSignatures) {
+		List<String> problems = new ArrayList<>();
+
+		for (Map.Entry<String, List<InjectedInterface>> entry : classTweaker.getAllInjectedInterfaces().entrySet()) {
+			check(entry.getKey(), classSignatures.apply(entry.getKey()), entry.getValue(), problems::add);
+		}
+
+		return problems;
+	}
+
+	/**
+	 * Checks the injected interfaces of a single class, passing a message for each problem found to {@code problems}.
+	 */
+	public static void check(String className, @Nullable String classSignature, List<InjectedInterface> injectedInterfaces, Consumer<String> problems) {
+		List<String> typeParameters = null;
+
+		for (InjectedInterface injectedInterface : injectedInterfaces) {
+			List<String> typeVariables = injectedInterface.getTypeVariables();
+
+			if (typeVariables.isEmpty()) {
+				continue;
+			}
+
+			if (typeParameters == null) {
+				typeParameters = getTypeParameters(classSignature);
+			}
+
+			for (String typeVariable : typeVariables) {
+				if (!typeParameters.contains(typeVariable)) {
+					problems.accept("Interface "
+							+ injectedInterface.getInterfaceName()
+							+ " attempted to use a type variable named "
+							+ typeVariable
+							+ " which is not present in the "
+							+ className
+							+ " class");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the names of the formal type parameters declared by a class signature.
+	 */
+	public static List<String> getTypeParameters(@Nullable String classSignature) {
+		if (classSignature == null || classSignature.isEmpty() || classSignature.charAt(0) != '<') {
+			return Collections.emptyList();
+		}
+
+		List<String> typeParameters = new ArrayList<>();
+		new SignatureReader(classSignature).accept(new SignatureVisitor(Opcodes.ASM9) {
+			@Override
+			public void visitFormalTypeParameter(String name) {
+				typeParameters.add(name);
+			}
+		});
+		return typeParameters;
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.validator;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.fabricmc.classtweaker.api.ProblemSink;
+
+/**
+ * A {@link ProblemSink} that collects problems from any number of threads at once, for example while validating many
+ * class tweaker files in parallel. Each file can report its problems through its own {@link #forSource view}.
+ */
+public final class ProblemCollector implements ProblemSink {
+	private final Queue<Problem> problems = new ConcurrentLinkedQueue<>();
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Collects a problem that does not belong to a source, see {@link Problem#getSource()}.
+	 */
+	@Override
+	public void addProblem(int lineNumber, String message) {
+		problems.add(new Problem(-1, lineNumber, message, sequence.getAndIncrement()));
+	}
+
+	/**
+	 * @return a sink that collects the problems of the source with the given index
+	 */
+	public ProblemSink forSource(int source) {
+		return (lineNumber, message) -> problems.add(new Problem(source, lineNumber, message, sequence.getAndIncrement()));
+	}
+
+	public boolean hasProblems() {
+		return !problems.isEmpty();
+	}
+
+	/**
+	 * @return the problems collected so far, ordered by source, then by line number and then in the order they were
+	 * reported in
+	 */
+	public List<Problem> getProblems() {
+		List<Problem> sorted = new ArrayList<>(problems);
+		sorted.sort(Comparator.comparingInt(Problem::getSource).thenComparingInt(Problem::getLineNumber).thenComparingLong(problem -> problem.sequence));
+		return sorted;
+	}
+
+	public static final class Problem {
+		private final int source;
+		private final int lineNumber;
+		private final String message;
+		private final long sequence;
+
+		Problem(int source, int lineNumber, String message, long sequence) {
+			this.source = source;
+			this.lineNumber = lineNumber;
+			this.message = message;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * @return the index of the source the problem was found in, or -1 if it was not reported for a source
+		 */
+		public int getSource() {
+			return source;
+		}
+
+		public int getLineNumber() {
+			return lineNumber;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+
+		@Override
+		public String toString() {
+			return (source >= 0 ? "source " + source + ", " : "") + "line " + lineNumber + ": " + message;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.validator;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.tinyremapper.api.TrClass;
+import net.fabricmc.tinyremapper.api.TrEnvironment;
+
+final class TrValidationEnvironment implements ValidationEnvironment {
+	private final TrEnvironment environment;
+
+	TrValidationEnvironment(TrEnvironment environment) {
+		this.environment = environment;
+	}
+
+	@Override
+	public boolean hasClass(String className) {
+		return environment.getClass(className) != null;
+	}
+
+	@Override
+	public boolean isEnum(String className) {
+		TrClass clazz = environment.getClass(className);
+		return clazz != null && clazz.isEnum();
+	}
+
+	@Override
+	public @Nullable String getSuperName(String className) {
+		TrClass clazz = environment.getClass(className);
+		return clazz != null ? clazz.getSuperName() : null;
+	}
+
+	@Override
+	public boolean hasMethod(String owner, String name, String descriptor) {
+		return environment.getMethod(owner, name, descriptor) != null;
+	}
+
+	@Override
+	public boolean hasField(String owner, String name, String descriptor) {
+		return environment.getField(owner, name, descriptor) != null;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.validator;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.fabricmc.tinyremapper.api.TrEnvironment;
+
+/**
+ * The classes and members that class tweakers are validated against, see {@link ClassTweakerValidatingVisitor}.
+ * Implementations that are used with {@link ClassTweakerBulkValidator} must be safe to query from multiple threads.
+ */
+public interface ValidationEnvironment {
+	/**
+	 * @return an environment that answers all queries from a tiny-remapper environment
+	 */
+	static ValidationEnvironment of(TrEnvironment environment) {
+		return new TrValidationEnvironment(environment);
+	}
+
+	boolean hasClass(String className);
+
+	/**
+	 * @return whether the class exists and has the enum flag set
+	 */
+	boolean isEnum(String className);
+
+	/**
+	 * @return the super class of the class, or {@code null} if the class does not exist or has none
+	 */
+	@Nullable
+	String getSuperName(String className);
+
+	boolean hasMethod(String owner, String name, String descriptor);
+
+	boolean hasField(String owner, String name, String descriptor);
+}
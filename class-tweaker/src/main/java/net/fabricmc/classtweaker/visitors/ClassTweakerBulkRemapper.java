@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.visitors;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.objectweb.asm.commons.Remapper;
+
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.ClassTweakerWriter;
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.utils.Futures;
+
+/**
+ * Remaps many class tweaker files in parallel through one shared {@link MemoizingRemapper}, so that names used by
+ * several files are only mapped once.
+ */
+public final class ClassTweakerBulkRemapper {
+	private ClassTweakerBulkRemapper() {
+	}
+
+	/**
+	 * Remaps all sources in parallel on the common {@link ForkJoinPool}, see
+	 * {@link #remapAll(List, Remapper, String, Executor)}.
+	 */
+	public static Result remapAll(List<ClassTweakerReader.Source> sources, Remapper remapper, String toNamespace) {
+		return remapAll(sources, remapper, toNamespace, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Remaps all sources in parallel. Each source is remapped from its {@linkplain ClassTweakerReader.Source#getNamespace()
+	 * namespace}, or from the namespace in its header if it has none, and written in the version it was read in.
+	 *
+	 * <p>The remapper is wrapped in a {@link MemoizingRemapper} unless it already is one, so passing the same
+	 * {@link MemoizingRemapper} to several calls shares its caches between them. If any source fails to remap, the
+	 * exception of the first failing source in list order is thrown.
+	 *
+	 * @param remapper the remapper, which must be safe to use from multiple threads
+	 */
+	public static Result remapAll(List<ClassTweakerReader.Source> sources, Remapper remapper, String toNamespace, Executor executor) {
+		MemoizingRemapper memoizingRemapper = remapper instanceof MemoizingRemapper ? (MemoizingRemapper) remapper : new MemoizingRemapper(remapper);
+		List<CompletableFuture<byte[]>> futures = new ArrayList<>(sources.size());
+
+		for (ClassTweakerReader.Source source : sources) {
+			futures.add(CompletableFuture.supplyAsync(() -> remap(source, memoizingRemapper, toNamespace), executor));
+		}
+
+		List<byte[]> outputs = new ArrayList<>(sources.size());
+
+		for (CompletableFuture<byte[]> future : futures) {
+			outputs.add(Futures.join(future));
+		}
+
+		return new Result(Collections.unmodifiableList(outputs), memoizingRemapper);
+	}
+
+	private static byte[] remap(ClassTweakerReader.Source source, Remapper remapper, String toNamespace) {
+		byte[] content = source.getContent();
+		ClassTweakerReader.Header header = ClassTweakerReader.readHeader(content);
+		String fromNamespace = source.getNamespace() != null ? source.getNamespace() : header.getNamespace();
+		ClassTweakerWriter writer = ClassTweakerWriter.create(header.getVersion());
+		ClassTweakerReader.create(ClassTweakerVisitor.remap(writer, remapper, fromNamespace, toNamespace)).read(content);
+		return writer.getOutput();
+	}
+
+	public static final class Result {
+		private final List<byte[]> outputs;
+		private final MemoizingRemapper remapper;
+
+		Result(List<byte[]> outputs, MemoizingRemapper remapper) {
+			this.outputs = outputs;
+			this.remapper = remapper;
+		}
+
+		/**
+		 * @return the remapped content of each source, in the order of the sources
+		 */
+		public List<byte[]> getOutputs() {
+			return outputs;
+		}
+
+		/**
+		 * @return the share of lookups answered from the caches of the remapper, over all uses of the remapper so far,
+		 * see {@link MemoizingRemapper#getHitRatio()}
+		 */
+		public double getCacheHitRatio() {
+			return remapper.getHitRatio();
+		}
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.visitors;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.commons.Remapper;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+
+/**
+ * A {@link Remapper} over a fixed set of mappings, for remapping many class tweakers with the same mappings.
+ *
+ * <p>Classes are given dense ids through an open addressing table by the hash code of their name, and each class has
+ * its own open addressing tables of field and method mappings. Descriptors are remapped in a single pass, looking up
+ * the class names in place without creating substrings or {@link org.objectweb.asm.Type} instances, and are returned
+ * as is when none of their classes are mapped.
+ *
+ * <p>The mappings are added through a {@link Builder}, or taken from a mapping-io tree with
+ * {@link #of(MappingTreeView, String, String)}.
+ *
+ * <p>Instances are immutable and can be shared between threads.
+ */
+public final class IndexedRemapper extends Remapper {
+	// A descriptor that no field can have, used for field mappings without a descriptor
+	private static final String ANY_DESCRIPTOR = "";
+
+	private final String[] classKeys;
+	private final int[] classIds;
+	// By class id, null if the class or none of its members are mapped
+	private final String[] mappedClassNames;
+	private final MemberTable[] fields;
+	private final MemberTable[] methods;
+
+	private IndexedRemapper(Map<String, ClassEntry> classes) {
+		int capacity = capacity(classes.size());
+		classKeys = new String[capacity];
+		classIds = new int[capacity];
+		mappedClassNames = new String[classes.size()];
+		fields = new MemberTable[classes.size()];
+		methods = new MemberTable[classes.size()];
+		int id = 0;
+
+		for (ClassEntry entry : classes.values()) {
+			int slot = entry.name.hashCode() & (capacity - 1);
+
+			while (classKeys[slot] != null) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+
+			classKeys[slot] = entry.name;
+			classIds[slot] = id;
+			mappedClassNames[id] = entry.name.equals(entry.mappedName) ? null : entry.mappedName;
+			fields[id] = entry.fields.isEmpty() ? null : new MemberTable(entry.fields);
+			methods[id] = entry.methods.isEmpty() ? null : new MemberTable(entry.methods);
+			id++;
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Creates a remapper from the mappings between two namespaces of a mapping-io tree. mapping-io is an optional
+	 * dependency, it only needs to be on the classpath when this method is used.
+	 *
+	 * @throws IllegalArgumentException if the tree does not have one of the namespaces
+	 */
+	public static IndexedRemapper of(MappingTreeView tree, String fromNamespace, String toNamespace) {
+		int from = getNamespaceId(tree, fromNamespace);
+		int to = getNamespaceId(tree, toNamespace);
+		Builder builder = builder();
+
+		for (MappingTreeView.ClassMappingView mapping : tree.getClasses()) {
+			String owner = mapping.getName(from);
+
+			if (owner == null) {
+				continue;
+			}
+
+			builder.addClass(owner, mapping.getName(to));
+
+			for (MappingTreeView.FieldMappingView field : mapping.getFields()) {
+				String name = field.getName(from);
+
+				if (name != null) {
+					builder.addField(owner, name, field.getDesc(from), field.getName(to));
+				}
+			}
+
+			for (MappingTreeView.MethodMappingView method : mapping.getMethods()) {
+				String name = method.getName(from);
+				String descriptor = method.getDesc(from);
+
+				if (name != null && descriptor != null) {
+					builder.addMethod(owner, name, descriptor, method.getName(to));
+				}
+			}
+		}
+
+		return builder.build();
+	}
+
+	private static int getNamespaceId(MappingTreeView tree, String namespace) {
+		int id = tree.getNamespaceId(namespace);
+
+		if (id == MappingTreeView.NULL_NAMESPACE_ID) {
+			throw new IllegalArgumentException("Mapping tree does not contain namespace " + namespace);
+		}
+
+		return id;
+	}
+
+	/**
+	 * @return the number of classes with mappings, which are numbered from 0 in the order they were first added
+	 */
+	public int getClassCount() {
+		return mappedClassNames.length;
+	}
+
+	/**
+	 * @return the id of the class, or -1 if there are no mappings for it
+	 */
+	public int getClassId(String internalName) {
+		return findClass(internalName, 0, internalName.length());
+	}
+
+	private int findClass(String string, int start, int end) {
+		// Computes the same hash as String.hashCode() for the region
+		int hash = 0;
+
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + string.charAt(i);
+		}
+
+		int mask = classKeys.length - 1;
+
+		for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+			String key = classKeys[slot];
+
+			if (key == null) {
+				return -1;
+			} else if (key.length() == end - start && key.regionMatches(0, string, start, end - start)) {
+				return classIds[slot];
+			}
+		}
+	}
+
+	@Override
+	public String map(String internalName) {
+		int id = getClassId(internalName);
+		return id < 0 || mappedClassNames[id] == null ? internalName : mappedClassNames[id];
+	}
+
+	@Override
+	public String mapDesc(String descriptor) {
+		return mapDescriptor(descriptor);
+	}
+
+	@Override
+	public String mapMethodDesc(String methodDescriptor) {
+		return mapDescriptor(methodDescriptor);
+	}
+
+	private String mapDescriptor(String descriptor) {
+		StringBuilder mapped = null;
+		int copied = 0;
+
+		for (int i = 0; i < descriptor.length(); i++) {
+			// Class names are skipped as a whole, so any other L is the start of a class name
+			if (descriptor.charAt(i) != 'L') {
+				continue;
+			}
+
+			int end = descriptor.indexOf(';', i);
+
+			if (end < 0) {
+				throw new IllegalArgumentException("Invalid descriptor: " + descriptor);
+			}
+
+			int id = findClass(descriptor, i + 1, end);
+
+			if (id >= 0 && mappedClassNames[id] != null) {
+				if (mapped == null) {
+					mapped = new StringBuilder(descriptor.length() + 16);
+				}
+
+				mapped.append(descriptor, copied, i + 1).append(mappedClassNames[id]);
+				copied = end;
+			}
+
+			i = end;
+		}
+
+		if (mapped == null) {
+			return descriptor;
+		}
+
+		return mapped.append(descriptor, copied, descriptor.length()).toString();
+	}
+
+	@Override
+	public String mapMethodName(String owner, String name, String descriptor) {
+		int id = getClassId(owner);
+		MemberTable table = id < 0 ? null : methods[id];
+		String mapped = table == null ? null : table.get(name, descriptor);
+		return mapped != null ? mapped : name;
+	}
+
+	@Override
+	public String mapFieldName(String owner, String name, String descriptor) {
+		int id = getClassId(owner);
+		MemberTable table = id < 0 ? null : fields[id];
+
+		if (table == null) {
+			return name;
+		}
+
+		String mapped = table.get(name, descriptor);
+
+		if (mapped == null && table.hasAnyDescriptor) {
+			mapped = table.get(name, ANY_DESCRIPTOR);
+		}
+
+		return mapped != null ? mapped : name;
+	}
+
+	@Override
+	public String mapRecordComponentName(String owner, String name, String descriptor) {
+		// Record components have the same name as their field
+		return mapFieldName(owner, name, descriptor);
+	}
+
+	private static int capacity(int count) {
+		// At most half full, so that every probe sequence ends at an empty slot
+		return Integer.highestOneBit(Math.max(1, count) * 2 - 1) * 2;
+	}
+
+	public static final class Builder {
+		private final Map<String, ClassEntry> classes = new LinkedHashMap<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * @param mappedName the name of the class after remapping, or {@code null} to keep the name
+		 */
+		public Builder addClass(String name, @Nullable String mappedName) {
+			ClassEntry entry = getClass(name);
+
+			if (mappedName != null) {
+				entry.mappedName = mappedName;
+			}
+
+			return this;
+		}
+
+		/**
+		 * @param descriptor the descriptor of the field, or {@code null} to map the field regardless of its descriptor
+		 * @param mappedName the name of the field after remapping, or {@code null} to keep the name
+		 */
+		public Builder addField(String owner, String name, @Nullable String descriptor, @Nullable String mappedName) {
+			if (mappedName != null && !mappedName.equals(name)) {
+				getClass(owner).fields.add(new String[] {name, descriptor != null ? descriptor : ANY_DESCRIPTOR, mappedName});
+			}
+
+			return this;
+		}
+
+		/**
+		 * @param mappedName the name of the method after remapping, or {@code null} to keep the name
+		 */
+		public Builder addMethod(String owner, String name, String descriptor, @Nullable String mappedName) {
+			if (mappedName != null && !mappedName.equals(name)) {
+				getClass(owner).methods.add(new String[] {name, descriptor, mappedName});
+			}
+
+			return this;
+		}
+
+		private ClassEntry getClass(String name) {
+			return classes.computeIfAbsent(name, ClassEntry::new);
+		}
+
+		public IndexedRemapper build() {
+			return new IndexedRemapper(classes);
+		}
+	}
+
+	private static final class ClassEntry {
+		final String name;
+		String mappedName;
+		// Triples of name, descriptor and mapped name
+		final List<String[]> fields = new ArrayList<>();
+		final List<String[]> methods = new ArrayList<>();
+
+		ClassEntry(String name) {
+			this.name = name;
+			this.mappedName = name;
+		}
+	}
+
+	private static final class MemberTable {
+		private final String[] names;
+		private final String[] descriptors;
+		private final String[] mappedNames;
+		final boolean hasAnyDescriptor;
+
+		MemberTable(List<String[]> members) {
+			int capacity = capacity(members.size());
+			names = new String[capacity];
+			descriptors = new String[capacity];
+			mappedNames = new String[capacity];
+			boolean hasAnyDescriptor = false;
+
+			for (String[] member : members) {
+				int slot = hash(member[0], member[1]) & (capacity - 1);
+
+				while (names[slot] != null && !(names[slot].equals(member[0]) && descriptors[slot].equals(member[1]))) {
+					slot = (slot + 1) & (capacity - 1);
+				}
+
+				// A later mapping of the same member replaces the earlier one
+				names[slot] = member[0];
+				descriptors[slot] = member[1];
+				mappedNames[slot] = member[2];
+				hasAnyDescriptor |= member[1].equals(ANY_DESCRIPTOR);
+			}
+
+			this.hasAnyDescriptor = hasAnyDescriptor;
+		}
+
+		@Nullable
+		String get(String name, String descriptor) {
+			int mask = names.length - 1;
+
+			for (int slot = hash(name, descriptor) & mask; ; slot = (slot + 1) & mask) {
+				if (names[slot] == null) {
+					return null;
+				} else if (names[slot].equals(name) && descriptors[slot].equals(descriptor)) {
+					return mappedNames[slot];
+				}
+			}
+		}
+
+		private static int hash(String name, String descriptor) {
+			return name.hashCode() * 31 + descriptor.hashCode();
+		}
+	}
+}
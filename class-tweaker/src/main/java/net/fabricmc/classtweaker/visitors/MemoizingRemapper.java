@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.visitors;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import org.objectweb.asm.commons.Remapper;
+
+/**
+ * Decorates a {@link Remapper} with caches of the class names, descriptors, member names and signatures it has mapped,
+ * so that remapping many class tweakers that refer to the same classes only maps each of them once.
+ *
+ * <p>The caches are safe to use from multiple threads. Each cache holds a fixed number of entries. Once it is full,
+ * further results are passed on from the delegate without being cached. This keeps the memory use bounded without
+ * tracking how recently entries were used, and never discards entries that other threads are still hitting. Threads
+ * that miss concurrently may each add an entry, so a cache can exceed its size by a few entries. The delegate must
+ * always return the same result for the same input.
+ */
+public final class MemoizingRemapper extends Remapper {
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	// Stands in for null, which can't be stored in a ConcurrentHashMap
+	private static final Object NULL = new Object();
+
+	private final Remapper delegate;
+	private final Cache types;
+	private final Cache descriptors;
+	private final Cache members;
+	private final Cache signatures;
+	private final Cache typeSignatures;
+
+	public MemoizingRemapper(Remapper delegate) {
+		this(delegate, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the maximum number of entries in each cache
+	 */
+	public MemoizingRemapper(Remapper delegate, int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+		}
+
+		this.delegate = delegate;
+		types = new Cache(maxSize);
+		descriptors = new Cache(maxSize);
+		members = new Cache(maxSize);
+		signatures = new Cache(maxSize);
+		typeSignatures = new Cache(maxSize);
+	}
+
+	@Override
+	public String map(String internalName) {
+		return types.get(internalName, delegate::map);
+	}
+
+	@Override
+	public String mapDesc(String descriptor) {
+		return descriptors.get(descriptor, delegate::mapDesc);
+	}
+
+	@Override
+	public String mapMethodDesc(String methodDescriptor) {
+		// Method descriptors start with a parenthesis, so they never collide with field descriptors
+		return descriptors.get(methodDescriptor, delegate::mapMethodDesc);
+	}
+
+	@Override
+	public String mapSignature(String signature, boolean typeSignature) {
+		if (signature == null) {
+			return null;
+		}
+
+		return (typeSignature ? typeSignatures : signatures).get(signature, key -> delegate.mapSignature(key, typeSignature));
+	}
+
+	@Override
+	public String mapMethodName(String owner, String name, String descriptor) {
+		// Names can't contain semicolons, and only method descriptors start with a parenthesis
+		return members.get(owner + ';' + name + ';' + descriptor, key -> delegate.mapMethodName(owner, name, descriptor));
+	}
+
+	@Override
+	public String mapFieldName(String owner, String name, String descriptor) {
+		return members.get(owner + ';' + name + ';' + descriptor, key -> delegate.mapFieldName(owner, name, descriptor));
+	}
+
+	@Override
+	public String mapAnnotationAttributeName(String descriptor, String name) {
+		return delegate.mapAnnotationAttributeName(descriptor, name);
+	}
+
+	@Override
+	public String mapInnerClassName(String name, String ownerName, String innerName) {
+		return delegate.mapInnerClassName(name, ownerName, innerName);
+	}
+
+	@Override
+	public String mapInvokeDynamicMethodName(String name, String descriptor) {
+		return delegate.mapInvokeDynamicMethodName(name, descriptor);
+	}
+
+	@Override
+	public String mapRecordComponentName(String owner, String name, String descriptor) {
+		return delegate.mapRecordComponentName(owner, name, descriptor);
+	}
+
+	@Override
+	public String mapPackageName(String name) {
+		return delegate.mapPackageName(name);
+	}
+
+	@Override
+	public String mapModuleName(String name) {
+		return delegate.mapModuleName(name);
+	}
+
+	/**
+	 * @return the number of lookups answered from the caches
+	 */
+	public long getHitCount() {
+		return types.hits.sum() + descriptors.hits.sum() + members.hits.sum() + signatures.hits.sum() + typeSignatures.hits.sum();
+	}
+
+	/**
+	 * @return the number of lookups that were passed on to the delegate
+	 */
+	public long getMissCount() {
+		return types.misses.sum() + descriptors.misses.sum() + members.misses.sum() + signatures.misses.sum() + typeSignatures.misses.sum();
+	}
+
+	/**
+	 * The ratio is approximate while other threads use the remapper. The counts are summed without a lock, and threads
+	 * that miss the same key concurrently each count a miss.
+	 *
+	 * @return the share of lookups answered from the caches, or 0 if nothing has been looked up yet
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	private static final class Cache {
+		private final ConcurrentHashMap<String, Object> values = new ConcurrentHashMap<>();
+		private final int maxSize;
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+
+		Cache(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		String get(String key, UnaryOperator<String> mapper) {
+			Object value = values.get(key);
+
+			if (value != null) {
+				hits.increment();
+				return value == NULL ? null : (String) value;
+			}
+
+			misses.increment();
+			String mapped = mapper.apply(key);
+
+			if (values.size() < maxSize) {
+				values.put(key, mapped == null ? NULL : mapped);
+			}
+
+			return mapped;
+		}
+	}
+}
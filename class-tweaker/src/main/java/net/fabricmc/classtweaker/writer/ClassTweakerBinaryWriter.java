@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.writer;
+
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.ACCESS_WIDENER_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.ENUM_EXTENSION_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.FORMAT_VERSION;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_ACCESS_WIDENER;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_CALL_SITE_REWRITE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_ENUM_EXTENSIONS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HAS_INJECTED_INTERFACES;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.HEADER_SIZE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.INJECTED_INTERFACE_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.MAGIC;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.MEMBER_SLOT_SIZE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.NAMESPACE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_CLASS_ACCESS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_ENUM_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_ENUM_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_FIELD_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_INTERFACE_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_INTERFACE_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_KINDS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_METHOD_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_NAME;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_RECORD_SIZE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_TABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.OWNER_TABLE_CAPACITY;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.STRING_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.STRING_HASHES;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.STRING_OFFSETS;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_COUNT;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_LIST;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_TABLE;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.TARGET_TABLE_CAPACITY;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.align;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.memberHash;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.slot;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.tableCapacity;
+import static net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat.toFlags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat;
+import net.fabricmc.classtweaker.impl.MappedClassTweaker;
+import net.fabricmc.classtweaker.reader.ClassTweakerReaderImpl;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+/**
+ * Writes a loaded {@link ClassTweaker} in the binary format described in {@link ClassTweakerBinaryFormat}, which can
+ * be read back or used in place by {@link MappedClassTweaker}.
+ *
+ * <p>The owners are listed in the order of {@link ClassTweaker#getTargets()}, which allows the reader to reproduce the
+ * targets in the same order.
+ */
+public final class ClassTweakerBinaryWriter {
+	private final Map<String, Integer> stringIndices = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+	private byte[] buffer = new byte[4096];
+	private int size;
+	private int header;
+
+	private ClassTweakerBinaryWriter() {
+	}
+
+	public static byte[] write(ClassTweaker classTweaker, byte[] cacheKey) {
+		return new ClassTweakerBinaryWriter().writeAll(classTweaker, cacheKey);
+	}
+
+	private byte[] writeAll(ClassTweaker classTweaker, byte[] cacheKey) {
+		Map<String, AccessWidener> accessWideners = classTweaker.getAllAccessWideners();
+		Map<String, List<InjectedInterface>> injectedInterfaces = classTweaker.getAllInjectedInterfaces();
+		Map<String, List<EnumExtension>> enumExtensions = classTweaker.getAllEnumExtensions();
+		List<String> targets = new ArrayList<>(classTweaker.getTargets());
+		List<String> owners = new ArrayList<>();
+
+		for (String target : targets) {
+			if (accessWideners.containsKey(target) || injectedInterfaces.containsKey(target) || enumExtensions.containsKey(target)) {
+				owners.add(target);
+			}
+		}
+
+		writeInt(MAGIC);
+		writeInt(FORMAT_VERSION);
+		writeInt(cacheKey.length);
+		reserve(cacheKey.length);
+		System.arraycopy(cacheKey, 0, buffer, size - cacheKey.length, cacheKey.length);
+		reserve(align(size) - size);
+		header = reserve(HEADER_SIZE);
+
+		// Intern all strings up front, the string table is written before everything referencing it
+		String namespace = classTweaker.getNamespace();
+		setHeader(NAMESPACE, namespace == null ? -1 : index(namespace));
+		targets.forEach(this::index);
+
+		for (String owner : owners) {
+			AccessWidener accessWidener = accessWideners.get(owner);
+
+			if (accessWidener != null) {
+				accessWidener.getAllMethodAccesses().keySet().forEach(this::index);
+				accessWidener.getAllFieldAccesses().keySet().forEach(this::index);
+			}
+
+			injectedInterfaces.getOrDefault(owner, Collections.emptyList()).forEach(injectedInterface -> index(interfaceName(injectedInterface)));
+			enumExtensions.getOrDefault(owner, Collections.emptyList()).forEach(extension -> index(extension.getAddedConstant()));
+		}
+
+		writeStrings();
+
+		setHeader(TARGET_COUNT, targets.size());
+		setHeader(TARGET_LIST, size);
+
+		for (String target : targets) {
+			writeInt(index(target));
+		}
+
+		int targetTableCapacity = tableCapacity(targets.size());
+		int targetTable = reserve(targetTableCapacity * 4);
+		setHeader(TARGET_TABLE_CAPACITY, targetTableCapacity);
+		setHeader(TARGET_TABLE, targetTable);
+
+		for (String target : targets) {
+			setInt(targetTable + freeSlot(targetTable, 4, target.hashCode(), targetTableCapacity) * 4, index(target) + 1);
+		}
+
+		int[] records = new int[owners.size()];
+		int accessWidenerCount = 0;
+		int injectedInterfaceCount = 0;
+		int enumExtensionCount = 0;
+
+		for (int i = 0; i < owners.size(); i++) {
+			String owner = owners.get(i);
+			AccessWidener accessWidener = accessWideners.get(owner);
+			List<InjectedInterface> interfaces = injectedInterfaces.getOrDefault(owner, Collections.emptyList());
+			List<EnumExtension> extensions = enumExtensions.getOrDefault(owner, Collections.emptyList());
+			int record = reserve(OWNER_RECORD_SIZE);
+			records[i] = record;
+
+			setInt(record + OWNER_NAME, index(owner));
+			setInt(record + OWNER_KINDS, (accessWidener != null ? HAS_ACCESS_WIDENER : 0)
+					| (!interfaces.isEmpty() ? HAS_INJECTED_INTERFACES : 0)
+					| (!extensions.isEmpty() ? HAS_ENUM_EXTENSIONS : 0)
+					| (accessWidener != null && accessWidener.needsCallSiteRewrite() ? HAS_CALL_SITE_REWRITE : 0));
+
+			if (accessWidener != null) {
+				setInt(record + OWNER_CLASS_ACCESS, toFlags(accessWidener.getClassAccess()));
+				writeMembers(record + OWNER_METHOD_COUNT, accessWidener.getAllMethodAccesses());
+				writeMembers(record + OWNER_FIELD_COUNT, accessWidener.getAllFieldAccesses());
+				accessWidenerCount++;
+			} else {
+				writeMembers(record + OWNER_METHOD_COUNT, Collections.emptyMap());
+				writeMembers(record + OWNER_FIELD_COUNT, Collections.emptyMap());
+			}
+
+			setInt(record + OWNER_INTERFACE_COUNT, interfaces.size());
+			setInt(record + OWNER_INTERFACE_LIST, size);
+
+			for (InjectedInterface injectedInterface : interfaces) {
+				writeInt(index(interfaceName(injectedInterface)));
+			}
+
+			setInt(record + OWNER_ENUM_COUNT, extensions.size());
+			setInt(record + OWNER_ENUM_LIST, size);
+
+			for (EnumExtension extension : extensions) {
+				writeInt(index(extension.getAddedConstant()));
+			}
+
+			if (!interfaces.isEmpty()) {
+				injectedInterfaceCount++;
+			}
+
+			if (!extensions.isEmpty()) {
+				enumExtensionCount++;
+			}
+		}
+
+		setHeader(OWNER_COUNT, owners.size());
+		setHeader(OWNER_LIST, size);
+
+		for (int record : records) {
+			writeInt(record);
+		}
+
+		int ownerTableCapacity = tableCapacity(owners.size());
+		int ownerTable = reserve(ownerTableCapacity * 4);
+		setHeader(OWNER_TABLE_CAPACITY, ownerTableCapacity);
+		setHeader(OWNER_TABLE, ownerTable);
+
+		for (int i = 0; i < owners.size(); i++) {
+			setInt(ownerTable + freeSlot(ownerTable, 4, owners.get(i).hashCode(), ownerTableCapacity) * 4, records[i]);
+		}
+
+		setHeader(ACCESS_WIDENER_COUNT, accessWidenerCount);
+		setHeader(INJECTED_INTERFACE_COUNT, injectedInterfaceCount);
+		setHeader(ENUM_EXTENSION_COUNT, enumExtensionCount);
+		return Arrays.copyOf(buffer, size);
+	}
+
+	private void writeStrings() {
+		setHeader(STRING_COUNT, strings.size());
+		int offsets = reserve((strings.size() + 1) * 4);
+		setHeader(STRING_OFFSETS, offsets);
+		setHeader(STRING_HASHES, size);
+
+		for (String string : strings) {
+			writeInt(string.hashCode());
+		}
+
+		for (int i = 0; i < strings.size(); i++) {
+			byte[] bytes = strings.get(i).getBytes(ClassTweakerReaderImpl.ENCODING);
+			setInt(offsets + i * 4, size);
+			reserve(bytes.length);
+			System.arraycopy(bytes, 0, buffer, size - bytes.length, bytes.length);
+		}
+
+		setInt(offsets + strings.size() * 4, size);
+		reserve(align(size) - size);
+	}
+
+	/**
+	 * Writes the count, capacity and table offset of a member table into the owner record, followed by the table.
+	 */
+	private void writeMembers(int fields, Map<EntryTriple, AccessWidener.Access> members) {
+		int capacity = tableCapacity(members.size());
+		int table = reserve(capacity * MEMBER_SLOT_SIZE);
+		setInt(fields, members.size());
+		setInt(fields + 4, capacity);
+		setInt(fields + 8, table);
+
+		for (Map.Entry<EntryTriple, AccessWidener.Access> entry : members.entrySet()) {
+			String name = entry.getKey().getName();
+			String descriptor = entry.getKey().getDesc();
+			int slot = table + freeSlot(table, MEMBER_SLOT_SIZE, memberHash(name, descriptor), capacity) * MEMBER_SLOT_SIZE;
+			setInt(slot, index(name) + 1);
+			setInt(slot + 4, index(descriptor));
+			setInt(slot + 8, toFlags(entry.getValue()));
+		}
+	}
+
+	private int freeSlot(int table, int slotSize, int hash, int capacity) {
+		int i = slot(hash, capacity);
+
+		while (getInt(table + i * slotSize) != 0) {
+			i = (i + 1) & (capacity - 1);
+		}
+
+		return i;
+	}
+
+	private static String interfaceName(InjectedInterface injectedInterface) {
+		// Store the interface as it was visited, the signature without the surrounding L and semicolon
+		String signature = injectedInterface.getInterfaceSignature();
+		return signature.substring(1, signature.length() - 1);
+	}
+
+	private void index(EntryTriple member) {
+		index(member.getName());
+		index(member.getDesc());
+	}
+
+	private int index(String string) {
+		Integer index = stringIndices.get(string);
+
+		if (index == null) {
+			index = strings.size();
+			strings.add(string);
+			stringIndices.put(string, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Appends zeroed space to the output.
+	 *
+	 * @return the offset of the reserved space
+	 */
+	private int reserve(int length) {
+		int offset = size;
+
+		if (size + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+		}
+
+		size += length;
+		return offset;
+	}
+
+	private void writeInt(int value) {
+		setInt(reserve(4), value);
+	}
+
+	private void setHeader(int offset, int value) {
+		setInt(header + offset, value);
+	}
+
+	private void setInt(int offset, int value) {
+		buffer[offset] = (byte) (value >>> 24);
+		buffer[offset + 1] = (byte) (value >>> 16);
+		buffer[offset + 2] = (byte) (value >>> 8);
+		buffer[offset + 3] = (byte) value;
+	}
+
+	private int getInt(int offset) {
+		return (buffer[offset] & 0xFF) << 24 | (buffer[offset + 1] & 0xFF) << 16 | (buffer[offset + 2] & 0xFF) << 8 | (buffer[offset + 3] & 0xFF);
+	}
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.ClassTweakerWriter;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.impl.ClassTweakerBinaryFormat;
+import net.fabricmc.classtweaker.impl.MappedClassTweaker;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+class ClassTweakerBinaryTest {
+	private static final byte[] KEY = {1, 2, 3};
+
+	@Test
+	void testRoundTrip() throws Exception {
+		ClassTweaker classTweaker = createClassTweaker();
+		ClassTweaker read = ClassTweakerReader.readBinary(ClassTweakerWriter.writeBinary(classTweaker, KEY), KEY);
+
+		assertNotNull(read);
+		assertSameEntries(classTweaker, read);
+	}
+
+	@Test
+	void testMapped(@TempDir Path tempDir) throws Exception {
+		ClassTweaker classTweaker = createClassTweaker();
+		Path file = tempDir.resolve("classtweaker.bin");
+		Files.write(file, ClassTweakerWriter.writeBinary(classTweaker, KEY));
+
+		ClassTweaker mapped = ClassTweakerReader.mapBinary(file, KEY);
+
+		assertNotNull(mapped);
+		assertSameEntries(classTweaker, mapped);
+
+		for (String target : classTweaker.getTargets()) {
+			assertThat(mapped.getTargets()).contains(target);
+		}
+
+		assertThat(mapped.getTargets()).doesNotContain("a/b/D", "a/b/C$IC3", "");
+		assertThat(mapped.isTarget("a.b.C$IC1", true)).isTrue();
+		assertThat(mapped.isTarget("a.b.C$IC1", false)).isFalse();
+		assertThat(mapped.isTarget("a/b/D", false)).isFalse();
+		assertThat(mapped.getAccessWidener("a/b/D")).isSameAs(ClassTweaker.newInstance().getAccessWidener("a/b/D"));
+		assertThat(mapped.getInjectedInterfaces("a/b/D")).isEmpty();
+		assertThat(mapped.getEnumExtensions("a/b/D")).isEmpty();
+		assertThat(mapped.getEnumExtensions("a/b/C$IC1")).extracting(EnumExtension::getAddedConstant).contains("äöü", "\uD83D\uDE00");
+		// Decoded entries are reused, so parsed injected interface signatures are too
+		assertThat(mapped.getAccessWidener("pkg/AccessibleClass")).isSameAs(mapped.getAccessWidener("pkg/AccessibleClass"));
+		assertThat(mapped.getEnumExtensions("a/b/C$IC1").get(0)).isSameAs(mapped.getEnumExtensions("a/b/C$IC1").get(0));
+
+		for (Map.Entry<String, List<InjectedInterface>> entry : mapped.getAllInjectedInterfaces().entrySet()) {
+			assertThat(mapped.getInjectedInterfaces(entry.getKey())).isSameAs(entry.getValue());
+		}
+
+		assertThat(mapped.getAllInjectedInterfaces()).isSameAs(mapped.getAllInjectedInterfaces());
+		assertThat(mapped.getAllEnumExtensions()).isSameAs(mapped.getAllEnumExtensions());
+		assertThrows(UnsupportedOperationException.class, () -> mapped.getAllInjectedInterfaces().clear());
+		assertThrows(UnsupportedOperationException.class, () -> mapped.getAllEnumExtensions().get("a/b/C$IC1").clear());
+
+		AccessWidener accessWidener = classTweaker.getAccessWidener("pkg/AccessibleClass");
+		AccessWidener mappedWidener = mapped.getAccessWidener("pkg/AccessibleClass");
+
+		for (EntryTriple method : accessWidener.getAllMethodAccesses().keySet()) {
+			assertEquals(accessWidener.getMethodAccess(method), mappedWidener.getMethodAccess(method));
+		}
+
+		for (EntryTriple field : accessWidener.getAllFieldAccesses().keySet()) {
+			assertEquals(accessWidener.getFieldAccess(field), mappedWidener.getFieldAccess(field));
+		}
+
+		assertEquals(accessWidener.getMethodAccess(new EntryTriple("pkg/AccessibleClass", "missing", "()V")), mappedWidener.getMethodAccess(new EntryTriple("pkg/AccessibleClass", "missing", "()V")));
+		assertForeignOwnerUnchanged(accessWidener, mappedWidener);
+		assertEquals(accessWidener.getCanonicalConstructorAccess(), mappedWidener.getCanonicalConstructorAccess());
+		assertEquals(accessWidener.needsCallSiteRewrite(), mappedWidener.needsCallSiteRewrite());
+		assertThrows(UnsupportedOperationException.class, () -> mapped.visitHeader("named"));
+		assertNull(ClassTweakerReader.mapBinary(file, new byte[] {1, 2, 4}));
+	}
+
+	@Test
+	void testEmpty() {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		ClassTweaker read = ClassTweakerReader.readBinary(ClassTweakerWriter.writeBinary(classTweaker, KEY), KEY);
+
+		assertNotNull(read);
+		assertNull(read.getNamespace());
+		assertThat(read.getTargets()).isEmpty();
+	}
+
+	@Test
+	void testCacheKeyMismatch() {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitHeader("named");
+		byte[] data = ClassTweakerWriter.writeBinary(classTweaker, KEY);
+
+		assertNull(ClassTweakerReader.readBinary(data, new byte[] {1, 2, 4}));
+	}
+
+	@Test
+	void testInvalidData() {
+		assertThrows(IllegalArgumentException.class, () -> ClassTweakerReader.readBinary("classTweaker\tv1\tnamed\n".getBytes(StandardCharsets.UTF_8), KEY));
+	}
+
+	@Test
+	void testCorruptData(@TempDir Path tempDir) throws Exception {
+		byte[] data = ClassTweakerWriter.writeBinary(createClassTweaker(), KEY);
+
+		for (int length = 0; length < data.length; length++) {
+			byte[] truncated = Arrays.copyOf(data, length);
+			assertThrows(IllegalArgumentException.class, () -> ClassTweakerReader.readBinary(truncated, KEY), "Truncated to " + length);
+		}
+
+		Path file = tempDir.resolve("classtweaker.bin");
+		Files.write(file, Arrays.copyOf(data, data.length - 1));
+		assertThrows(IllegalArgumentException.class, () -> ClassTweakerReader.mapBinary(file, KEY));
+
+		int header = ClassTweakerBinaryFormat.headerOffset(KEY.length);
+
+		// Capacities that are not a power of two, or leave no empty slot to end a probe sequence at
+		for (int capacity : new int[] {0, -1, 3, 1}) {
+			assertCorrupt(data, header + ClassTweakerBinaryFormat.TARGET_TABLE_CAPACITY, capacity);
+			assertCorrupt(data, header + ClassTweakerBinaryFormat.OWNER_TABLE_CAPACITY, capacity);
+		}
+
+		// Offsets past the end
+		for (int field : new int[] {ClassTweakerBinaryFormat.STRING_OFFSETS, ClassTweakerBinaryFormat.TARGET_LIST, ClassTweakerBinaryFormat.OWNER_TABLE}) {
+			assertCorrupt(data, header + field, data.length);
+			assertCorrupt(data, header + field, -4);
+		}
+
+		// String indices out of range
+		int stringCount = ByteBuffer.wrap(data).getInt(header + ClassTweakerBinaryFormat.STRING_COUNT);
+		int ownerRecord = ByteBuffer.wrap(data).getInt(ByteBuffer.wrap(data).getInt(header + ClassTweakerBinaryFormat.OWNER_LIST));
+		assertCorrupt(data, header + ClassTweakerBinaryFormat.NAMESPACE, stringCount);
+		assertCorrupt(data, ownerRecord + ClassTweakerBinaryFormat.OWNER_NAME, stringCount);
+		assertCorrupt(data, ownerRecord + ClassTweakerBinaryFormat.OWNER_METHOD_TABLE_CAPACITY, 0);
+		assertCorrupt(data, ownerRecord + ClassTweakerBinaryFormat.OWNER_INTERFACE_COUNT, Integer.MAX_VALUE);
+	}
+
+	@Test
+	void testCorruptAccessFlags() throws Exception {
+		byte[] data = ClassTweakerWriter.writeBinary(createClassTweaker(), KEY);
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		int header = ClassTweakerBinaryFormat.headerOffset(KEY.length);
+		int ownerList = buffer.getInt(header + ClassTweakerBinaryFormat.OWNER_LIST);
+		boolean checkedMethods = false;
+		boolean checkedFields = false;
+
+		assertNotNull(MappedClassTweaker.open(ByteBuffer.wrap(data), KEY));
+
+		// Class and method access only combine accessible and extendable, field access only accessible and mutable
+		for (int i = 0; i < buffer.getInt(header + ClassTweakerBinaryFormat.OWNER_COUNT); i++) {
+			int ownerRecord = buffer.getInt(ownerList + i * 4);
+
+			for (int flags : new int[] {4, 8, -1}) {
+				assertOpenCorrupt(data, ownerRecord + ClassTweakerBinaryFormat.OWNER_CLASS_ACCESS, flags);
+			}
+
+			checkedMethods |= assertMemberFlagsChecked(data, ownerRecord + ClassTweakerBinaryFormat.OWNER_METHOD_TABLE_CAPACITY, 4, 8, -1);
+			checkedFields |= assertMemberFlagsChecked(data, ownerRecord + ClassTweakerBinaryFormat.OWNER_FIELD_TABLE_CAPACITY, 2, 3, 6, 8, -1);
+		}
+
+		assertThat(checkedMethods).isTrue();
+		assertThat(checkedFields).isTrue();
+	}
+
+	@Test
+	void testComputeCacheKey() {
+		List<ClassTweakerReader.Source> sources = Arrays.asList(
+				ClassTweakerReader.Source.of(new byte[] {1, 2}, "named"),
+				ClassTweakerReader.Source.of(new byte[] {3}, null)
+		);
+		List<ClassTweakerReader.Source> reordered = Arrays.asList(sources.get(1), sources.get(0));
+		List<ClassTweakerReader.Source> merged = Collections.singletonList(ClassTweakerReader.Source.of(new byte[] {1, 2, 3}, "named"));
+
+		assertArrayEquals(ClassTweakerReader.computeCacheKey(sources), ClassTweakerReader.computeCacheKey(sources));
+		assertThat(ClassTweakerReader.computeCacheKey(sources))
+				.isNotEqualTo(ClassTweakerReader.computeCacheKey(reordered))
+				.isNotEqualTo(ClassTweakerReader.computeCacheKey(merged));
+	}
+
+	static ClassTweaker createClassTweaker() throws Exception {
+		ClassTweaker classTweaker = ClassTweakerReader.readAll(Arrays.asList(
+				source("AccessWidenerReaderTest_transitive.txt"),
+				source("AccessWidenerWriterTest_v4.txt")
+		));
+		classTweaker.visitAccessWidener("a/b/C$IC1$IC2").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		classTweaker.visitInjectedInterface("a/b/C", "a/GenericInterface<Ljava/lang/String;>", false);
+		classTweaker.visitEnumExtension("a/b/C$IC1", "äöü", false);
+		classTweaker.visitEnumExtension("a/b/C$IC1", "\uD83D\uDE00", false);
+		return classTweaker;
+	}
+
+	static void assertSameEntries(ClassTweaker expected, ClassTweaker actual) {
+		assertEquals(expected.getNamespace(), actual.getNamespace());
+		assertThat(actual.getTargets()).containsExactlyElementsOf(expected.getTargets());
+		assertEquals(expected.getAllAccessWideners().keySet(), actual.getAllAccessWideners().keySet());
+
+		for (Map.Entry<String, AccessWidener> entry : expected.getAllAccessWideners().entrySet()) {
+			AccessWidener actualWidener = actual.getAccessWidener(entry.getKey());
+			assertEquals(entry.getValue().getClassAccess(), actualWidener.getClassAccess());
+			assertEquals(entry.getValue().getAllMethodAccesses(), actualWidener.getAllMethodAccesses());
+			assertEquals(entry.getValue().getAllFieldAccesses(), actualWidener.getAllFieldAccesses());
+		}
+
+		assertEquals(interfaceSignatures(expected), interfaceSignatures(actual));
+		assertEquals(enumConstants(expected), enumConstants(actual));
+	}
+
+	/**
+	 * Checks that the members of an access widener are not reported for a class with the same member names.
+	 */
+	static void assertForeignOwnerUnchanged(AccessWidener expected, AccessWidener actual) {
+		for (EntryTriple method : expected.getAllMethodAccesses().keySet()) {
+			assertFalse(actual.getMethodAccess(new EntryTriple(method.getOwner() + "$Other", method.getName(), method.getDesc())).isChanged());
+		}
+
+		for (EntryTriple field : expected.getAllFieldAccesses().keySet()) {
+			assertFalse(actual.getFieldAccess(new EntryTriple(field.getOwner() + "$Other", field.getName(), field.getDesc())).isChanged());
+		}
+	}
+
+	private static void assertCorrupt(byte[] data, int offset, int value) {
+		byte[] corrupt = data.clone();
+		ByteBuffer.wrap(corrupt).putInt(offset, value);
+		assertThrows(IllegalArgumentException.class, () -> ClassTweakerReader.readBinary(corrupt, KEY), () -> offset + " = " + value);
+	}
+
+	/**
+	 * Corrupts the access flags of the first member in the table.
+	 *
+	 * @return whether the table has a member
+	 */
+	private static boolean assertMemberFlagsChecked(byte[] data, int table, int... invalidFlags) {
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		int capacity = buffer.getInt(table);
+		int slots = buffer.getInt(table + 4);
+
+		for (int i = 0; i < capacity; i++) {
+			int slot = slots + i * ClassTweakerBinaryFormat.MEMBER_SLOT_SIZE;
+
+			if (buffer.getInt(slot) != 0) {
+				for (int flags : invalidFlags) {
+					assertOpenCorrupt(data, slot + 8, flags);
+				}
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static void assertOpenCorrupt(byte[] data, int offset, int value) {
+		byte[] corrupt = data.clone();
+		ByteBuffer.wrap(corrupt).putInt(offset, value);
+		assertThrows(IllegalArgumentException.class, () -> MappedClassTweaker.open(ByteBuffer.wrap(corrupt), KEY), () -> offset + " = " + value);
+	}
+
+	private static Map<String, List<String>> interfaceSignatures(ClassTweaker classTweaker) {
+		return classTweaker.getAllInjectedInterfaces().entrySet().stream().collect(Collectors.toMap(
+				Map.Entry::getKey,
+				entry -> entry.getValue().stream().map(InjectedInterface::getInterfaceSignature).collect(Collectors.toList())
+		));
+	}
+
+	private static Map<String, List<String>> enumConstants(ClassTweaker classTweaker) {
+		return classTweaker.getAllEnumExtensions().entrySet().stream().collect(Collectors.toMap(
+				Map.Entry::getKey,
+				entry -> entry.getValue().stream().map(EnumExtension::getAddedConstant).collect(Collectors.toList())
+		));
+	}
+
+	private static ClassTweakerReader.Source source(String name) throws Exception {
+		URL resource = Objects.requireNonNull(ClassTweakerBinaryTest.class.getResource(name));
+		return ClassTweakerReader.Source.of(Files.readAllBytes(Paths.get(resource.toURI())), null);
+	}
+}
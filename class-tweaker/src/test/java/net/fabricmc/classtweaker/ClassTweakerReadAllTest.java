@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.ConcurrentClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.reader.ClassTweakerFormatException;
+
+class ClassTweakerReadAllTest {
+	private static final String[] ACCESS = {"accessible", "extendable", "mutable"};
+
+	@Test
+	void testSameResultAsSequentialReading() {
+		List<ClassTweakerReader.Source> sources = createSources(200);
+
+		ClassTweaker expected = ClassTweaker.newInstance();
+
+		for (ClassTweakerReader.Source source : sources) {
+			ClassTweakerReader.create(expected).read(source.getContent(), source.getNamespace());
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			assertSameContent(expected, ClassTweakerReader.readAll(sources, executor));
+		} finally {
+			executor.shutdown();
+		}
+
+		assertSameContent(expected, ClassTweakerReader.readAll(sources));
+	}
+
+	@Test
+	void testConcurrentInstance() throws Exception {
+		List<ClassTweakerReader.Source> sources = createSources(200);
+
+		ClassTweaker expected = ClassTweaker.newInstance();
+
+		for (ClassTweakerReader.Source source : sources) {
+			ClassTweakerReader.create(expected).read(source.getContent(), source.getNamespace());
+		}
+
+		ConcurrentClassTweaker actual = ClassTweaker.newConcurrentInstance();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+
+			for (int i = 0; i < sources.size(); i++) {
+				ClassTweakerReader.Source source = sources.get(i);
+				ClassTweakerVisitor visitor = actual.visitSource(i);
+				futures.add(executor.submit(() -> ClassTweakerReader.create(visitor).read(source.getContent(), source.getNamespace())));
+			}
+
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (ClassTweaker classTweaker : new ClassTweaker[] {actual, actual.snapshot()}) {
+			assertEquals(expected.getNamespace(), classTweaker.getNamespace());
+			assertThat(classTweaker.getTargets()).containsExactlyElementsOf(expected.getTargets());
+			assertEquals(expected.getAllAccessWideners().keySet(), classTweaker.getAllAccessWideners().keySet());
+
+			for (Map.Entry<String, AccessWidener> entry : expected.getAllAccessWideners().entrySet()) {
+				AccessWidener actualWidener = classTweaker.getAccessWidener(entry.getKey());
+				assertEquals(entry.getValue().getClassAccess(), actualWidener.getClassAccess());
+				assertEquals(entry.getValue().getAllMethodAccesses(), actualWidener.getAllMethodAccesses());
+				assertEquals(entry.getValue().getAllFieldAccesses(), actualWidener.getAllFieldAccesses());
+			}
+
+			assertEquals(interfaceNames(expected), interfaceNames(classTweaker));
+			assertEquals(enumConstants(expected), enumConstants(classTweaker));
+		}
+	}
+
+	@Test
+	void testConcurrentTargetOrder() {
+		ClassTweaker expected = ClassTweaker.newInstance();
+		expected.visitAccessWidener("a/A$Inner").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		expected.visitInjectedInterface("a/B", "a/I", false);
+		expected.visitAccessWidener("a/A").visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		expected.visitEnumExtension("a/C$Inner$Nested", "CONSTANT", false);
+		expected.visitInjectedInterface("a/B$Inner", "a/I", false);
+
+		// Visit the later source first, so that its targets are added before those of the earlier source
+		ConcurrentClassTweaker actual = ClassTweaker.newConcurrentInstance();
+		ClassTweakerVisitor second = actual.visitSource(1);
+		second.visitEnumExtension("a/C$Inner$Nested", "CONSTANT", false);
+		second.visitInjectedInterface("a/B$Inner", "a/I", false);
+		ClassTweakerVisitor first = actual.visitSource(0);
+		first.visitAccessWidener("a/A$Inner").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		first.visitInjectedInterface("a/B", "a/I", false);
+		first.visitAccessWidener("a/A").visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+
+		assertThat(expected.getTargets()).containsExactly("a/A$Inner", "a/A", "a/B", "a/C$Inner$Nested", "a/C$Inner", "a/C", "a/B$Inner");
+		assertThat(actual.getTargets()).containsExactlyElementsOf(expected.getTargets());
+		assertThat(actual.snapshot().getTargets()).containsExactlyElementsOf(expected.getTargets());
+	}
+
+	@Test
+	void testReadWhileVisiting() throws Exception {
+		ClassTweaker classTweaker = ClassTweaker.newConcurrentInstance();
+		AccessWidenerVisitor visitor = classTweaker.visitAccessWidener("a/C");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+
+		try {
+			// The member access maps are rehashed many times while the other thread keeps reading them
+			Future<?> writer = executor.submit(() -> {
+				for (int i = 0; i < 20000; i++) {
+					visitor.visitMethod("m" + i, "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+					classTweaker.visitInjectedInterface("a/C", "a/I" + i, false);
+				}
+			});
+			Future<?> reader = executor.submit(() -> {
+				while (!writer.isDone()) {
+					AccessWidener accessWidener = classTweaker.getAccessWidener("a/C");
+					int size = accessWidener.getAllMethodAccesses().size();
+
+					for (int i = 0; i < size; i++) {
+						assertThat(accessWidener.getMethodAccess("m" + i, "()V").isAccessible()).isTrue();
+					}
+
+					assertThat(classTweaker.getInjectedInterfaces("a/C")).allSatisfy(iface -> assertThat(iface).isNotNull());
+				}
+			});
+
+			writer.get(60, TimeUnit.SECONDS);
+			reader.get(60, TimeUnit.SECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(classTweaker.getAccessWidener("a/C").getAllMethodAccesses()).hasSize(20000);
+		assertThat(classTweaker.getInjectedInterfaces("a/C")).hasSize(20000);
+	}
+
+	@Test
+	void testIsTargetWhileVisiting() throws Exception {
+		ClassTweaker classTweaker = ClassTweaker.newConcurrentInstance();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+
+			for (int thread = 0; thread < 4; thread++) {
+				int offset = thread;
+				futures.add(executor.submit(() -> {
+					for (int i = offset; i < 20000; i += 4) {
+						classTweaker.visitEnumExtension("a/C" + i, "CONSTANT", false);
+
+						// Rebuilds the target index while the other threads keep adding targets
+						if (i % 100 == offset) {
+							assertThat(classTweaker.isTarget("a/C" + i, false)).isTrue();
+							classTweaker.isTarget("a/Missing", false);
+						}
+					}
+				}));
+			}
+
+			for (Future<?> future : futures) {
+				future.get(60, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(classTweaker.isTarget("a/C19999", false)).isTrue();
+		assertThat(classTweaker.isTarget("a/Missing", false)).isFalse();
+	}
+
+	@Test
+	void testThrowsFirstError() {
+		List<ClassTweakerReader.Source> sources = createSources(20);
+		sources.set(5, source("classTweaker\tv2\tnamed\naccessible\tclass\n"));
+		sources.set(10, source("classTweaker\tv2\tnamed\nunknown\tclass\ta/B\n"));
+
+		ClassTweakerFormatException e = assertThrows(ClassTweakerFormatException.class, () -> ClassTweakerReader.readAll(sources));
+		assertEquals("Expected (<access> class <className>) got (accessible\tclass)", e.getMessage());
+		assertEquals(2, e.getLineNumber());
+	}
+
+	@Test
+	void testNamespaceMismatch() {
+		List<ClassTweakerReader.Source> sources = createSources(3);
+		sources.add(source("classTweaker\tv2\tother\n"));
+
+		Exception e = assertThrows(Exception.class, () -> ClassTweakerReader.readAll(sources));
+		assertEquals("Namespace mismatch, expected named got other", e.getMessage());
+	}
+
+	private static void assertSameContent(ClassTweaker expected, ClassTweaker actual) {
+		assertEquals(expected.getNamespace(), actual.getNamespace());
+		// Ordering must be the same
+		assertThat(actual.getTargets()).containsExactlyElementsOf(expected.getTargets());
+		assertEquals(expected.getAllAccessWideners().keySet(), actual.getAllAccessWideners().keySet());
+
+		for (Map.Entry<String, AccessWidener> entry : expected.getAllAccessWideners().entrySet()) {
+			AccessWidener actualWidener = actual.getAccessWidener(entry.getKey());
+			assertEquals(entry.getValue().getClassAccess(), actualWidener.getClassAccess());
+			assertEquals(entry.getValue().getAllMethodAccesses(), actualWidener.getAllMethodAccesses());
+			assertEquals(entry.getValue().getAllFieldAccesses(), actualWidener.getAllFieldAccesses());
+		}
+
+		assertEquals(interfaceNames(expected), interfaceNames(actual));
+		assertEquals(enumConstants(expected), enumConstants(actual));
+	}
+
+	private static Map<String, List<String>> interfaceNames(ClassTweaker classTweaker) {
+		return classTweaker.getAllInjectedInterfaces().entrySet().stream().collect(Collectors.toMap(
+				Map.Entry::getKey,
+				entry -> entry.getValue().stream().map(InjectedInterface::getInterfaceSignature).collect(Collectors.toList())
+		));
+	}
+
+	private static Map<String, List<String>> enumConstants(ClassTweaker classTweaker) {
+		return classTweaker.getAllEnumExtensions().entrySet().stream().collect(Collectors.toMap(
+				Map.Entry::getKey,
+				entry -> entry.getValue().stream().map(EnumExtension::getAddedConstant).collect(Collectors.toList())
+		));
+	}
+
+	private static List<ClassTweakerReader.Source> createSources(int count) {
+		Random random = new Random(42);
+		List<ClassTweakerReader.Source> sources = new ArrayList<>();
+
+		for (int i = 0; i < count; i++) {
+			StringBuilder content = new StringBuilder("classTweaker\tv2\tnamed\n");
+
+			for (int j = 0; j < 50; j++) {
+				String owner = "pkg" + random.nextInt(5) + "/Class" + random.nextInt(20) + (random.nextBoolean() ? "$Inner" : "");
+
+				switch (random.nextInt(5)) {
+				case 0:
+					content.append(ACCESS[random.nextInt(2)]).append("\tclass\t").append(owner).append('\n');
+					break;
+				case 1:
+					content.append(ACCESS[random.nextInt(2)]).append("\tmethod\t").append(owner).append("\tmethod").append(random.nextInt(5)).append("\t()V\n");
+					break;
+				case 2:
+					content.append(ACCESS[random.nextInt(2) * 2]).append("\tfield\t").append(owner).append("\tfield").append(random.nextInt(5)).append("\tI\n");
+					break;
+				case 3:
+					content.append("inject-interface\t").append(owner).append("\tpkg/Interface").append(i).append('\n');
+					break;
+				default:
+					content.append("extend-enum\t").append(owner).append("\tCONSTANT_").append(i).append('_').append(j).append('\n');
+					break;
+				}
+			}
+
+			sources.add(source(content.toString()));
+		}
+
+		return sources;
+	}
+
+	private static ClassTweakerReader.Source source(String content) {
+		return ClassTweakerReader.Source.of(content.getBytes(StandardCharsets.UTF_8), null);
+	}
+}
@@ -464,6 +464,59 @@ public class ClassTweakerReaderTest {
 		}
 	}
 
+	@Nested
+	class ByteParsing {
+		@Test
+		public void testCorrectLineNumbersWithCrLfLineEndings() {
+			int lineNumber = assertThrows(ClassTweakerFormatException.class,
+											() -> reader.read("accessWidener v1 namespace\r\naccessible class SomeClass\r\n\r\n# comment\rERROR\r\n".getBytes(StandardCharsets.UTF_8))
+			).getLineNumber();
+			assertEquals(5, lineNumber);
+			assertThat(visitor.getTargets()).containsOnly("SomeClass");
+		}
+
+		@Test
+		public void testHeaderOnly() {
+			reader.read("accessWidener v2 namespace".getBytes(StandardCharsets.UTF_8));
+			assertEquals("namespace", visitor.getNamespace());
+			assertThat(visitor.getTargets()).isEmpty();
+		}
+
+		@Test
+		public void testNonAsciiNames() {
+			reader.read("accessWidener v2 namespace\nACCESSIBLE\tclass\tsome/Cl\u00e4ss\u00a0Name # \u00fc".getBytes(StandardCharsets.UTF_8));
+			assertThat(visitor.getTargets()).containsOnly("some/Cl\u00e4ss\u00a0Name");
+		}
+
+		@Test
+		public void testSameResultAsBufferedReader() throws Exception {
+			String testInput = readTestInput("AccessWidenerReaderTest_transitive.txt");
+			reader.read(testInput.getBytes(StandardCharsets.UTF_8));
+
+			ClassTweakerImpl expected = new ClassTweakerImpl();
+			ClassTweakerReader.create(expected).read(new BufferedReader(new StringReader(testInput)));
+
+			assertEquals(expected.getTargets(), visitor.getTargets());
+			assertEquals(expected.getAllAccessWideners().keySet(), visitor.getAllAccessWideners().keySet());
+
+			for (String className : expected.getClasses()) {
+				AccessWidener expectedWidener = expected.getAccessWidener(className);
+				AccessWidener actualWidener = visitor.getAccessWidener(className);
+				assertEquals(expectedWidener.getClassAccess(), actualWidener.getClassAccess());
+				assertEquals(expectedWidener.getAllMethodAccesses(), actualWidener.getAllMethodAccesses());
+				assertEquals(expectedWidener.getAllFieldAccesses(), actualWidener.getAllFieldAccesses());
+			}
+		}
+
+		@Test
+		public void throwsOnMissingTokensInLine() {
+			assertFormatError(
+					"Expected (<access> field <className> <fieldName> <fieldDesc>) got (accessible\tfield\tClass\tField  )",
+					() -> reader.read("accessWidener\tv2\tnamespace\naccessible\tfield\tClass\tField  # comment".getBytes(StandardCharsets.UTF_8))
+			);
+		}
+	}
+
 	@Nested
 	class ClassNameValidation {
 		@Test
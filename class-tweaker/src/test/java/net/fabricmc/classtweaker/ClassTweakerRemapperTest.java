@@ -23,9 +23,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -34,9 +38,15 @@ import org.junit.jupiter.api.Test;
 import org.objectweb.asm.commons.SimpleRemapper;
 
 import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
 import net.fabricmc.classtweaker.api.ClassTweakerWriter;
 import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
 import net.fabricmc.classtweaker.api.visitor.ClassTweakerVisitor;
+import net.fabricmc.classtweaker.visitors.ClassTweakerBulkRemapper;
+import net.fabricmc.classtweaker.visitors.IndexedRemapper;
+import net.fabricmc.classtweaker.visitors.MemoizingRemapper;
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
 
 class ClassTweakerRemapperTest {
 	SimpleRemapper remapper;
@@ -71,6 +81,123 @@ class ClassTweakerRemapperTest {
 		assertEquals(readReferenceContent("Remapped.txt"), writer.getOutputAsString());
 	}
 
+	@Test
+	void testRemapAll() throws Exception {
+		ClassTweakerWriter writer = ClassTweakerWriter.create(ClassTweaker.CT_V1);
+		accept(writer);
+		List<ClassTweakerReader.Source> sources = Arrays.asList(
+				ClassTweakerReader.Source.of(writer.getOutput(), "original_namespace"),
+				ClassTweakerReader.Source.of(writer.getOutput(), null),
+				ClassTweakerReader.Source.of(writer.getOutput(), "original_namespace")
+		);
+
+		ClassTweakerBulkRemapper.Result result = ClassTweakerBulkRemapper.remapAll(sources, remapper, "different_namespace");
+
+		assertThat(result.getOutputs()).hasSize(3);
+
+		for (byte[] output : result.getOutputs()) {
+			assertEquals(readReferenceContent("Remapped.txt"), new String(output, StandardCharsets.UTF_8));
+		}
+
+		// Names that are used more than once are answered from the caches
+		assertThat(result.getCacheHitRatio()).isGreaterThan(0);
+
+		List<ClassTweakerReader.Source> wrongNamespace = Collections.singletonList(ClassTweakerReader.Source.of(writer.getOutput(), "expected_namespace"));
+		assertThrows(IllegalArgumentException.class, () -> ClassTweakerBulkRemapper.remapAll(wrongNamespace, remapper, "different_namespace"));
+	}
+
+	@Test
+	void testMemoizingRemapper() {
+		MemoizingRemapper memoizingRemapper = new MemoizingRemapper(remapper, 2);
+
+		assertEquals("newa/NewClass", memoizingRemapper.map("a/Class"));
+		assertEquals("newa/NewClass", memoizingRemapper.map("a/Class"));
+		assertThat(memoizingRemapper.map("b/Unmapped")).isNull();
+		assertThat(memoizingRemapper.map("b/Unmapped")).isNull();
+		assertEquals("(Lnewa/NewClass;)I", memoizingRemapper.mapMethodDesc("(La/Class;)I"));
+		assertEquals("Lnewa/NewClass;", memoizingRemapper.mapDesc("La/Class;"));
+		assertEquals("otherMethod", memoizingRemapper.mapMethodName("a/Class", "someMethod", "()I"));
+		assertEquals("otherField", memoizingRemapper.mapFieldName("g/Class", "someField", "I"));
+		assertEquals("someMethod", memoizingRemapper.mapFieldName("a/Class", "someMethod", "I"));
+		assertThat(memoizingRemapper.getHitCount()).isEqualTo(2);
+		assertThat(memoizingRemapper.getMissCount()).isEqualTo(7);
+
+		// The cache is full, so new names are no longer cached while the cached ones are kept
+		assertEquals("newx/NewClass", memoizingRemapper.map("x/Class"));
+		assertEquals("newx/NewClass", memoizingRemapper.map("x/Class"));
+		assertEquals("newa/NewClass", memoizingRemapper.map("a/Class"));
+		assertThat(memoizingRemapper.getHitCount()).isEqualTo(3);
+		assertThat(memoizingRemapper.getMissCount()).isEqualTo(9);
+	}
+
+	@Test
+	void testIndexedRemapper() throws Exception {
+		IndexedRemapper indexedRemapper = IndexedRemapper.builder()
+				.addClass("a/Class", "newa/NewClass")
+				.addClass("g/Class", "newg/NewClass")
+				.addClass("x/Class", "newx/NewClass")
+				.addClass("y/Class", null)
+				.addMethod("a/Class", "someMethod", "()I", "otherMethod")
+				.addField("g/Class", "someField", null, "otherField")
+				.addField("g/Class", "typedField", "La/Class;", "otherTypedField")
+				.build();
+
+		ClassTweakerWriter writer = ClassTweakerWriter.create(ClassTweaker.CT_V1);
+		accept(ClassTweakerVisitor.remap(writer, indexedRemapper, "original_namespace", "different_namespace"));
+		assertEquals(readReferenceContent("Remapped.txt"), writer.getOutputAsString());
+
+		assertThat(indexedRemapper.getClassCount()).isEqualTo(4);
+		assertThat(indexedRemapper.getClassId("x/Class")).isEqualTo(2);
+		assertThat(indexedRemapper.getClassId("b/Class")).isEqualTo(-1);
+		assertEquals("y/Class", indexedRemapper.map("y/Class"));
+		assertEquals("b/Class", indexedRemapper.map("b/Class"));
+
+		for (String descriptor : new String[] {"I", "[[J", "La/Class;", "[La/Class;", "(La/Class;ILb/Class;[Lg/Class;)Lx/Class;", "()V", "(Ly/Class;)Lb/Lazy;"}) {
+			assertEquals(remapper.mapDesc(descriptor), indexedRemapper.mapDesc(descriptor), descriptor);
+		}
+
+		String unmapped = "(Lb/Class;)V";
+		assertThat(indexedRemapper.mapMethodDesc(unmapped)).isSameAs(unmapped);
+		assertThrows(IllegalArgumentException.class, () -> indexedRemapper.mapDesc("La/Class"));
+
+		assertEquals("otherMethod", indexedRemapper.mapMethodName("a/Class", "someMethod", "()I"));
+		assertEquals("someMethod", indexedRemapper.mapMethodName("a/Class", "someMethod", "()V"));
+		assertEquals("otherField", indexedRemapper.mapFieldName("g/Class", "someField", "J"));
+		assertEquals("otherTypedField", indexedRemapper.mapFieldName("g/Class", "typedField", "La/Class;"));
+		assertEquals("typedField", indexedRemapper.mapFieldName("g/Class", "typedField", "I"));
+	}
+
+	@Test
+	void testIndexedRemapperFromMappingTree() throws Exception {
+		MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitNamespaces("original_namespace", Arrays.asList("other_namespace", "different_namespace"));
+		tree.visitClass("a/Class");
+		tree.visitDstName(MappedElementKind.CLASS, 1, "newa/NewClass");
+		tree.visitMethod("someMethod", "()I");
+		tree.visitDstName(MappedElementKind.METHOD, 1, "otherMethod");
+		tree.visitClass("g/Class");
+		tree.visitDstName(MappedElementKind.CLASS, 1, "newg/NewClass");
+		tree.visitField("someField", "I");
+		tree.visitDstName(MappedElementKind.FIELD, 1, "otherField");
+		tree.visitClass("x/Class");
+		tree.visitDstName(MappedElementKind.CLASS, 1, "newx/NewClass");
+		tree.visitClass("y/Class");
+
+		IndexedRemapper indexedRemapper = IndexedRemapper.of(tree, "original_namespace", "different_namespace");
+		ClassTweakerWriter writer = ClassTweakerWriter.create(ClassTweaker.CT_V1);
+		accept(ClassTweakerVisitor.remap(writer, indexedRemapper, "original_namespace", "different_namespace"));
+		assertEquals(readReferenceContent("Remapped.txt"), writer.getOutputAsString());
+		assertEquals("y/Class", indexedRemapper.map("y/Class"));
+
+		// Mapping back uses the names of the target namespace as keys
+		IndexedRemapper reverse = IndexedRemapper.of(tree, "different_namespace", "original_namespace");
+		assertEquals("a/Class", reverse.map("newa/NewClass"));
+		assertEquals("someMethod", reverse.mapMethodName("newa/NewClass", "otherMethod", "()I"));
+		assertEquals("someField", reverse.mapFieldName("newg/NewClass", "otherField", "I"));
+
+		assertThrows(IllegalArgumentException.class, () -> IndexedRemapper.of(tree, "original_namespace", "missing"));
+	}
+
 	void accept(ClassTweakerVisitor visitor) {
 		visitor.visitHeader("original_namespace");
 		visitor.visitAccessWidener("a/Class").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
@@ -18,14 +18,21 @@ package net.fabricmc.classtweaker;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
 import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.EnumExtension;
+import net.fabricmc.classtweaker.api.InjectedInterface;
 import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
 import net.fabricmc.classtweaker.classvisitor.AccessWidenerClassVisitor;
+import net.fabricmc.classtweaker.impl.AccessWidenerImpl;
 import net.fabricmc.classtweaker.impl.ClassTweakerImpl;
+import net.fabricmc.classtweaker.utils.EntryTriple;
 
 public class ClassTweakerTest {
 	ClassTweakerImpl widener = new ClassTweakerImpl();
@@ -69,4 +76,135 @@ public class ClassTweakerTest {
 		assertThat(widener.getAccessWidener("a/b/C").getClassAccess())
 				.matches(AccessWidener.Access::isAccessible);
 	}
+
+	@Test
+	void testMemberAccessByNameAndDescriptor() {
+		widener.visitAccessWidener("a/b/C").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitAccessWidener("a/b/C").visitField("f", "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+
+		ClassTweakerImpl other = new ClassTweakerImpl();
+		other.visitAccessWidener("a/b/C").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		other.visitAccessWidener("a/b/C").visitMethod("m", "(I)V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.merge(other);
+
+		AccessWidener accessWidener = widener.getAccessWidener("a/b/C");
+		assertEquals(accessWidener.getMethodAccess(new EntryTriple("a/b/C", "m", "()V")), accessWidener.getMethodAccess("m", "()V"));
+		assertEquals(accessWidener.getMethodAccess(new EntryTriple("a/b/C", "m", "(I)V")), accessWidener.getMethodAccess("m", "(I)V"));
+		assertEquals(accessWidener.getFieldAccess(new EntryTriple("a/b/C", "f", "I")), accessWidener.getFieldAccess("f", "I"));
+		assertThat(accessWidener.getMethodAccess("m", "()V")).matches(AccessWidener.Access::isAccessible).matches(AccessWidener.Access::isExtendable);
+		assertThat(accessWidener.getMethodAccess("m", "(J)V")).matches(access -> !access.isChanged());
+		assertThat(accessWidener.getFieldAccess("m", "()V")).matches(access -> !access.isChanged());
+		assertThat(widener.getAccessWidener("a/b/D").getMethodAccess("m", "()V")).matches(access -> !access.isChanged());
+	}
+
+	@Test
+	void testMemberAccessOfOtherOwner() {
+		widener.visitAccessWidener("a/b/C").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitAccessWidener("a/b/C").visitField("f", "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+
+		for (ClassTweaker classTweaker : new ClassTweaker[] {widener, widener.snapshot()}) {
+			AccessWidener accessWidener = classTweaker.getAccessWidener("a/b/C");
+			assertTrue(accessWidener.getMethodAccess(new EntryTriple("a/b/C", "m", "()V")).isChanged());
+			assertTrue(accessWidener.getFieldAccess(new EntryTriple("a/b/C", "f", "I")).isChanged());
+			// A member with the same name and descriptor in another class is not widened
+			assertFalse(accessWidener.getMethodAccess(new EntryTriple("a/b/D", "m", "()V")).isChanged());
+			assertFalse(accessWidener.getFieldAccess(new EntryTriple("a/b/D", "f", "I")).isChanged());
+			assertThat(accessWidener.getAllMethodAccesses()).doesNotContainKey(new EntryTriple("a/b/D", "m", "()V"));
+		}
+	}
+
+	@Test
+	void testNeedsCallSiteRewrite() {
+		widener.visitAccessWidener("a/b/C").visitField("f", "I", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitAccessWidener("a/b/D").visitMethod("<init>", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitAccessWidener("a/b/E").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+
+		ClassTweakerImpl other = new ClassTweakerImpl();
+		other.visitAccessWidener("a/b/C").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		ClassTweaker snapshot = widener.snapshot();
+		widener.merge(other);
+
+		assertTrue(widener.getAccessWidener("a/b/C").needsCallSiteRewrite());
+		assertFalse(snapshot.getAccessWidener("a/b/C").needsCallSiteRewrite());
+		assertFalse(widener.getAccessWidener("a/b/D").needsCallSiteRewrite());
+		assertTrue(snapshot.getAccessWidener("a/b/E").needsCallSiteRewrite());
+		assertFalse(widener.getAccessWidener("a/b/F").needsCallSiteRewrite());
+	}
+
+	@Test
+	void testSnapshot() {
+		widener.visitHeader("named");
+		widener.visitAccessWidener("a/b/C$IC1").visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		widener.visitAccessWidener("a/b/C$IC1").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitAccessWidener("a/b/C$IC1").visitField("f", "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+		widener.visitInjectedInterface("a/b/C", "a/I", false);
+		widener.visitEnumExtension("a/b/E", "CONSTANT", false);
+
+		ClassTweaker snapshot = widener.snapshot();
+		widener.visitAccessWidener("a/b/D").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitInjectedInterface("a/b/C", "a/J", false);
+
+		assertEquals("named", snapshot.getNamespace());
+		assertThat(snapshot.getTargets()).containsExactly("a/b/C$IC1", "a/b/C", "a/b/E");
+		assertThat(snapshot.getTargets()).doesNotContain("a/b/D");
+		assertThat(snapshot.getAllAccessWideners()).containsOnlyKeys("a/b/C$IC1");
+		assertEquals(widener.getAccessWidener("a/b/C$IC1").getAllMethodAccesses(), snapshot.getAccessWidener("a/b/C$IC1").getAllMethodAccesses());
+		assertEquals(widener.getAccessWidener("a/b/C$IC1").getAllFieldAccesses(), snapshot.getAccessWidener("a/b/C$IC1").getAllFieldAccesses());
+		assertEquals(widener.getAccessWidener("a/b/C$IC1").getClassAccess(), snapshot.getAccessWidener("a/b/C$IC1").getClassAccess());
+		assertEquals(widener.getAccessWidener("a/b/C$IC1").getMethodAccess("m", "()V"), snapshot.getAccessWidener("a/b/C$IC1").getMethodAccess("m", "()V"));
+		assertThat(snapshot.getAccessWidener("a/b/D").getClassAccess()).matches(access -> !access.isChanged());
+		assertThat(snapshot.getInjectedInterfaces("a/b/C")).extracting(InjectedInterface::getInterfaceName).containsExactly("a/I");
+		assertThat(snapshot.getEnumExtensions("a/b/E")).extracting(EnumExtension::getAddedConstant).containsExactly("CONSTANT");
+		assertThat(snapshot.getAllInjectedInterfaces()).isSameAs(snapshot.getAllInjectedInterfaces());
+		assertThat(snapshot.getAllInjectedInterfaces()).containsOnlyKeys("a/b/C");
+		assertThat(snapshot.getAllEnumExtensions().get("a/b/E")).extracting(EnumExtension::getAddedConstant).containsExactly("CONSTANT");
+		assertThat(snapshot.getAccessWidener("a/b/C$IC1").getAllMethodAccesses())
+				.containsOnlyKeys(new EntryTriple("a/b/C$IC1", "m", "()V"))
+				.containsEntry(new EntryTriple("a/b/C$IC1", "m", "()V"), AccessWidenerImpl.MethodAccess.ACCESSIBLE)
+				.doesNotContainKey(new EntryTriple("a/b/D", "m", "()V"));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.getAllAccessWideners().clear());
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.getAccessWidener("a/b/C$IC1").getAllFieldAccesses().clear());
+		assertThat(snapshot.snapshot()).isSameAs(snapshot);
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.visitAccessWidener("a/b/D"));
+		assertThrows(UnsupportedOperationException.class, () -> snapshot.getInjectedInterfaces("a/b/C").clear());
+	}
+
+	@Test
+	void testIsTarget() {
+		widener.visitAccessWidener("a/b/C$IC1").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		widener.visitEnumExtension("Default", "CONSTANT", false);
+
+		for (ClassTweaker classTweaker : new ClassTweaker[] {widener, widener.snapshot()}) {
+			assertThat(classTweaker.isTarget("a/b/C", false)).isTrue();
+			assertThat(classTweaker.isTarget("a/b/C$IC1", false)).isTrue();
+			assertThat(classTweaker.isTarget(new StringBuilder("a.b.C$IC1"), true)).isTrue();
+			assertThat(classTweaker.isTarget("Default", true)).isTrue();
+			assertThat(classTweaker.isTarget("a.b.C", false)).isFalse();
+			assertThat(classTweaker.isTarget("a/b/C", true)).isTrue();
+			assertThat(classTweaker.isTarget("a/b/D", false)).isFalse();
+			assertThat(classTweaker.isTarget("a/c/C", false)).isFalse();
+			assertThat(classTweaker.isTarget("", false)).isFalse();
+		}
+
+		// Targets added after a lookup must be found as well
+		widener.visitInjectedInterface("x/Y", "a/I", false);
+		assertThat(widener.isTarget("x.Y", true)).isTrue();
+	}
+
+	@Test
+	void testManyMembers() {
+		AccessWidenerVisitor visitor = widener.visitAccessWidener("a/b/C");
+
+		for (int i = 0; i < 1000; i++) {
+			visitor.visitMethod("m" + i, "()V", i % 2 == 0 ? AccessWidenerVisitor.AccessType.ACCESSIBLE : AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+			visitor.visitMethod("m" + i, "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		}
+
+		AccessWidener accessWidener = widener.getAccessWidener("a/b/C");
+		assertThat(accessWidener.getAllMethodAccesses()).hasSize(1000);
+		assertEquals(AccessWidenerImpl.MethodAccess.ACCESSIBLE, accessWidener.getMethodAccess("m998", "()V"));
+		assertEquals(AccessWidenerImpl.MethodAccess.ACCESSIBLE_EXTENDABLE, accessWidener.getMethodAccess("m999", "()V"));
+		assertEquals(AccessWidenerImpl.ClassAccess.ACCESSIBLE_EXTENDABLE, accessWidener.getClassAccess());
+	}
 }
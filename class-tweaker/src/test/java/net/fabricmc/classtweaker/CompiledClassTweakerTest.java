@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.classtweaker.api.AccessWidener;
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.ClassTweakerWriter;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+import net.fabricmc.classtweaker.impl.CompiledClassTweaker;
+import net.fabricmc.classtweaker.utils.EntryTriple;
+
+class CompiledClassTweakerTest {
+	private static final byte[] KEY = {1, 2, 3};
+	private static final byte[] OTHER_KEY = {1, 2, 4};
+
+	@Test
+	void testCompiled() throws Exception {
+		ClassTweaker classTweaker = ClassTweakerBinaryTest.createClassTweaker();
+		CompiledClassTweaker compiled = CompiledClassTweaker.compile(classTweaker, KEY);
+
+		ClassTweakerBinaryTest.assertSameEntries(classTweaker, compiled);
+		assertSameAccess(classTweaker, compiled);
+		assertThat(compiled.getAccessWidener("a/b/D")).isSameAs(ClassTweaker.newInstance().getAccessWidener("a/b/D"));
+		assertThat(compiled.getAccessWidener("a/b/C$IC1$IC2")).isSameAs(compiled.getAccessWidener("a/b/C$IC1$IC2"));
+		assertThrows(UnsupportedOperationException.class, () -> compiled.visitHeader("named"));
+
+		ClassTweaker read = ClassTweakerReader.readBinary(ClassTweakerWriter.writeBinary(classTweaker, KEY), KEY);
+		ClassTweaker loaded = CompiledClassTweaker.load(read, compiled.getLookupClass(), KEY);
+
+		assertNotNull(loaded);
+		ClassTweakerBinaryTest.assertSameEntries(classTweaker, loaded);
+		assertSameAccess(classTweaker, loaded);
+		assertThrows(IllegalArgumentException.class, () -> CompiledClassTweaker.load(read, KEY, KEY));
+	}
+
+	@Test
+	void testLarge() {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+
+		for (int i = 0; i < 3000; i++) {
+			classTweaker.visitAccessWidener("a/C" + i).visitField("f" + i, "I", i % 2 == 0 ? AccessWidenerVisitor.AccessType.ACCESSIBLE : AccessWidenerVisitor.AccessType.MUTABLE, false);
+		}
+
+		AccessWidenerVisitor visitor = classTweaker.visitAccessWidener("a/C0");
+
+		for (int i = 0; i < 1000; i++) {
+			visitor.visitMethod("m" + i / 2, "(" + (i % 2 == 0 ? "I" : "J") + ")V", i % 3 == 0 ? AccessWidenerVisitor.AccessType.ACCESSIBLE : AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		}
+
+		// Strings with the same hash code
+		visitor.visitMethod("Aa", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		visitor.visitMethod("BB", "()V", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+
+		CompiledClassTweaker compiled = CompiledClassTweaker.compile(classTweaker, KEY);
+
+		assertSameAccess(classTweaker, compiled);
+		assertThat(compiled.getAccessWidener("a/C3000")).isSameAs(ClassTweaker.newInstance().getAccessWidener("a/C3000"));
+		assertEquals(classTweaker.getAccessWidener("a/C0").getMethodAccess("m3", "(J)V"), compiled.getAccessWidener("a/C0").getMethodAccess("m3", "(J)V"));
+		assertThat(compiled.getAccessWidener("a/C0").getMethodAccess("m3", "(Z)V").isChanged()).isFalse();
+		assertThat(compiled.getAccessWidener("a/C1").getFieldAccess("f0", "I").isChanged()).isFalse();
+		// Fits into a single generated class
+		assertEquals(1, lookupClasses(compiled.getLookupClass()).size());
+	}
+
+	@Test
+	void testSharded() {
+		ClassTweaker classTweaker = createShardedClassTweaker();
+		CompiledClassTweaker compiled = CompiledClassTweaker.compile(classTweaker, KEY);
+
+		assertThat(lookupClasses(compiled.getLookupClass())).hasSizeGreaterThan(1);
+		assertSameAccess(classTweaker, compiled);
+		assertThat(compiled.getAccessWidener("a/C8000")).isSameAs(ClassTweaker.newInstance().getAccessWidener("a/C8000"));
+
+		CompiledClassTweaker loaded = CompiledClassTweaker.load(classTweaker, compiled.getLookupClass(), KEY);
+
+		assertNotNull(loaded);
+		assertThat(loaded.getLookupClass()).isEqualTo(compiled.getLookupClass());
+		assertSameAccess(classTweaker, loaded);
+	}
+
+	@Test
+	void testCacheKeyMismatch() throws Exception {
+		ClassTweaker classTweaker = ClassTweakerBinaryTest.createClassTweaker();
+		byte[] lookupClass = CompiledClassTweaker.compile(classTweaker, KEY).getLookupClass();
+
+		assertNull(CompiledClassTweaker.load(classTweaker, lookupClass, OTHER_KEY));
+		assertNull(CompiledClassTweaker.load(classTweaker, lookupClass, new byte[0]));
+		assertNotNull(CompiledClassTweaker.load(classTweaker, lookupClass, KEY));
+
+		// Every shard is checked, not just the first one
+		ClassTweaker sharded = createShardedClassTweaker();
+		List<byte[]> shards = lookupClasses(CompiledClassTweaker.compile(sharded, KEY).getLookupClass());
+		List<byte[]> otherShards = lookupClasses(CompiledClassTweaker.compile(sharded, OTHER_KEY).getLookupClass());
+
+		for (int shard = 0; shard < shards.size(); shard++) {
+			List<byte[]> mixed = new ArrayList<>(shards);
+			mixed.set(shard, otherShards.get(shard));
+			assertNull(CompiledClassTweaker.load(sharded, pack(mixed), KEY), "Shard " + shard);
+			assertNull(CompiledClassTweaker.load(sharded, pack(mixed), OTHER_KEY), "Shard " + shard);
+		}
+
+		assertNull(CompiledClassTweaker.load(sharded, pack(shards), OTHER_KEY));
+		assertNotNull(CompiledClassTweaker.load(sharded, pack(shards), KEY));
+	}
+
+	private static ClassTweaker createShardedClassTweaker() {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+
+		// Far more constants than fit into the constant pool of a single class
+		for (int i = 0; i < 8000; i++) {
+			AccessWidenerVisitor visitor = classTweaker.visitAccessWidener("a/C" + i);
+			visitor.visitField("f" + i, "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+			visitor.visitMethod("m" + i, "()V", i % 2 == 0 ? AccessWidenerVisitor.AccessType.ACCESSIBLE : AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		}
+
+		return classTweaker;
+	}
+
+	private static void assertSameAccess(ClassTweaker expected, ClassTweaker actual) {
+		for (Map.Entry<String, AccessWidener> entry : expected.getAllAccessWideners().entrySet()) {
+			AccessWidener accessWidener = entry.getValue();
+			AccessWidener actualWidener = actual.getAccessWidener(entry.getKey());
+
+			for (EntryTriple method : accessWidener.getAllMethodAccesses().keySet()) {
+				assertEquals(accessWidener.getMethodAccess(method), actualWidener.getMethodAccess(method));
+				assertEquals(accessWidener.getFieldAccess(method), actualWidener.getFieldAccess(method));
+			}
+
+			for (EntryTriple field : accessWidener.getAllFieldAccesses().keySet()) {
+				assertEquals(accessWidener.getFieldAccess(field), actualWidener.getFieldAccess(field));
+				assertEquals(accessWidener.getMethodAccess(field), actualWidener.getMethodAccess(field));
+			}
+
+			assertEquals(accessWidener.getCanonicalConstructorAccess(), actualWidener.getCanonicalConstructorAccess());
+			assertEquals(accessWidener.needsCallSiteRewrite(), actualWidener.needsCallSiteRewrite());
+			ClassTweakerBinaryTest.assertForeignOwnerUnchanged(accessWidener, actualWidener);
+		}
+	}
+
+	/**
+	 * Splits the packed lookup classes: their count, then the length and bytes of each class.
+	 */
+	private static List<byte[]> lookupClasses(byte[] lookupClass) {
+		ByteBuffer buffer = ByteBuffer.wrap(lookupClass);
+		int count = buffer.getInt();
+		List<byte[]> classes = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			classes.add(bytes);
+		}
+
+		assertThat(buffer.hasRemaining()).isFalse();
+		return classes;
+	}
+
+	private static byte[] pack(List<byte[]> classes) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + classes.stream().mapToInt(bytes -> 4 + bytes.length).sum());
+		buffer.putInt(classes.size());
+
+		for (byte[] bytes : classes) {
+			buffer.putInt(bytes.length).put(bytes);
+		}
+
+		return buffer.array();
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import static net.fabricmc.classtweaker.classvisitor.TestClasses.CLASSES;
+import static net.fabricmc.classtweaker.classvisitor.TestClasses.normalize;
+import static net.fabricmc.classtweaker.classvisitor.TestClasses.read;
+import static net.fabricmc.classtweaker.classvisitor.TestClasses.transform;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.Opcodes;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+
+class AccessFlagPatcherTest {
+	@Test
+	void testSameAsClassVisitor() {
+		ClassTweaker classTweaker = TestClasses.widenAll(method -> method.name.equals("<init>"));
+
+		for (Map.Entry<String, byte[]> entry : CLASSES.entrySet()) {
+			byte[] patched = AccessFlagPatcher.patch(entry.getValue(), classTweaker);
+
+			if (patched != null) {
+				assertArrayEquals(transform(entry.getValue(), classTweaker), normalize(patched), entry.getKey());
+			} else {
+				// Enums with constant bodies are sealed when compiled for Java 17 and up, and can't be made extendable in
+				// place, so those take the fallback instead
+				assertThat(read(entry.getValue()).permittedSubclasses).as(entry.getKey()).isNotEmpty();
+				assertArrayEquals(normalize(transform(entry.getValue(), classTweaker)), normalize(AccessFlagPatcher.transform(Opcodes.ASM9, entry.getValue(), classTweaker)), entry.getKey());
+			}
+		}
+
+		// Widened inner classes are patched in the outer class too
+		assertThat(AccessFlagPatcher.patch(CLASSES.get("test/PrivateInnerClass"), classTweaker)).isNotEqualTo(CLASSES.get("test/PrivateInnerClass"));
+	}
+
+	@Test
+	void testInnerClassesOfUntouchedClass() {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PrivateInnerClass$Inner").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		for (Map.Entry<String, byte[]> entry : CLASSES.entrySet()) {
+			byte[] patched = AccessFlagPatcher.patch(entry.getValue(), classTweaker);
+			assertArrayEquals(transform(entry.getValue(), classTweaker), normalize(patched), entry.getKey());
+		}
+
+		assertSame(CLASSES.get("test/PackagePrivateClass"), AccessFlagPatcher.patch(CLASSES.get("test/PackagePrivateClass"), classTweaker));
+	}
+
+	@Test
+	void testFallback() {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PrivateMethodSubclassTest").visitMethod("test", "()I", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		classTweaker.visitInjectedInterface("test/FinalClass", "test/GenericInterface", false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT3", false);
+
+		for (String name : new String[] {"test/PrivateMethodSubclassTest", "test/FinalClass", "test/EnumTests"}) {
+			byte[] classFile = CLASSES.get(name);
+			assertNull(AccessFlagPatcher.patch(classFile, classTweaker), name);
+			// Added enum constants are emitted after the methods by the class visitor, which only changes the constant pool order
+			assertArrayEquals(normalize(transform(classFile, classTweaker)), normalize(AccessFlagPatcher.transform(Opcodes.ASM9, classFile, classTweaker)), name);
+		}
+	}
+}
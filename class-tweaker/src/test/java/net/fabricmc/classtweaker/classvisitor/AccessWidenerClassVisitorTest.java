@@ -96,6 +96,18 @@ class AccessWidenerClassVisitorTest extends ClassVisitorTest {
 			assertEquals("private", Modifier.toString(nonCanonicalConstructor.getModifiers()));
 		}
 
+		@Test
+		void testMakeRecordFieldMutable() throws Exception {
+			classTweaker.visitAccessWidener("test/PackagePrivateRecord").visitField("b", "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+			Class<?> testClass = applyTransformer("test/PackagePrivateRecord");
+			assertThat(Modifier.isPublic(testClass.getModifiers())).isFalse();
+			assertEquals("private", Modifier.toString(testClass.getDeclaredField("b").getModifiers()));
+
+			// The canonical constructor is left alone when the record is not made accessible
+			Constructor<?> constructor = testClass.getDeclaredConstructor(String.class, int.class);
+			assertThat(Modifier.isPublic(constructor.getModifiers())).isFalse();
+		}
+
 		@Test
 		void testMakeInnerRecordAccessible() throws Exception {
 			classTweaker.visitAccessWidener("test/PrivateInnerRecord$Inner").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
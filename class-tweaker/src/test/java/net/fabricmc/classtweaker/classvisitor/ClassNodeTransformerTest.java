@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import static net.fabricmc.classtweaker.classvisitor.TestClasses.CLASSES;
+import static net.fabricmc.classtweaker.classvisitor.TestClasses.read;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.api.ClassTweakerWriter;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+
+class ClassNodeTransformerTest {
+	private static final byte[] KEY = {1, 2, 3};
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testSameAsClassVisitor() throws IOException {
+		ClassTweaker classTweaker = TestClasses.widenAll(method -> true);
+		classTweaker.visitInjectedInterface("test/GenericClass", "test/GenericInterface<TT;>", false);
+		classTweaker.visitInjectedInterface("test/FinalClass", "test/GenericInterface<Ljava/lang/String;>", false);
+		classTweaker.visitInjectedInterface("test/FinalClass", "test/Outer$Inner", false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT3", false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT1", false);
+
+		assertSameAsClassVisitor(classTweaker);
+		assertThat(applied(CLASSES.get("test/FinalClass"), classTweaker).interfaces).containsExactly("test/GenericInterface", "test/Outer$Inner");
+	}
+
+	@Test
+	void testInnerClassesOfUntouchedClass() throws IOException {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PrivateInnerClass$Inner").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		classTweaker.visitAccessWidener("test/Outer$Inner").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		classTweaker.visitInjectedInterface("test/FinalClass", "test/Outer$Inner", false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT3", false);
+
+		assertSameAsClassVisitor(classTweaker);
+	}
+
+	@Test
+	void testAddedEntriesWidened() throws IOException {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/EnumTests").visitField("CONSTANT3", "Ltest/EnumTests;", AccessWidenerVisitor.AccessType.MUTABLE, false);
+		classTweaker.visitAccessWidener("test/EnumTests").visitField("CONSTANT1", "Ltest/EnumTests;", AccessWidenerVisitor.AccessType.MUTABLE, false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT3", false);
+
+		// Added enum constants are widened like the existing ones
+		assertSameAsClassVisitor(classTweaker);
+		ClassNode node = applied(CLASSES.get("test/EnumTests"), classTweaker);
+		assertThat(node.fields).filteredOn(field -> field.name.equals("CONSTANT1")).singleElement().matches(field -> (field.access & Opcodes.ACC_FINAL) == 0);
+		assertThat(node.fields).filteredOn(field -> field.name.equals("CONSTANT3")).singleElement().matches(field -> (field.access & Opcodes.ACC_FINAL) == 0);
+	}
+
+	/**
+	 * Checks the class tweaker and its other implementations, which return their own access wideners for targets and
+	 * have to be told apart from untouched classes all the same.
+	 */
+	private void assertSameAsClassVisitor(ClassTweaker classTweaker) throws IOException {
+		Path file = tempDir.resolve("classtweaker.bin");
+		byte[] binary = ClassTweakerWriter.writeBinary(classTweaker, KEY);
+		Files.write(file, binary);
+		List<ClassTweaker> implementations = Arrays.asList(classTweaker, classTweaker.snapshot(), ClassTweakerReader.readBinary(binary, KEY), ClassTweakerReader.mapBinary(file, KEY));
+
+		for (Map.Entry<String, byte[]> entry : CLASSES.entrySet()) {
+			ClassNode expected = new ClassNode();
+			new ClassReader(entry.getValue()).accept(classTweaker.createClassVisitor(Opcodes.ASM9, expected, null), 0);
+
+			for (ClassTweaker implementation : implementations) {
+				assertArrayEquals(write(expected), write(applied(entry.getValue(), implementation)), entry.getKey() + " with " + implementation.getClass().getSimpleName());
+			}
+		}
+	}
+
+	private static ClassNode applied(byte[] classFile, ClassTweaker classTweaker) {
+		ClassNode node = read(classFile);
+		classTweaker.apply(node);
+		return node;
+	}
+
+	private static byte[] write(ClassNode node) {
+		ClassWriter classWriter = new ClassWriter(0);
+		node.accept(classWriter);
+		return classWriter.toByteArray();
+	}
+}
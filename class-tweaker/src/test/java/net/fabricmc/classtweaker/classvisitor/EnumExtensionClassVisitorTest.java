@@ -21,7 +21,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 
 public class EnumExtensionClassVisitorTest extends ClassVisitorTest {
 	@Test
@@ -57,4 +60,23 @@ public class EnumExtensionClassVisitorTest extends ClassVisitorTest {
 		// Mostly checking for VerifyError
 		assertThat(testClass.getField("CONSTANT1").get(null)).isNotNull();
 	}
+
+	@Test
+	void testFieldAfterMethod() {
+		classTweaker.visitEnumExtension("test/Generated", "CONSTANT1", false);
+		classTweaker.visitEnumExtension("test/Generated", "CONSTANT2", false);
+
+		// Fields are not required to come before methods, CONSTANT1 must still be seen as existing
+		ClassWriter classWriter = new ClassWriter(0);
+		classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "test/Generated", null, "java/lang/Enum", null);
+		classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "values", "()[Ltest/Generated;", null, null).visitEnd();
+		classWriter.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM, "CONSTANT1", "Ltest/Generated;", null, null).visitEnd();
+		classWriter.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "$VALUES", "[Ltest/Generated;", null, null).visitEnd();
+		classWriter.visitEnd();
+
+		ClassNode node = new ClassNode();
+		new ClassReader(classWriter.toByteArray()).accept(new EnumExtensionClassVisitor(Opcodes.ASM9, node, classTweaker), 0);
+		assertThat(node.fields).extracting(field -> field.name).containsExactly("CONSTANT1", "CONSTANT2", "$VALUES");
+		assertThat(node.methods).hasSize(1);
+	}
 }
@@ -22,12 +22,17 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.util.Collections;
 
 import org.assertj.core.api.InstanceOfAssertFactories;
 import org.assertj.core.api.ObjectArrayAssert;
 import org.assertj.core.api.ObjectAssert;
 import org.junit.jupiter.api.Test;
 
+import net.fabricmc.classtweaker.api.InjectedInterface;
+import net.fabricmc.classtweaker.impl.InjectedInterfaceImpl;
+import net.fabricmc.classtweaker.validator.InjectedInterfaceValidator;
+
 public class InterfaceInjectionClassVisitorTest extends ClassVisitorTest {
 	@Test
 	void testSimple() throws Exception {
@@ -102,6 +107,31 @@ public class InterfaceInjectionClassVisitorTest extends ClassVisitorTest {
 				.hasMessage("Interface test/GenericInterface attempted to use a type variable named T which is not present in the test/FinalClass class");
 	}
 
+	@Test
+	void testInterfaceTypeVariables() {
+		InjectedInterface injectedInterface = new InjectedInterfaceImpl("test/Outer<TT;>.Inner<[TU;Ljava/util/List<+TT;>;*>");
+		assertThat(injectedInterface.getInterfaceName()).isEqualTo("test/Outer$Inner");
+		assertThat(injectedInterface.getTypeVariables()).containsExactly("T", "U");
+		assertThat(new InjectedInterfaceImpl("test/GenericInterface").getTypeVariables()).isEmpty();
+	}
+
+	@Test
+	void testValidateInjectedInterfaces() {
+		classTweaker.visitInjectedInterface("test/FinalClass", "test/GenericInterface<TT;>", false);
+		classTweaker.visitInjectedInterface("test/GenericClass", "test/GenericInterface<TT;>", false);
+		classTweaker.visitInjectedInterface("test/GenericClass", "test/GenericInterface2<TU;>", false);
+
+		assertThat(InjectedInterfaceValidator.validate(classTweaker, className -> className.equals("test/GenericClass") ? "<T:Ljava/lang/Object;>Ljava/lang/Object;" : null))
+				.containsExactlyInAnyOrder(
+						"Interface test/GenericInterface attempted to use a type variable named T which is not present in the test/FinalClass class",
+						"Interface test/GenericInterface2 attempted to use a type variable named U which is not present in the test/GenericClass class"
+				);
+		assertThat(InjectedInterfaceValidator.getTypeParameters("<K:Ljava/lang/Object;V::Ljava/lang/Comparable<TK;>;>Ljava/lang/Object;"))
+				.containsExactly("K", "V");
+		assertThat(InjectedInterfaceValidator.validate(classTweaker, className -> "<T:Ljava/lang/Object;U:Ljava/lang/Object;>Ljava/lang/Object;"))
+				.isEqualTo(Collections.emptyList());
+	}
+
 	private static ObjectArrayAssert<Type> assertGenericType(ObjectAssert<Type> type, String rawType) {
 		return type.isInstanceOf(ParameterizedType.class)
 				.asInstanceOf(InstanceOfAssertFactories.type(ParameterizedType.class))
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.classvisitor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+
+/**
+ * The classes of the "test" package, for the tests that compare a transform against {@link ClassTweakerClassVisitor}
+ * and the tests that need a jar of them.
+ */
+public final class TestClasses {
+	/**
+	 * The class files by the name of their class, in the order of the names.
+	 */
+	public static final Map<String, byte[]> CLASSES = Collections.unmodifiableMap(load());
+
+	private TestClasses() {
+	}
+
+	private static Map<String, byte[]> load() {
+		Map<String, byte[]> classes = new TreeMap<>();
+
+		try {
+			Path classFolder = Paths.get(TestClasses.class.getResource("/test/PackagePrivateClass.class").toURI()).getParent();
+
+			try (Stream<Path> stream = Files.list(classFolder)) {
+				for (Path path : (Iterable<Path>) stream::iterator) {
+					String fileName = path.getFileName().toString();
+
+					if (fileName.endsWith(".class")) {
+						classes.put("test/" + fileName.substring(0, fileName.length() - ".class".length()), Files.readAllBytes(path));
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+
+		return classes;
+	}
+
+	/**
+	 * Writes all classes into a jar, in the order of their names.
+	 *
+	 * @return the jar
+	 */
+	public static Path writeJar(Path jar) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			for (Map.Entry<String, byte[]> entry : CLASSES.entrySet()) {
+				out.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+				out.write(entry.getValue());
+			}
+		}
+
+		return jar;
+	}
+
+	/**
+	 * @return a class tweaker that makes every test class and field accessible, extendable and mutable, and the methods
+	 * matching the filter accessible
+	 */
+	static ClassTweaker widenAll(Predicate<MethodNode> methods) {
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+
+		for (byte[] classFile : CLASSES.values()) {
+			ClassNode node = read(classFile);
+			AccessWidenerVisitor visitor = classTweaker.visitAccessWidener(node.name);
+			visitor.visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+			visitor.visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+
+			for (FieldNode field : node.fields) {
+				visitor.visitField(field.name, field.desc, AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+				visitor.visitField(field.name, field.desc, AccessWidenerVisitor.AccessType.MUTABLE, false);
+			}
+
+			for (MethodNode method : node.methods) {
+				if (methods.test(method)) {
+					visitor.visitMethod(method.name, method.desc, AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+				}
+			}
+		}
+
+		return classTweaker;
+	}
+
+	static ClassNode read(byte[] classFile) {
+		ClassNode node = new ClassNode();
+		new ClassReader(classFile).accept(node, 0);
+		return node;
+	}
+
+	/**
+	 * @return the class passed through {@link ClassTweakerClassVisitor}
+	 */
+	static byte[] transform(byte[] classFile, ClassTweaker classTweaker) {
+		ClassWriter classWriter = new ClassWriter(0);
+		ClassVisitor visitor = classTweaker.createClassVisitor(Opcodes.ASM9, classWriter, null);
+		new ClassReader(classFile).accept(visitor, 0);
+		return classWriter.toByteArray();
+	}
+
+	/**
+	 * @return the class as written by ASM, which orders the constant pool the way {@link #transform} does
+	 */
+	static byte[] normalize(byte[] classFile) {
+		return transform(classFile, ClassTweaker.newInstance());
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+
+class JarTransformerTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testTransform() throws Exception {
+		Path input = createJar();
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT3", false);
+		// A target whose access is already as wide as requested ends up unchanged
+		classTweaker.visitAccessWidener("test/FinalClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		Path output = tempDir.resolve("out/output.jar");
+		JarTransformer.Result result = JarTransformer.create(classTweaker).transform(input, output);
+		assertEquals(2, result.getTransformedCount());
+
+		try (ZipFile inputZip = new ZipFile(input.toFile()); ZipFile outputZip = new ZipFile(output.toFile())) {
+			assertEquals(names(inputZip), names(outputZip));
+			assertEquals(result.getEntryCount(), outputZip.size());
+
+			for (ZipEntry entry : Collections.list(inputZip.entries())) {
+				ZipEntry outputEntry = outputZip.getEntry(entry.getName());
+				byte[] outputData = read(outputZip, outputEntry);
+				CRC32 crc = new CRC32();
+				crc.update(outputData);
+				assertEquals(crc.getValue(), outputEntry.getCrc(), entry.getName());
+				assertEquals(entry.getTime(), outputEntry.getTime(), entry.getName());
+
+				if (entry.getName().equals("test/PackagePrivateClass.class")) {
+					assertThat(new ClassReader(outputData).getAccess() & Opcodes.ACC_PUBLIC).isNotZero();
+				} else if (!entry.getName().equals("test/EnumTests.class")) {
+					// Copied as is, including the compressed data
+					assertArrayEquals(read(inputZip, entry), outputData, entry.getName());
+					assertEquals(entry.getMethod(), outputEntry.getMethod(), entry.getName());
+					assertEquals(entry.getCompressedSize(), outputEntry.getCompressedSize(), entry.getName());
+				}
+			}
+		}
+
+		// The output only depends on the input and the class tweaker
+		Path secondOutput = tempDir.resolve("second.jar");
+		JarTransformer.create(classTweaker).transform(input, secondOutput);
+		assertArrayEquals(Files.readAllBytes(output), Files.readAllBytes(secondOutput));
+		assertThat(tempDir.resolve("out")).isDirectoryContaining(path -> path.equals(output)).isDirectoryNotContaining(path -> path.toString().endsWith(".tmp"));
+	}
+
+	@Test
+	void testCache() throws Exception {
+		Path input = createJar();
+		TransformCache cache = TransformCache.open(tempDir.resolve("cache"));
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		classTweaker.visitAccessWidener("test/FinalPackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		JarTransformer transformer = JarTransformer.create(classTweaker, ForkJoinPool.commonPool(), cache);
+		assertEquals(0, transformer.transform(input, tempDir.resolve("first.jar")).getCacheHitCount());
+		JarTransformer.Result result = transformer.transform(input, tempDir.resolve("second.jar"));
+		assertEquals(2, result.getCacheHitCount());
+		assertEquals(2, result.getTransformedCount());
+		assertArrayEquals(Files.readAllBytes(tempDir.resolve("first.jar")), Files.readAllBytes(tempDir.resolve("second.jar")));
+
+		// Entries are keyed by the inflated classes, so recompressing the jar does not miss the cache
+		Path recompressed = createJar("recompressed.jar", Deflater.BEST_SPEED);
+		assertEquals(2, transformer.transform(recompressed, tempDir.resolve("recompressed-out.jar")).getCacheHitCount());
+
+		// Only the class with changed tweaks is transformed again
+		ClassTweaker changed = ClassTweaker.newInstance();
+		changed.visitAccessWidener("test/FinalPackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		changed.visitAccessWidener("test/PackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		assertEquals(1, JarTransformer.create(changed, ForkJoinPool.commonPool(), cache).transform(input, tempDir.resolve("cached.jar")).getCacheHitCount());
+		JarTransformer.create(changed).transform(input, tempDir.resolve("uncached.jar"));
+		assertArrayEquals(Files.readAllBytes(tempDir.resolve("uncached.jar")), Files.readAllBytes(tempDir.resolve("cached.jar")));
+	}
+
+	@Test
+	void testDamagedCacheEntry() throws Exception {
+		Path input = createJar();
+		TransformCache cache = TransformCache.open(tempDir.resolve("cache"));
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		JarTransformer transformer = JarTransformer.create(classTweaker, ForkJoinPool.commonPool(), cache);
+		transformer.transform(input, tempDir.resolve("first.jar"));
+		List<Path> entries = cacheEntries();
+		assertThat(entries).hasSize(1);
+		byte[] encoded = Files.readAllBytes(entries.get(0));
+
+		// Too short for the stored CRC and size, a wrong CRC and a wrong size
+		byte[] wrongCrc = encoded.clone();
+		wrongCrc[3] ^= 1;
+		byte[] wrongSize = encoded.clone();
+		wrongSize[7] ^= 1;
+
+		for (byte[] damaged : new byte[][] {{1, 2, 3}, wrongCrc, wrongSize}) {
+			Files.write(entries.get(0), damaged);
+			assertEquals(0, transformer.transform(input, tempDir.resolve("damaged.jar")).getCacheHitCount());
+			assertArrayEquals(Files.readAllBytes(tempDir.resolve("first.jar")), Files.readAllBytes(tempDir.resolve("damaged.jar")));
+			// The entry is written again
+			assertArrayEquals(encoded, Files.readAllBytes(entries.get(0)));
+		}
+	}
+
+	@Test
+	void testInnerClassReferences() throws Exception {
+		Path input = createJar();
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/NestedClassHolder$Nested").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		InnerClassReferenceIndex index = InnerClassReferenceIndex.build(input, classTweaker);
+		assertThat(index.getClassesNeedingFixups()).containsExactly("test/NestedClassUser");
+		assertThat(index.getWidenedReferences("test/NestedClassHolder")).containsExactly("test/NestedClassHolder$Nested");
+		assertThat(index.getWidenedReferences("test/PackagePrivateClass")).isEmpty();
+
+		Path output = tempDir.resolve("output.jar");
+		JarTransformer.create(classTweaker).transform(input, output);
+		assertEquals(0, innerClassAccess(output, "test/NestedClassUser", "test/NestedClassHolder$Nested") & Opcodes.ACC_PUBLIC);
+
+		JarTransformer.Result result = JarTransformer.create(classTweaker).withInnerClassReferences().transform(input, output);
+		assertEquals(3, result.getTransformedCount());
+		assertEquals(Opcodes.ACC_PUBLIC, innerClassAccess(output, "test/NestedClassUser", "test/NestedClassHolder$Nested") & Opcodes.ACC_PUBLIC);
+	}
+
+	@Test
+	void testApiStubs() throws Exception {
+		Path input = createJar();
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/PackagePrivateClass").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		classTweaker.visitInjectedInterface("test/FinalClass", "test/GenericInterface", false);
+		classTweaker.visitEnumExtension("test/EnumTests", "CONSTANT3", false);
+
+		Path full = tempDir.resolve("full.jar");
+		Path stubs = tempDir.resolve("stubs.jar");
+		JarTransformer.create(classTweaker).transform(input, full);
+		JarTransformer.Result result = JarTransformer.create(classTweaker).withApiStubs().transform(input, stubs);
+		assertThat(Files.size(stubs)).isLessThan(Files.size(full));
+
+		try (ZipFile zipFile = new ZipFile(stubs.toFile())) {
+			assertEquals(result.getEntryCount(), zipFile.size());
+			assertEquals("stored", new String(read(zipFile, zipFile.getEntry("stored.txt")), StandardCharsets.UTF_8));
+
+			ClassLoader classLoader = new ClassLoader(getClass().getClassLoader()) {
+				@Override
+				protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+					if (!name.startsWith("test.")) {
+						return super.loadClass(name, resolve);
+					}
+
+					try {
+						byte[] classFile = read(zipFile, zipFile.getEntry(name.replace('.', '/') + ".class"));
+						return defineClass(name, classFile, 0, classFile.length);
+					} catch (IOException e) {
+						throw new ClassNotFoundException(name, e);
+					}
+				}
+			};
+
+			Class<?> packagePrivateClass = Class.forName("test.PackagePrivateClass", false, classLoader);
+			assertThat(packagePrivateClass).isPublic();
+			// Method bodies are stubs
+			Constructor<?> constructor = packagePrivateClass.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			InvocationTargetException e = assertThrows(InvocationTargetException.class, constructor::newInstance);
+			assertThat(e.getCause()).isInstanceOf(NullPointerException.class);
+
+			ClassNode finalClass = new ClassNode();
+			new ClassReader(read(zipFile, zipFile.getEntry("test/FinalClass.class"))).accept(finalClass, 0);
+			assertThat(finalClass.interfaces).contains("test/GenericInterface");
+			assertThat(finalClass.sourceFile).isNull();
+
+			ClassNode enumTests = new ClassNode();
+			new ClassReader(read(zipFile, zipFile.getEntry("test/EnumTests.class"))).accept(enumTests, 0);
+			assertThat(enumTests.fields).anyMatch(field -> field.name.equals("CONSTANT3"));
+		}
+	}
+
+	@Test
+	void testCacheWithWidenedSibling() throws Exception {
+		Path input = createJar();
+		TransformCache cache = TransformCache.open(tempDir.resolve("cache"));
+		ClassTweaker classTweaker = ClassTweaker.newInstance();
+		classTweaker.visitAccessWidener("test/NestedClassUser").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		assertEquals(0, JarTransformer.create(classTweaker, ForkJoinPool.commonPool(), cache).transform(input, tempDir.resolve("first.jar")).getCacheHitCount());
+
+		// Only the access of a nested class that NestedClassUser has an inner class entry for changes
+		ClassTweaker changed = ClassTweaker.newInstance();
+		changed.visitAccessWidener("test/NestedClassUser").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		changed.visitAccessWidener("test/NestedClassHolder$Nested").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		assertEquals(0, JarTransformer.create(changed, ForkJoinPool.commonPool(), cache).transform(input, tempDir.resolve("cached.jar")).getCacheHitCount());
+		JarTransformer.create(changed).transform(input, tempDir.resolve("uncached.jar"));
+		assertArrayEquals(Files.readAllBytes(tempDir.resolve("uncached.jar")), Files.readAllBytes(tempDir.resolve("cached.jar")));
+	}
+
+	@Test
+	void testMain() throws Exception {
+		Path input = createJar();
+		Path output = tempDir.resolve("output.jar");
+		Path classTweaker = tempDir.resolve("test.classtweaker");
+		Files.write(classTweaker, "classTweaker\tv1\tnamed\naccessible\tclass\ttest/PackagePrivateClass\n".getBytes(StandardCharsets.UTF_8));
+
+		Main.main(new String[] {input.toString(), output.toString(), classTweaker.toString()});
+
+		try (ZipFile outputZip = new ZipFile(output.toFile())) {
+			byte[] classFile = read(outputZip, outputZip.getEntry("test/PackagePrivateClass.class"));
+			assertThat(new ClassReader(classFile).getAccess() & Opcodes.ACC_PUBLIC).isNotZero();
+		}
+	}
+
+	private List<Path> cacheEntries() throws IOException {
+		try (Stream<Path> stream = Files.walk(tempDir.resolve("cache"))) {
+			return stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+	}
+
+	private Path createJar() throws Exception {
+		return createJar("input.jar", Deflater.DEFAULT_COMPRESSION);
+	}
+
+	private Path createJar(String name, int level) throws Exception {
+		Path classFolder = Paths.get(getClass().getResource("/test/PackagePrivateClass.class").toURI()).getParent();
+		Map<String, byte[]> classes = new TreeMap<>();
+
+		try (Stream<Path> stream = Files.list(classFolder)) {
+			for (Path path : (Iterable<Path>) stream::iterator) {
+				classes.put("test/" + path.getFileName(), Files.readAllBytes(path));
+			}
+		}
+
+		Path jar = tempDir.resolve(name);
+
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			out.setLevel(level);
+			out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			out.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+			out.putNextEntry(new ZipEntry("test/"));
+
+			byte[] stored = "stored".getBytes(StandardCharsets.UTF_8);
+			CRC32 crc = new CRC32();
+			crc.update(stored);
+			ZipEntry storedEntry = new ZipEntry("stored.txt");
+			storedEntry.setMethod(ZipEntry.STORED);
+			storedEntry.setSize(stored.length);
+			storedEntry.setCrc(crc.getValue());
+			out.putNextEntry(storedEntry);
+			out.write(stored);
+
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				ZipEntry zipEntry = new ZipEntry(entry.getKey());
+				zipEntry.setTime(1_600_000_000_000L);
+				out.putNextEntry(zipEntry);
+				out.write(entry.getValue());
+			}
+		}
+
+		return jar;
+	}
+
+	private static int innerClassAccess(Path jar, String className, String innerClass) throws IOException {
+		try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+			ClassNode node = new ClassNode();
+			new ClassReader(read(zipFile, zipFile.getEntry(className + ".class"))).accept(node, 0);
+			return node.innerClasses.stream().filter(inner -> inner.name.equals(innerClass)).findFirst().orElseThrow().access;
+		}
+	}
+
+	private static List<String> names(ZipFile zipFile) {
+		List<String> names = new ArrayList<>();
+
+		for (ZipEntry entry : Collections.list(zipFile.entries())) {
+			names.add(entry.getName());
+		}
+
+		return names;
+	}
+
+	private static byte[] read(ZipFile zipFile, ZipEntry entry) throws IOException {
+		try (InputStream in = zipFile.getInputStream(entry)) {
+			return in.readAllBytes();
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.Opcodes;
+
+import net.fabricmc.classtweaker.classvisitor.TestClasses;
+
+class MemberTableTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testStrings() {
+		byte[] encoded = MemberTable.write(Collections.singletonList(new MemberTable.ScannedClass("a/Kl\u00e4sse", null, Opcodes.ACC_PUBLIC,
+				new String[] {"f\uD83D\uDE00ld", "I", "field", "I"}, new String[0])));
+		MemberTable table = MemberTable.open(ByteBuffer.wrap(encoded));
+		int record = table.findClass("a/Kl\u00e4sse");
+
+		assertThat(record).isNotNegative();
+		assertThat(table.findClass("a/Kl\u00e4ss")).isNegative();
+		assertThat(table.findClass("a/Klasse")).isNegative();
+		assertThat(table.hasField(record, "f\uD83D\uDE00ld", "I")).isTrue();
+		assertThat(table.hasField(record, "field", "I")).isTrue();
+		assertThat(table.hasField(record, "fiel", "I")).isFalse();
+		assertThat(table.hasField(record, "field", "J")).isFalse();
+	}
+
+	@Test
+	void testCorrupt() {
+		byte[] encoded = MemberTable.write(Collections.singletonList(new MemberTable.ScannedClass("a/B", "java/lang/Object", Opcodes.ACC_PUBLIC,
+				new String[] {"f", "I"}, new String[] {"m", "()V"})));
+		MemberTable table = MemberTable.open(ByteBuffer.wrap(encoded));
+
+		assertThat(table).isNotNull();
+		int record = table.findClass("a/B");
+
+		for (int length = 0; length < encoded.length; length++) {
+			assertThat(MemberTable.open(ByteBuffer.wrap(Arrays.copyOf(encoded, length)))).as("Truncated to %d", length).isNull();
+		}
+
+		// Class count and capacities that leave no empty slot to end a probe sequence at, or are not a power of two
+		assertCorrupt(encoded, 8, 2);
+		assertCorrupt(encoded, 12, 0);
+		assertCorrupt(encoded, 12, 1);
+		assertCorrupt(encoded, 12, 3);
+		assertCorrupt(encoded, record + 12, 0);
+		assertCorrupt(encoded, record + 16, 3);
+		assertCorrupt(encoded, record + 16, 1 << 20);
+
+		// Offsets of records and strings outside the data
+		int slot = ByteBuffer.wrap(encoded).getInt(16 + 4) == record ? 16 : 24;
+		assertCorrupt(encoded, slot + 4, 4);
+		assertCorrupt(encoded, slot + 4, encoded.length);
+		assertCorrupt(encoded, record, encoded.length);
+		assertCorrupt(encoded, record + 4, -1);
+		assertCorrupt(encoded, ByteBuffer.wrap(encoded).getInt(record), Integer.MAX_VALUE);
+	}
+
+	private static void assertCorrupt(byte[] encoded, int offset, int value) {
+		byte[] corrupt = encoded.clone();
+		ByteBuffer.wrap(corrupt).putInt(offset, value);
+		assertThat(MemberTable.open(ByteBuffer.wrap(corrupt))).as("%d = %d", offset, value).isNull();
+	}
+
+	@Test
+	void testMemberIndexCache() throws Exception {
+		List<Path> jars = Collections.singletonList(TestClasses.writeJar(tempDir.resolve("input.jar")));
+		TransformCache cache = TransformCache.open(tempDir.resolve("cache"));
+		MemberIndex built = MemberIndex.build(jars, ForkJoinPool.commonPool(), cache);
+		MemberIndex cached = MemberIndex.build(jars, ForkJoinPool.commonPool(), cache);
+
+		assertThat(built.getCachedJarCount()).isZero();
+		assertThat(cached.getCachedJarCount()).isOne();
+		assertThat(cached.getClassCount()).isEqualTo(built.getClassCount());
+		assertThat(cached.isEnum("test/EnumTests")).isTrue();
+		assertThat(cached.getSuperName("test/FieldTests")).isEqualTo("java/lang/Object");
+		assertThat(cached.hasClass("test/Missing")).isFalse();
+		assertThat(cached.hasField("test/FieldTests", "privateFinalIntField", "I")).isTrue();
+		assertThat(cached.hasMethod("test/EnumTests", "values", "()[Ltest/EnumTests;")).isTrue();
+		assertThat(cached.hasMethod("test/EnumTests", "values", "()V")).isFalse();
+
+		// The table, and the hash of the jar keyed by its path, size and modification time
+		assertThat(cacheEntries()).hasSize(2);
+		Path table = cacheEntries().stream().filter(path -> path.toFile().length() != 32).findFirst().get();
+
+		// A touched jar is hashed again, which still finds the table
+		Files.setLastModifiedTime(jars.get(0), FileTime.fromMillis(1_600_000_000_000L));
+		assertThat(MemberIndex.build(jars, ForkJoinPool.commonPool(), cache).getCachedJarCount()).isOne();
+		assertThat(cacheEntries()).hasSize(3);
+
+		// An entry that was not written by this version is replaced
+		byte[] encoded = Files.readAllBytes(table);
+		Files.write(table, new byte[] {1, 2, 3});
+		assertThat(MemberIndex.build(jars, ForkJoinPool.commonPool(), cache).getCachedJarCount()).isZero();
+		assertThat(MemberIndex.build(jars, ForkJoinPool.commonPool(), cache).getCachedJarCount()).isOne();
+
+		// So is a truncated one
+		Files.write(table, Arrays.copyOf(encoded, encoded.length / 2));
+		assertThat(MemberIndex.build(jars, ForkJoinPool.commonPool(), cache).getCachedJarCount()).isZero();
+		assertThat(Files.readAllBytes(table)).isEqualTo(encoded);
+
+		// And a damaged one, whose class capacity is no longer a power of two
+		ByteBuffer.wrap(encoded).putInt(12, 3);
+		Files.write(table, encoded);
+		assertThat(MemberIndex.build(jars, ForkJoinPool.commonPool(), cache).getCachedJarCount()).isZero();
+		assertThat(MemberIndex.build(jars, ForkJoinPool.commonPool(), cache).getCachedJarCount()).isOne();
+	}
+
+	private List<Path> cacheEntries() throws IOException {
+		try (Stream<Path> stream = Files.walk(tempDir.resolve("cache"))) {
+			return stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.jar;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.visitor.AccessWidenerVisitor;
+
+class TweakFingerprintsTest {
+	@Test
+	void testEntryOrder() {
+		ClassTweaker first = ClassTweaker.newInstance();
+		first.visitAccessWidener("a/B").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		first.visitAccessWidener("a/B").visitField("f", "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+		first.visitAccessWidener("a/B$C").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		first.visitAccessWidener("a/D").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		ClassTweaker second = ClassTweaker.newInstance();
+		second.visitAccessWidener("a/D").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		second.visitAccessWidener("a/B").visitField("f", "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+		second.visitAccessWidener("a/B$C").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		second.visitAccessWidener("a/B").visitMethod("m", "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		TweakFingerprints firstFingerprints = TweakFingerprints.create(first);
+		TweakFingerprints secondFingerprints = TweakFingerprints.create(second);
+		assertArrayEquals(firstFingerprints.get("a/B"), secondFingerprints.get("a/B"));
+		assertArrayEquals(firstFingerprints.get("a/D"), secondFingerprints.get("a/D"));
+		assertArrayEquals(firstFingerprints.get("a/E"), secondFingerprints.get("a/E"));
+	}
+
+	@Test
+	void testMemberOrder() {
+		ClassTweaker first = ClassTweaker.newInstance();
+		ClassTweaker second = ClassTweaker.newInstance();
+
+		for (int i = 0; i < 100; i++) {
+			first.visitAccessWidener("a/B").visitMethod("m" + i, "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+			first.visitAccessWidener("a/B").visitMethod("m", "(" + "I".repeat(i) + ")V", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+			first.visitAccessWidener("a/B").visitField("f" + i, "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+		}
+
+		for (int i = 99; i >= 0; i--) {
+			second.visitAccessWidener("a/B").visitField("f" + i, "I", AccessWidenerVisitor.AccessType.MUTABLE, false);
+			second.visitAccessWidener("a/B").visitMethod("m", "(" + "I".repeat(i) + ")V", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+			second.visitAccessWidener("a/B").visitMethod("m" + i, "()V", AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		}
+
+		assertArrayEquals(TweakFingerprints.create(first).get("a/B"), TweakFingerprints.create(second).get("a/B"));
+
+		// The same names with other access or descriptors do not collide
+		second.visitAccessWidener("a/B").visitMethod("m0", "()V", AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+		assertThat(TweakFingerprints.create(second).get("a/B")).isNotEqualTo(TweakFingerprints.create(first).get("a/B"));
+	}
+
+	@Test
+	void testNestedTargetAccess() {
+		ClassTweaker first = ClassTweaker.newInstance();
+		first.visitAccessWidener("a/B$C").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		first.visitAccessWidener("a/D").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		ClassTweaker second = ClassTweaker.newInstance();
+		second.visitAccessWidener("a/B$C").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		second.visitAccessWidener("a/D").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		// Widening a nested class changes the inner class entries of its outer class
+		second.visitAccessWidener("a/B$C").visitClass(AccessWidenerVisitor.AccessType.EXTENDABLE, false);
+
+		TweakFingerprints firstFingerprints = TweakFingerprints.create(first);
+		TweakFingerprints secondFingerprints = TweakFingerprints.create(second);
+		assertThat(secondFingerprints.get("a/B")).isNotEqualTo(firstFingerprints.get("a/B"));
+		assertThat(secondFingerprints.get("a/B$C")).isNotEqualTo(firstFingerprints.get("a/B$C"));
+		assertArrayEquals(firstFingerprints.get("a/D"), secondFingerprints.get("a/D"));
+
+		// And of other classes that have an inner class entry for it
+		assertArrayEquals(firstFingerprints.get("a/E"), secondFingerprints.get("a/E"));
+		assertThat(secondFingerprints.get("a/E", Collections.singleton("a/B$C"))).isNotEqualTo(firstFingerprints.get("a/E", Collections.singleton("a/B$C")));
+		assertThat(firstFingerprints.get("a/E", Collections.singleton("a/B$C"))).isNotEqualTo(firstFingerprints.get("a/E"));
+	}
+
+	@Test
+	void testInjectedInterfaceAccess() {
+		ClassTweaker first = ClassTweaker.newInstance();
+		first.visitInjectedInterface("a/D", "b/I$J", false);
+		ClassTweaker second = ClassTweaker.newInstance();
+		second.visitInjectedInterface("a/D", "b/I$J", false);
+		// The inner class entry added for the interface is widened
+		second.visitAccessWidener("b/I$J").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+
+		byte[] fingerprint = TweakFingerprints.create(first).get("a/D");
+		assertThat(TweakFingerprints.create(second).get("a/D")).isNotEqualTo(fingerprint);
+
+		// The outer class of the interface is a top level class, which gets no inner class entry
+		first.visitAccessWidener("b/I").visitClass(AccessWidenerVisitor.AccessType.ACCESSIBLE, false);
+		assertArrayEquals(fingerprint, TweakFingerprints.create(first).get("a/D"));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fabricmc.classtweaker.validator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.fabricmc.classtweaker.api.ClassTweaker;
+import net.fabricmc.classtweaker.api.ClassTweakerReader;
+import net.fabricmc.classtweaker.classvisitor.TestClasses;
+import net.fabricmc.classtweaker.jar.MemberIndex;
+import net.fabricmc.classtweaker.reader.ClassTweakerFormatException;
+
+class ClassTweakerBulkValidatorTest {
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void testMemberIndex() throws Exception {
+		MemberIndex index = MemberIndex.build(Collections.singletonList(TestClasses.writeJar(tempDir.resolve("input.jar"))));
+
+		assertThat(index.getClassCount()).isEqualTo(TestClasses.CLASSES.size());
+		assertThat(index.isEnum("test/EnumTests")).isTrue();
+		assertThat(index.getSuperName("test/EnumTests")).isEqualTo("java/lang/Enum");
+		assertThat(index.isEnum("test/FieldTests")).isFalse();
+		assertThat(index.hasClass("test/Missing")).isFalse();
+		assertThat(index.hasField("test/FieldTests", "privateFinalIntField", "I")).isTrue();
+		assertThat(index.hasField("test/FieldTests", "privateFinalIntField", "J")).isFalse();
+		assertThat(index.hasMethod("test/EnumTests", "values", "()[Ltest/EnumTests;")).isTrue();
+		assertThat(index.hasMethod("test/EnumTests", "values", "()V")).isFalse();
+	}
+
+	@Test
+	void testValidateAll() throws Exception {
+		MemberIndex index = MemberIndex.build(Collections.singletonList(TestClasses.writeJar(tempDir.resolve("input.jar"))));
+		List<ClassTweakerReader.Source> sources = Arrays.asList(
+				source("accessible\tclass\ttest/FieldTests\nmutable\tfield\ttest/FieldTests\tprivateFinalIntField\tI\n"),
+				source("accessible\tmethod\ttest/FieldTests\tmissing\t()V\nextend-enum\ttest/FieldTests\tCONSTANT\n"),
+				source("accessible\tclass\ttest/Missing\nnot an entry\n")
+		);
+
+		assertThat(ClassTweakerBulkValidator.validateAll(sources, index, ForkJoinPool.commonPool()))
+				.extracting(ProblemCollector.Problem::toString)
+				.containsExactly(
+						"source 1, line 2: Could not find method (missing()V) in class (test/FieldTests)",
+						"source 1, line 3: Class (test/FieldTests) is not an enum",
+						"source 2, line 2: Could not find class (test/Missing)",
+						"source 2, line 3: " + assertThrows(ClassTweakerFormatException.class, () -> ClassTweakerReader.create(ClassTweaker.newInstance()).read(sources.get(2).getContent())).getMessage()
+				);
+	}
+
+	private static ClassTweakerReader.Source source(String entries) {
+		return ClassTweakerReader.Source.of(("classTweaker\tv2\tnamed\n" + entries).getBytes(StandardCharsets.UTF_8), "named");
+	}
+}